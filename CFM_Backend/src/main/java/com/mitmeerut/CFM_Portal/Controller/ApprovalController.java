@@ -5,8 +5,13 @@ import com.mitmeerut.CFM_Portal.Repository.ApprovalRepository;
 import com.mitmeerut.CFM_Portal.Repository.CourseFileRepository;
 import com.mitmeerut.CFM_Portal.Repository.CommentRepository;
 import com.mitmeerut.CFM_Portal.Repository.UserRepository;
+import com.mitmeerut.CFM_Portal.Service.CommentCounterService;
+import com.mitmeerut.CFM_Portal.Service.CommentEventBroker;
+import com.mitmeerut.CFM_Portal.Service.CommentThreadService;
 import com.mitmeerut.CFM_Portal.Service.NotificationHelperService;
+import com.mitmeerut.CFM_Portal.Service.RemarkSearchService;
 import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -24,17 +29,29 @@ public class ApprovalController {
     private final CommentRepository commentRepository;
     private final NotificationHelperService notificationHelper;
     private final UserRepository userRepository;
+    private final RemarkSearchService remarkSearchService;
+    private final CommentCounterService commentCounterService;
+    private final CommentThreadService commentThreadService;
+    private final CommentEventBroker commentEventBroker;
 
     public ApprovalController(CourseFileRepository courseFileRepository,
             ApprovalRepository approvalRepository,
             CommentRepository commentRepository,
             NotificationHelperService notificationHelper,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            RemarkSearchService remarkSearchService,
+            CommentCounterService commentCounterService,
+            CommentThreadService commentThreadService,
+            CommentEventBroker commentEventBroker) {
         this.courseFileRepository = courseFileRepository;
         this.approvalRepository = approvalRepository;
         this.commentRepository = commentRepository;
         this.notificationHelper = notificationHelper;
         this.userRepository = userRepository;
+        this.remarkSearchService = remarkSearchService;
+        this.commentCounterService = commentCounterService;
+        this.commentThreadService = commentThreadService;
+        this.commentEventBroker = commentEventBroker;
     }
 
     // ==================== TEACHER ENDPOINTS ====================
@@ -134,6 +151,9 @@ public class ApprovalController {
 
         System.out.println("DEBUG: Found " + pendingFiles.size() + " pending files");
 
+        Map<Long, CommentCounter> counters = commentCounterService
+                .getCounters(pendingFiles.stream().map(CourseFile::getId).toList());
+
         List<Map<String, Object>> result = new ArrayList<>();
         for (CourseFile cf : pendingFiles) {
             Map<String, Object> item = new HashMap<>();
@@ -147,6 +167,7 @@ public class ApprovalController {
             item.put("section", cf.getSection());
             item.put("status", cf.getStatus());
             item.put("submittedDate", cf.getCreatedAt());
+            commentCounterService.putCounts(item, counters.get(cf.getId()));
             result.add(item);
         }
 
@@ -207,7 +228,7 @@ public class ApprovalController {
         approval.setStatus("APPROVED");
         approval.setComment(body.getOrDefault("comment", "Forwarded to HOD for final approval"));
         approval.setActedAt(LocalDateTime.now());
-        approvalRepository.save(approval);
+        remarkSearchService.indexApproval(approvalRepository.save(approval));
 
         // Update course file status
         courseFile.setStatus("UNDER_REVIEW_HOD");
@@ -222,6 +243,7 @@ public class ApprovalController {
      * Subject Head returns to teacher
      */
     @PostMapping("/subject-head/approvals/{courseFileId}/return")
+    @Transactional
     public ResponseEntity<Map<String, Object>> subjectHeadReturn(
             @PathVariable Long courseFileId,
             @RequestBody Map<String, String> body,
@@ -248,7 +270,7 @@ public class ApprovalController {
         approval.setStatus("RETURNED");
         approval.setComment(comment);
         approval.setActedAt(LocalDateTime.now());
-        approvalRepository.save(approval);
+        remarkSearchService.indexApproval(approvalRepository.save(approval));
 
         // Create a comment record so it appears in Comments & Discussions
         Comment returnComment = new Comment();
@@ -257,7 +279,14 @@ public class ApprovalController {
         returnComment.setText("[RETURNED] " + comment);
         returnComment.setCreatedAt(LocalDateTime.now());
         returnComment.setIsReceived(false);
-        commentRepository.save(returnComment);
+        Comment savedComment = commentRepository.save(returnComment);
+        commentCounterService.onCommentAdded(savedComment);
+        remarkSearchService.indexComment(savedComment);
+        commentEventBroker.publish(courseFile.getId(), "COMMENT_CREATED", Map.of(
+                "type", "COMMENT_CREATED",
+                "courseFileId", courseFile.getId(),
+                "commentId", savedComment.getId(),
+                "comment", commentThreadService.toDto(savedComment, Collections.emptyList())));
 
         // Update course file status
         courseFile.setStatus("RETURNED_BY_SUBJECT_HEAD");
@@ -286,6 +315,9 @@ public class ApprovalController {
         List<CourseFile> pendingFiles = courseFileRepository.findByDepartmentIdAndStatus(departmentId,
                 "UNDER_REVIEW_HOD");
 
+        Map<Long, CommentCounter> counters = commentCounterService
+                .getCounters(pendingFiles.stream().map(CourseFile::getId).toList());
+
         List<Map<String, Object>> result = new ArrayList<>();
         for (CourseFile cf : pendingFiles) {
             Map<String, Object> item = new HashMap<>();
@@ -306,6 +338,7 @@ public class ApprovalController {
                 item.put("forwardedAt", subjectHeadApproval.get().getActedAt());
                 item.put("subjectHeadComment", subjectHeadApproval.get().getComment());
             }
+            commentCounterService.putCounts(item, counters.get(cf.getId()));
 
             result.add(item);
         }
@@ -337,7 +370,7 @@ public class ApprovalController {
         approval.setStatus("APPROVED");
         approval.setComment(body.getOrDefault("comment", "Final approval granted"));
         approval.setActedAt(LocalDateTime.now());
-        approvalRepository.save(approval);
+        remarkSearchService.indexApproval(approvalRepository.save(approval));
 
         // Update course file status
         courseFile.setStatus("APPROVED");
@@ -352,6 +385,7 @@ public class ApprovalController {
      * HOD returns to teacher
      */
     @PostMapping("/hod/approvals/{courseFileId}/return")
+    @Transactional
     public ResponseEntity<Map<String, Object>> hodReturn(
             @PathVariable Long courseFileId,
             @RequestBody Map<String, String> body,
@@ -378,7 +412,7 @@ public class ApprovalController {
         approval.setStatus("RETURNED");
         approval.setComment(comment);
         approval.setActedAt(LocalDateTime.now());
-        approvalRepository.save(approval);
+        remarkSearchService.indexApproval(approvalRepository.save(approval));
 
         // Create a comment record so it appears in Comments & Discussions
         Comment returnComment = new Comment();
@@ -387,7 +421,14 @@ public class ApprovalController {
         returnComment.setText("[RETURNED BY HOD] " + comment);
         returnComment.setCreatedAt(LocalDateTime.now());
         returnComment.setIsReceived(false);
-        commentRepository.save(returnComment);
+        Comment savedComment = commentRepository.save(returnComment);
+        commentCounterService.onCommentAdded(savedComment);
+        remarkSearchService.indexComment(savedComment);
+        commentEventBroker.publish(courseFile.getId(), "COMMENT_CREATED", Map.of(
+                "type", "COMMENT_CREATED",
+                "courseFileId", courseFile.getId(),
+                "commentId", savedComment.getId(),
+                "comment", commentThreadService.toDto(savedComment, Collections.emptyList())));
 
         // Update course file status
         courseFile.setStatus("RETURNED_BY_HOD");
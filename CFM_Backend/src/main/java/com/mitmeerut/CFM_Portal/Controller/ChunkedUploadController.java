@@ -0,0 +1,108 @@
+package com.mitmeerut.CFM_Portal.Controller;
+
+import com.mitmeerut.CFM_Portal.Model.Document;
+import com.mitmeerut.CFM_Portal.Model.UploadSession;
+import com.mitmeerut.CFM_Portal.Service.ChunkedUploadService;
+import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Resumable upload protocol for large files:
+ *
+ * 1. POST /uploads {headingId, fileName, totalSize, contentType?, chunkSize?}
+ * 2. PUT /uploads/{id}/chunks/{index}?offset=index*chunkSize, raw bytes as body
+ * 3. GET /uploads/{id} for progress and the chunks still missing
+ * 4. POST /uploads/{id}/complete creates the document
+ */
+@RestController
+@RequestMapping("/api/teacher/documents/uploads")
+public class ChunkedUploadController {
+
+    private final ChunkedUploadService uploadService;
+
+    @Autowired
+    public ChunkedUploadController(ChunkedUploadService uploadService) {
+        this.uploadService = uploadService;
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> createSession(@RequestBody Map<String, Object> body,
+            @AuthenticationPrincipal CustomUserDetails user) {
+        UploadSession session = uploadService.create(user.getTeacher().getId(),
+                toLong(body.get("headingId")),
+                (String) body.get("fileName"),
+                (String) body.get("contentType"),
+                toLong(body.get("totalSize")),
+                body.get("chunkSize") != null ? toLong(body.get("chunkSize")).intValue() : null);
+        return ResponseEntity.status(HttpStatus.CREATED).body(progress(session));
+    }
+
+    @PutMapping("/{id}/chunks/{index}")
+    public ResponseEntity<Map<String, Object>> putChunk(@PathVariable String id, @PathVariable int index,
+            @RequestParam("offset") long offset, HttpServletRequest request,
+            @AuthenticationPrincipal CustomUserDetails user) throws IOException {
+        UploadSession session = uploadService.writeChunk(id, user.getTeacher().getId(), index, offset,
+                request.getInputStream());
+        return ResponseEntity.ok(progress(session));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> getProgress(@PathVariable String id,
+            @AuthenticationPrincipal CustomUserDetails user) {
+        return ResponseEntity.ok(progress(uploadService.getSession(id, user.getTeacher().getId())));
+    }
+
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<Map<String, Object>> complete(@PathVariable String id,
+            @AuthenticationPrincipal CustomUserDetails user) {
+        Document document = uploadService.complete(id, user.getTeacher().getId());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", document.getId());
+        response.put("fileName", document.getFileName());
+        response.put("fileSize", document.getFileSize());
+        response.put("versionNo", document.getVersionNo());
+        response.put("uploadedAt", document.getUploadedAt());
+        response.put("type", document.getType());
+        return ResponseEntity.ok(response);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Map<String, String>> cancel(@PathVariable String id,
+            @AuthenticationPrincipal CustomUserDetails user) {
+        uploadService.cancel(id, user.getTeacher().getId());
+        return ResponseEntity.ok(Map.of("message", "Upload cancelled"));
+    }
+
+    private Map<String, Object> progress(UploadSession session) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("uploadId", session.getId());
+        map.put("headingId", session.getHeadingId());
+        map.put("fileName", session.getFileName());
+        map.put("status", session.getStatus());
+        map.put("totalSize", session.getTotalSize());
+        map.put("chunkSize", session.getChunkSize());
+        map.put("chunkCount", session.getChunkCount());
+        map.put("receivedCount", session.getReceivedCount());
+        map.put("receivedBytes", uploadService.receivedBytes(session));
+        map.put("missingChunks", uploadService.missingChunks(session));
+        map.put("documentId", session.getDocumentId());
+        map.put("expiresAt", session.getExpiresAt());
+        return map;
+    }
+
+    private Long toLong(Object value) {
+        if (value == null) {
+            return null;
+        }
+        return Long.valueOf(value.toString());
+    }
+}
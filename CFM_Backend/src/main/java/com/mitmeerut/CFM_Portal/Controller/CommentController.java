@@ -7,15 +7,23 @@ import com.mitmeerut.CFM_Portal.Repository.DocumentRepository;
 import com.mitmeerut.CFM_Portal.Repository.HeadingRepository;
 import com.mitmeerut.CFM_Portal.Repository.NotificationRepository;
 import com.mitmeerut.CFM_Portal.Repository.UserRepository;
+import com.mitmeerut.CFM_Portal.Service.CommentCounterService;
+import com.mitmeerut.CFM_Portal.Service.CommentEventBroker;
+import com.mitmeerut.CFM_Portal.Service.CommentThreadService;
+import com.mitmeerut.CFM_Portal.Service.RemarkSearchService;
 import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
+import jakarta.transaction.Transactional;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/comments")
@@ -27,6 +35,10 @@ public class CommentController {
     private final DocumentRepository documentRepository;
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
+    private final CommentThreadService commentThreadService;
+    private final RemarkSearchService remarkSearchService;
+    private final CommentCounterService commentCounterService;
+    private final CommentEventBroker commentEventBroker;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public CommentController(CommentRepository commentRepository,
@@ -34,13 +46,21 @@ public class CommentController {
             HeadingRepository headingRepository,
             DocumentRepository documentRepository,
             NotificationRepository notificationRepository,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            CommentThreadService commentThreadService,
+            RemarkSearchService remarkSearchService,
+            CommentCounterService commentCounterService,
+            CommentEventBroker commentEventBroker) {
         this.commentRepository = commentRepository;
         this.courseFileRepository = courseFileRepository;
         this.headingRepository = headingRepository;
         this.documentRepository = documentRepository;
         this.notificationRepository = notificationRepository;
         this.userRepository = userRepository;
+        this.commentThreadService = commentThreadService;
+        this.remarkSearchService = remarkSearchService;
+        this.commentCounterService = commentCounterService;
+        this.commentEventBroker = commentEventBroker;
     }
 
     // ==================== GET COMMENTS ====================
@@ -58,35 +78,7 @@ public class CommentController {
             return ResponseEntity.ok(Collections.emptyList());
         }
 
-        // Get comments authored by this user
-        List<Comment> authoredComments = commentRepository.findByAuthor_Id(teacher.getId());
-
-        // Get comments on user's course files
-        List<CourseFile> myCourseFiles = courseFileRepository.findByCreatedById(teacher.getId());
-        Set<Long> myCourseFileIds = myCourseFiles.stream()
-                .map(CourseFile::getId)
-                .collect(Collectors.toSet());
-
-        // Get all root comments (no parent) for user's course files
-        List<Comment> allComments = commentRepository.findAll();
-        Set<Comment> relevantComments = new HashSet<>(authoredComments);
-
-        for (Comment c : allComments) {
-            if (c.getParentComment() == null) { // Root comments only
-                if (c.getCourseFile() != null && myCourseFileIds.contains(c.getCourseFile().getId())) {
-                    relevantComments.add(c);
-                }
-            }
-        }
-
-        // Convert to DTOs with replies
-        List<Map<String, Object>> result = relevantComments.stream()
-                .filter(c -> c.getParentComment() == null) // Only root comments
-                .sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()))
-                .map(this::commentToDto)
-                .collect(Collectors.toList());
-
-        return ResponseEntity.ok(result);
+        return ResponseEntity.ok(commentThreadService.getThreadsForTeacher(teacher.getId()));
     }
 
     /**
@@ -97,48 +89,90 @@ public class CommentController {
             @PathVariable Long courseFileId,
             @AuthenticationPrincipal CustomUserDetails user) {
 
-        List<Comment> comments = commentRepository.findByCourseFile_Id(courseFileId);
+        List<Map<String, Object>> threads = commentThreadService.getThreadsForCourseFile(courseFileId);
 
-        // Filter to root comments only, include replies in DTO
-        List<Map<String, Object>> result = comments.stream()
-                .filter(c -> c.getParentComment() == null)
-                .sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()))
-                .map(this::commentToDto)
-                .collect(Collectors.toList());
+        // Owner opened the thread: clear their unread badge
+        Teacher teacher = user.getTeacher();
+        if (teacher != null) {
+            courseFileRepository.findById(courseFileId)
+                    .filter(cf -> cf.getCreatedBy() != null && cf.getCreatedBy().getId().equals(teacher.getId()))
+                    .ifPresent(commentCounterService::markRead);
+        }
 
-        return ResponseEntity.ok(result);
+        return ResponseEntity.ok(threads);
+    }
+
+    /**
+     * Live discussion stream (Server-Sent Events) for a course file.
+     * Pushes COMMENT_CREATED, REPLY_CREATED, COMMENT_UPDATED and COMMENT_DELETED
+     * after they are committed. Reconnecting clients send Last-Event-ID to
+     * receive what they missed.
+     */
+    @GetMapping(value = "/course-file/{courseFileId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCourseFileComments(
+            @PathVariable Long courseFileId,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            @AuthenticationPrincipal CustomUserDetails user) {
+
+        return commentEventBroker.subscribe(courseFileId, lastEventId);
     }
 
     /**
      * Get all comments for department (Subject Head / HOD)
+     * Without "limit" the full list is returned (compatibility mode). With "limit"
+     * a keyset page is returned: { items, nextCursor, hasMore }; pass nextCursor
+     * back as "cursor" to get the following page.
      */
     @GetMapping("/department")
-    public ResponseEntity<List<Map<String, Object>>> getDepartmentComments(
+    public ResponseEntity<?> getDepartmentComments(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long courseId,
+            @RequestParam(required = false) Long authorId,
+            @RequestParam(required = false) Long headingId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
             @AuthenticationPrincipal CustomUserDetails user) {
 
         Teacher teacher = user.getTeacher();
         if (teacher == null || teacher.getDepartment() == null) {
+            if (limit != null) {
+                return ResponseEntity.ok(Map.of("items", Collections.emptyList(), "hasMore", false));
+            }
             return ResponseEntity.ok(Collections.emptyList());
         }
 
         Long departmentId = teacher.getDepartment().getId();
 
-        // Get all comments for course files in this department
-        List<CourseFile> deptCourseFiles = courseFileRepository.findByDepartmentId(departmentId);
-        Set<Long> deptCourseFileIds = deptCourseFiles.stream()
-                .map(CourseFile::getId)
-                .collect(Collectors.toSet());
+        if (limit == null) {
+            return ResponseEntity.ok(commentThreadService.getThreadsForDepartment(departmentId));
+        }
+
+        try {
+            return ResponseEntity.ok(commentThreadService.getDepartmentFeedPage(
+                    departmentId, courseId, authorId, headingId, from, to, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 
-        List<Comment> allComments = commentRepository.findAll();
+    /**
+     * Full-text search over comments and review remarks in the user's department
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<Map<String, Object>>> searchComments(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) Long courseFileId,
+            @RequestParam(defaultValue = "20") int limit,
+            @AuthenticationPrincipal CustomUserDetails user) {
 
-        List<Map<String, Object>> result = allComments.stream()
-                .filter(c -> c.getParentComment() == null) // Root comments
-                .filter(c -> c.getCourseFile() != null && deptCourseFileIds.contains(c.getCourseFile().getId()))
-                .sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()))
-                .map(this::commentToDto)
-                .collect(Collectors.toList());
+        Teacher teacher = user.getTeacher();
+        if (teacher == null || teacher.getDepartment() == null) {
+            return ResponseEntity.ok(Collections.emptyList());
+        }
 
-        return ResponseEntity.ok(result);
+        return ResponseEntity.ok(remarkSearchService.search(query, teacher.getDepartment().getId(),
+                courseFileId, limit));
     }
 
     // ==================== CREATE COMMENT ====================
@@ -147,6 +181,7 @@ public class CommentController {
      * Create a new comment
      */
     @PostMapping
+    @Transactional
     public ResponseEntity<Map<String, Object>> createComment(
             @RequestBody CreateCommentRequest request,
             @AuthenticationPrincipal CustomUserDetails user) {
@@ -184,6 +219,10 @@ public class CommentController {
         }
 
         Comment saved = commentRepository.save(comment);
+        commentCounterService.onCommentAdded(saved);
+        remarkSearchService.indexComment(saved);
+        Map<String, Object> dto = commentThreadService.toDto(saved, Collections.emptyList());
+        publishEvent(saved, "COMMENT_CREATED", "comment", dto);
 
         // Create notification for course file owner if comment is on their file
         if (request.courseFileId != null) {
@@ -202,13 +241,14 @@ public class CommentController {
             }
         }
 
-        return ResponseEntity.ok(commentToDto(saved));
+        return ResponseEntity.ok(dto);
     }
 
     /**
      * Reply to an existing comment
      */
     @PostMapping("/{commentId}/reply")
+    @Transactional
     public ResponseEntity<Map<String, Object>> replyToComment(
             @PathVariable Long commentId,
             @RequestBody ReplyRequest request,
@@ -233,6 +273,9 @@ public class CommentController {
         reply.setIsReceived(false);
 
         Comment saved = commentRepository.save(reply);
+        commentCounterService.onCommentAdded(saved);
+        remarkSearchService.indexComment(saved);
+        publishEvent(saved, "REPLY_CREATED", "reply", commentThreadService.replyToDto(saved));
 
         // Create notification for parent comment author
         if (parentComment.getAuthor() != null && !parentComment.getAuthor().getId().equals(teacher.getId())) {
@@ -272,14 +315,18 @@ public class CommentController {
 
         comment.setText(request.text);
         Comment saved = commentRepository.save(comment);
+        remarkSearchService.indexComment(saved);
 
-        return ResponseEntity.ok(commentToDto(saved));
+        Map<String, Object> dto = commentThreadService.getThread(saved);
+        publishEvent(saved, "COMMENT_UPDATED", "comment", dto);
+        return ResponseEntity.ok(dto);
     }
 
     /**
      * Delete own comment
      */
     @DeleteMapping("/{id}")
+    @Transactional
     public ResponseEntity<Map<String, String>> deleteComment(
             @PathVariable Long id,
             @AuthenticationPrincipal CustomUserDetails user) {
@@ -293,90 +340,30 @@ public class CommentController {
         }
 
         commentRepository.delete(comment);
+        commentCounterService.onCommentRemoved(comment);
+        remarkSearchService.removeComment(id);
+        publishEvent(comment, "COMMENT_DELETED", null, null);
         return ResponseEntity.ok(Map.of("message", "Comment deleted successfully"));
     }
 
     // ==================== HELPER METHODS ====================
 
-    private Map<String, Object> commentToDto(Comment comment) {
-        Map<String, Object> dto = new HashMap<>();
-        dto.put("id", comment.getId());
-        dto.put("text", comment.getText());
-        dto.put("createdAt", comment.getCreatedAt());
-        dto.put("isReceived", comment.getIsReceived());
-
-        // Author info
-        if (comment.getAuthor() != null) {
-            Map<String, Object> author = new HashMap<>();
-            author.put("id", comment.getAuthor().getId());
-            author.put("name", comment.getAuthor().getName());
-            author.put("designation",
-                    comment.getAuthor().getDesignation() != null ? comment.getAuthor().getDesignation() : "");
-            author.put("avatar", getInitials(comment.getAuthor().getName()));
-            dto.put("author", author);
+    // Push a live event to subscribers of the comment's course file (after commit)
+    private void publishEvent(Comment comment, String type, String key, Map<String, Object> dto) {
+        if (comment.getCourseFile() == null) {
+            return;
         }
-
-        // Course file info
-        if (comment.getCourseFile() != null) {
-            Map<String, Object> cf = new HashMap<>();
-            cf.put("id", comment.getCourseFile().getId());
-            cf.put("courseCode", comment.getCourseFile().getCourse().getCode());
-            cf.put("courseTitle", comment.getCourseFile().getCourse().getTitle());
-            dto.put("courseFile", cf);
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", type);
+        event.put("courseFileId", comment.getCourseFile().getId());
+        event.put("commentId", comment.getId());
+        if (comment.getParentComment() != null) {
+            event.put("parentCommentId", comment.getParentComment().getId());
         }
-
-        // Document info
-        if (comment.getDocument() != null) {
-            Map<String, Object> doc = new HashMap<>();
-            doc.put("id", comment.getDocument().getId());
-            doc.put("fileName", comment.getDocument().getFileName());
-            dto.put("document", doc);
-        }
-
-        // Heading info
-        if (comment.getHeading() != null) {
-            Map<String, Object> heading = new HashMap<>();
-            heading.put("id", comment.getHeading().getId());
-            heading.put("title", comment.getHeading().getTitle());
-            dto.put("heading", heading);
-        }
-
-        // Get replies
-        List<Comment> allComments = commentRepository.findAll();
-        List<Map<String, Object>> replies = allComments.stream()
-                .filter(c -> c.getParentComment() != null && c.getParentComment().getId().equals(comment.getId()))
-                .sorted((a, b) -> a.getCreatedAt().compareTo(b.getCreatedAt()))
-                .map(this::replyToDto)
-                .collect(Collectors.toList());
-        dto.put("replies", replies);
-
-        return dto;
-    }
-
-    private Map<String, Object> replyToDto(Comment reply) {
-        Map<String, Object> dto = new HashMap<>();
-        dto.put("id", reply.getId());
-        dto.put("text", reply.getText());
-        dto.put("createdAt", reply.getCreatedAt());
-
-        if (reply.getAuthor() != null) {
-            dto.put("author", reply.getAuthor().getName());
-            dto.put("avatar", getInitials(reply.getAuthor().getName()));
-            dto.put("authorDesignation",
-                    reply.getAuthor().getDesignation() != null ? reply.getAuthor().getDesignation() : "");
-        }
-
-        return dto;
-    }
-
-    private String getInitials(String name) {
-        if (name == null || name.isEmpty())
-            return "??";
-        String[] parts = name.split(" ");
-        if (parts.length >= 2) {
-            return (parts[0].charAt(0) + "" + parts[parts.length - 1].charAt(0)).toUpperCase();
+        if (key != null) {
+            event.put(key, dto);
         }
-        return name.substring(0, Math.min(2, name.length())).toUpperCase();
+        commentEventBroker.publish(comment.getCourseFile().getId(), type, event);
     }
 
     // Helper method to check if teacher is a Subject Head for any course
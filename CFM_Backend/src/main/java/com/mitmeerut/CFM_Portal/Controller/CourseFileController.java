@@ -1,6 +1,8 @@
 package com.mitmeerut.CFM_Portal.Controller;
 
+import com.mitmeerut.CFM_Portal.Model.CommentCounter;
 import com.mitmeerut.CFM_Portal.Model.CourseFile;
+import com.mitmeerut.CFM_Portal.Service.CommentCounterService;
 import com.mitmeerut.CFM_Portal.Service.CourseFileService;
 import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,10 +17,13 @@ import java.util.*;
 public class CourseFileController {
 
     private final CourseFileService courseFileService;
+    private final CommentCounterService commentCounterService;
 
     @Autowired
-    public CourseFileController(CourseFileService courseFileService) {
+    public CourseFileController(CourseFileService courseFileService,
+            CommentCounterService commentCounterService) {
         this.courseFileService = courseFileService;
+        this.commentCounterService = commentCounterService;
     }
 
     @PostMapping
@@ -33,6 +38,8 @@ public class CourseFileController {
             @AuthenticationPrincipal CustomUserDetails user) {
         Long teacherId = user.getTeacher().getId();
         List<CourseFile> courseFiles = courseFileService.getCourseFilesByTeacher(teacherId);
+        Map<Long, CommentCounter> counters = commentCounterService
+                .getCounters(courseFiles.stream().map(CourseFile::getId).toList());
 
         List<Map<String, Object>> result = new ArrayList<>();
         for (CourseFile cf : courseFiles) {
@@ -51,6 +58,7 @@ public class CourseFileController {
                 courseInfo.put("title", cf.getCourse().getTitle());
                 item.put("course", courseInfo);
             }
+            commentCounterService.putCounts(item, counters.get(cf.getId()));
 
             result.add(item);
         }
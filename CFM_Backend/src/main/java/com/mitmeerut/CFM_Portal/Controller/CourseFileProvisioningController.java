@@ -0,0 +1,83 @@
+package com.mitmeerut.CFM_Portal.Controller;
+
+import com.mitmeerut.CFM_Portal.Model.ProvisioningJob;
+import com.mitmeerut.CFM_Portal.Service.CourseFileProvisioningService;
+import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+/**
+ * Bulk creation of a department's course files for an academic year.
+ * POST starts a background job; clients poll GET /{id} for progress.
+ */
+@RestController
+@RequestMapping("/api/hod/course-file-jobs")
+public class CourseFileProvisioningController {
+
+    private final CourseFileProvisioningService provisioningService;
+
+    @Autowired
+    public CourseFileProvisioningController(CourseFileProvisioningService provisioningService) {
+        this.provisioningService = provisioningService;
+    }
+
+    @PostMapping
+    @PreAuthorize("hasRole('HOD')")
+    public ResponseEntity<?> start(@RequestBody Map<String, Object> body,
+            @AuthenticationPrincipal CustomUserDetails user) {
+        try {
+            String academicYear = (String) body.get("academicYear");
+            Long templateId = body.get("templateId") != null
+                    ? Long.valueOf(body.get("templateId").toString())
+                    : null;
+            ProvisioningJob job = provisioningService.start(user.getDepartmentId(), academicYear, templateId,
+                    user.getUserId());
+            return ResponseEntity.accepted().body(toMap(job));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping
+    @PreAuthorize("hasRole('HOD')")
+    public ResponseEntity<?> list(@AuthenticationPrincipal CustomUserDetails user) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (ProvisioningJob job : provisioningService.getJobs(user.getDepartmentId())) {
+            result.add(toMap(job));
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasRole('HOD')")
+    public ResponseEntity<?> get(@PathVariable Long id, @AuthenticationPrincipal CustomUserDetails user) {
+        try {
+            return ResponseEntity.ok(toMap(provisioningService.getJob(id, user.getDepartmentId())));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> toMap(ProvisioningJob job) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", job.getId());
+        map.put("academicYear", job.getAcademicYear());
+        map.put("templateId", job.getTemplateId());
+        map.put("status", job.getStatus());
+        map.put("totalAssignments", job.getTotalAssignments());
+        map.put("processedCount", job.getProcessedCount());
+        map.put("createdCount", job.getCreatedCount());
+        map.put("skippedCount", job.getSkippedCount());
+        map.put("failedCount", job.getFailedCount());
+        map.put("lastError", job.getLastError());
+        map.put("createdAt", job.getCreatedAt());
+        map.put("updatedAt", job.getUpdatedAt());
+        map.put("finishedAt", job.getFinishedAt());
+        return map;
+    }
+}
@@ -0,0 +1,107 @@
+package com.mitmeerut.CFM_Portal.Controller;
+
+import com.mitmeerut.CFM_Portal.Model.DepartmentExportJob;
+import com.mitmeerut.CFM_Portal.Model.DepartmentExportPart;
+import com.mitmeerut.CFM_Portal.Service.DepartmentExportService;
+import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Department-wide export of approved course files for an academic year.
+ * POST starts a background job; clients poll GET /{id} for progress and
+ * download each sealed part (with Range support) while the rest is written.
+ */
+@RestController
+@RequestMapping("/api/hod/exports")
+public class DepartmentExportController {
+
+    private final DepartmentExportService exportService;
+
+    @Autowired
+    public DepartmentExportController(DepartmentExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @PostMapping
+    @PreAuthorize("hasRole('HOD')")
+    public ResponseEntity<?> start(@RequestBody Map<String, Object> body,
+            @AuthenticationPrincipal CustomUserDetails user) {
+        try {
+            DepartmentExportJob job = exportService.start(user.getDepartmentId(),
+                    (String) body.get("academicYear"), user.getUserId());
+            return ResponseEntity.accepted().body(toMap(job, List.of()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping
+    @PreAuthorize("hasRole('HOD')")
+    public ResponseEntity<?> list(@AuthenticationPrincipal CustomUserDetails user) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (DepartmentExportJob job : exportService.getJobs(user.getDepartmentId())) {
+            result.add(toMap(job, null));
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasRole('HOD')")
+    public ResponseEntity<?> get(@PathVariable Long id, @AuthenticationPrincipal CustomUserDetails user) {
+        try {
+            DepartmentExportJob job = exportService.getJob(id, user.getDepartmentId());
+            return ResponseEntity.ok(toMap(job, exportService.getParts(id)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}/parts/{partNo}")
+    @PreAuthorize("hasRole('HOD')")
+    public void downloadPart(@PathVariable Long id, @PathVariable Integer partNo, HttpServletRequest request,
+            HttpServletResponse response, @AuthenticationPrincipal CustomUserDetails user) throws IOException {
+        exportService.getJob(id, user.getDepartmentId());
+        DepartmentExportPart part = exportService.getPart(id, partNo);
+        DocumentFileResponses.serve(request, response, exportService.partFile(part), part.getFileName(),
+                "application/zip", false, null);
+    }
+
+    private Map<String, Object> toMap(DepartmentExportJob job, List<DepartmentExportPart> parts) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", job.getId());
+        map.put("academicYear", job.getAcademicYear());
+        map.put("status", job.getStatus());
+        map.put("totalCourseFiles", job.getTotalCourseFiles());
+        map.put("completedCount", job.getCompletedCount());
+        map.put("exportedCount", job.getExportedCount());
+        map.put("partCount", job.getPartCount());
+        map.put("bytesWritten", job.getBytesWritten());
+        map.put("lastError", job.getLastError());
+        map.put("createdAt", job.getCreatedAt());
+        map.put("updatedAt", job.getUpdatedAt());
+        map.put("finishedAt", job.getFinishedAt());
+        if (parts != null) {
+            List<Map<String, Object>> partList = new ArrayList<>();
+            for (DepartmentExportPart part : parts) {
+                Map<String, Object> p = new LinkedHashMap<>();
+                p.put("partNo", part.getPartNo());
+                p.put("fileName", part.getFileName());
+                p.put("sizeBytes", part.getSizeBytes());
+                p.put("sealedAt", part.getSealedAt());
+                p.put("url", "/api/hod/exports/" + job.getId() + "/parts/" + part.getPartNo());
+                partList.add(p);
+            }
+            map.put("parts", partList);
+        }
+        return map;
+    }
+}
@@ -3,19 +3,16 @@ package com.mitmeerut.CFM_Portal.Controller;
 import com.mitmeerut.CFM_Portal.Model.Document;
 import com.mitmeerut.CFM_Portal.Service.DocumentService;
 import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
+import com.mitmeerut.CFM_Portal.storage.BlobStore;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
 
 @RestController
@@ -23,20 +20,23 @@ import java.util.*;
 public class DocumentController {
 
     private final DocumentService documentService;
+    private final BlobStore blobStore;
 
     @Autowired
-    public DocumentController(DocumentService documentService) {
+    public DocumentController(DocumentService documentService, BlobStore blobStore) {
         this.documentService = documentService;
+        this.blobStore = blobStore;
     }
 
+    // Same multipart form as before (file, headingId, courseCode), read as a
+    // stream: no @RequestParam, which would make the container spool the body
     @PostMapping("/upload")
     public ResponseEntity<Map<String, Object>> uploadDocument(
-            @RequestParam("headingId") Long headingId,
-            @RequestParam("courseCode") String courseCode,
-            @RequestParam("file") MultipartFile file,
-            @AuthenticationPrincipal CustomUserDetails user) {
+            HttpServletRequest request,
+            @AuthenticationPrincipal CustomUserDetails user) throws IOException {
         Long teacherId = user.getTeacher().getId();
-        Document document = documentService.uploadDocument(headingId, file, teacherId, courseCode);
+        Document document = documentService.uploadDocument(request.getContentType(), request.getInputStream(),
+                teacherId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("id", document.getId());
@@ -60,8 +60,9 @@ public class DocumentController {
     @GetMapping("/heading/{headingId}")
     public ResponseEntity<List<Map<String, Object>>> getDocumentsByHeading(
             @PathVariable Long headingId,
+            @RequestParam(value = "history", defaultValue = "false") boolean history,
             @AuthenticationPrincipal CustomUserDetails user) {
-        List<Document> documents = documentService.getDocumentsByHeading(headingId);
+        List<Document> documents = documentService.getDocumentsByHeading(headingId, history);
         List<Map<String, Object>> result = new ArrayList<>();
 
         for (Document doc : documents) {
@@ -79,34 +80,23 @@ public class DocumentController {
     }
 
     @GetMapping("/download/{id}")
-    public ResponseEntity<Resource> downloadDocument(
+    public void downloadDocument(
             @PathVariable Long id,
+            HttpServletRequest request,
+            HttpServletResponse response,
             @AuthenticationPrincipal CustomUserDetails user) throws IOException {
         Document document = documentService.getDocumentById(id);
-        Path filePath = Paths.get(document.getFilePath());
-        Resource resource = new UrlResource(filePath.toUri());
-
-        if (!resource.exists()) {
-            throw new RuntimeException("File not found");
-        }
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + document.getFileName() + "\"")
-                .body(resource);
+        DocumentFileResponses.serveDocument(request, response, blobStore, document,
+                MediaType.APPLICATION_OCTET_STREAM_VALUE, false);
     }
 
     @GetMapping("/view/{id}")
-    public ResponseEntity<Resource> viewDocument(
+    public void viewDocument(
             @PathVariable Long id,
+            HttpServletRequest request,
+            HttpServletResponse response,
             @AuthenticationPrincipal CustomUserDetails user) throws IOException {
         Document document = documentService.getDocumentById(id);
-        Path filePath = Paths.get(document.getFilePath());
-        Resource resource = new UrlResource(filePath.toUri());
-
-        if (!resource.exists()) {
-            throw new RuntimeException("File not found");
-        }
 
         // Determine content type based on file extension
         String fileName = document.getFileName().toLowerCase();
@@ -124,9 +114,6 @@ public class DocumentController {
             contentType = MediaType.TEXT_PLAIN;
         }
 
-        return ResponseEntity.ok()
-                .contentType(contentType)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + document.getFileName() + "\"")
-                .body(resource);
+        DocumentFileResponses.serveDocument(request, response, blobStore, document, contentType.toString(), true);
     }
 }
@@ -0,0 +1,380 @@
+package com.mitmeerut.CFM_Portal.Controller;
+
+import com.mitmeerut.CFM_Portal.Model.Document;
+import com.mitmeerut.CFM_Portal.storage.BlobStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves a stored file for document view/download with HTTP caching and
+ * byte ranges:
+ *
+ * - strong ETag (the blob's SHA-256, or size + mtime for older files) and
+ * Last-Modified; If-None-Match / If-Modified-Since answer 304, If-Match /
+ * If-Unmodified-Since answer 412;
+ * - Range with one or more byte ranges (206, multipart/byteranges for
+ * several), If-Range, and 416 for unsatisfiable ranges;
+ * - for files on local disk the body goes through Tomcat's sendfile when the
+ * connector offers it (no copy through the heap at all); otherwise, and for
+ * BlobStore backends without local files, it is copied from the requested
+ * offset through one fixed-size buffer per request.
+ *
+ * Blob-backed documents never change, so they may be cached for a year;
+ * older files are revalidated on every use.
+ */
+final class DocumentFileResponses {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final int COPY_BUFFER = 64 * 1024;
+
+    // Anything beyond this is more likely abuse than a PDF viewer
+    private static final int MAX_RANGES = 32;
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate()
+            .immutable();
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private record Range(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    private DocumentFileResponses() {
+    }
+
+    // Body source: a local file (sendfile when offered) or a stream from the BlobStore
+    private interface Content {
+        // File on local disk for sendfile, or null
+        Path file();
+
+        void copy(Range range, OutputStream out) throws IOException;
+    }
+
+    /**
+     * A document's content: from the BlobStore by its blob hash, or from its
+     * legacy file path if it has not been migrated yet.
+     */
+    static void serveDocument(HttpServletRequest request, HttpServletResponse response, BlobStore store,
+            Document document, String contentType, boolean inline) throws IOException {
+        String key = document.getBlobHash();
+        // Not migrated yet, or migration still writing the object
+        if (key == null || document.getFilePath() != null && !store.exists(key)) {
+            if (document.getFilePath() == null) {
+                throw new RuntimeException("File not found");
+            }
+            serve(request, response, Paths.get(document.getFilePath()), document.getFileName(), contentType,
+                    inline, null);
+            return;
+        }
+        Path local = store.localPath(key);
+        if (local != null) {
+            serve(request, response, local, document.getFileName(), contentType, inline, key);
+            return;
+        }
+        if (document.getFilePath() == null && !store.exists(key)) {
+            throw new RuntimeException("File not found");
+        }
+        Content content = new Content() {
+            public Path file() {
+                return null;
+            }
+
+            public void copy(Range range, OutputStream out) throws IOException {
+                try (InputStream in = store.open(key, range.start())) {
+                    long copied = StreamUtils.copyRange(in, out, 0, range.length() - 1);
+                    if (copied < range.length()) {
+                        throw new IOException("Object ended before " + (range.end() + 1) + " bytes");
+                    }
+                }
+            }
+        };
+        serve(request, response, content, store.size(key), store.lastModified(key), document.getFileName(),
+                contentType, inline, key);
+    }
+
+    /**
+     * @param blobHash SHA-256 of a content-addressed file, or null for a file
+     *                 stored before the blob store
+     */
+    static void serve(HttpServletRequest request, HttpServletResponse response, Path file, String fileName,
+            String contentType, boolean inline, String blobHash) throws IOException {
+        if (!Files.isRegularFile(file) || !Files.isReadable(file)) {
+            throw new RuntimeException("File not found");
+        }
+        Content content = new Content() {
+            public Path file() {
+                return file;
+            }
+
+            public void copy(Range range, OutputStream out) throws IOException {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    channel.position(range.start());
+                    copyRange(Channels.newInputStream(channel), range, out);
+                }
+            }
+        };
+        serve(request, response, content, Files.size(file), Files.getLastModifiedTime(file).toMillis(), fileName,
+                contentType, inline, blobHash);
+    }
+
+    private static void serve(HttpServletRequest request, HttpServletResponse response, Content content,
+            long length, long modifiedMillis, String fileName, String contentType, boolean inline,
+            String blobHash) throws IOException {
+        // HTTP dates have second precision
+        long lastModified = modifiedMillis / 1000 * 1000;
+        String etag = blobHash != null ? "\"" + blobHash + "\""
+                : "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                (blobHash != null ? IMMUTABLE : REVALIDATE).getHeaderValue());
+
+        // ---- preconditions (RFC 9110 section 13.2.2 order) ----
+        String ifMatch = request.getHeader(HttpHeaders.IF_MATCH);
+        if (ifMatch != null ? !matches(ifMatch, etag, false)
+                : modifiedSince(request, HttpHeaders.IF_UNMODIFIED_SINCE, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+            return;
+        }
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null ? matches(ifNoneMatch, etag, true)
+                : notModifiedSince(request, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                (inline ? ContentDisposition.inline() : ContentDisposition.attachment())
+                        .filename(fileName, StandardCharsets.UTF_8)
+                        .build()
+                        .toString());
+
+        List<Range> ranges = rangesToServe(request, length, etag, lastModified);
+        if (ranges == null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            if (length > 0) {
+                writeBody(request, response, content, new Range(0, length - 1));
+            }
+        } else if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+        } else if (ranges.size() == 1) {
+            Range range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, length));
+            response.setContentLengthLong(range.length());
+            writeBody(request, response, content, range);
+        } else {
+            writeMultipart(request, response, content, contentType, ranges, length);
+        }
+    }
+
+    // ==================== RANGES ====================
+
+    /**
+     * null = serve the whole file, empty = unsatisfiable, otherwise the ranges
+     * in request order. A malformed header is ignored, as RFC 9110 allows.
+     */
+    private static List<Range> rangesToServe(HttpServletRequest request, long length, String etag,
+            long lastModified) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null) {
+            boolean current;
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                current = ifRange.trim().equals(etag);
+            } else {
+                long date = parseDate(request, HttpHeaders.IF_RANGE);
+                current = date != -1 && date == lastModified;
+            }
+            if (!current) {
+                return null;
+            }
+        }
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<Range> ranges = new ArrayList<>(specs.length);
+        for (String raw : specs) {
+            String spec = raw.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                long start;
+                long end;
+                if (dash == 0) {
+                    // Suffix: the last N bytes
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffix);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    if (dash == spec.length() - 1) {
+                        end = length - 1;
+                    } else {
+                        long last = Long.parseLong(spec.substring(dash + 1));
+                        if (last < start) {
+                            return null;
+                        }
+                        end = Math.min(last, length - 1);
+                    }
+                }
+                if (start < length && start <= end) {
+                    ranges.add(new Range(start, end));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ranges;
+    }
+
+    private static String contentRange(Range range, long length) {
+        return "bytes " + range.start() + "-" + range.end() + "/" + length;
+    }
+
+    // ==================== BODY ====================
+
+    private static void writeBody(HttpServletRequest request, HttpServletResponse response, Content content,
+            Range range) throws IOException {
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (content.file() != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat writes the file itself after the servlet returns (end is exclusive)
+            request.setAttribute(SENDFILE_FILENAME, content.file().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return;
+        }
+        content.copy(range, response.getOutputStream());
+    }
+
+    private static void writeMultipart(HttpServletRequest request, HttpServletResponse response, Content content,
+            String contentType, List<Range> ranges, long length) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (Range range : ranges) {
+            byte[] head = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(head);
+            contentLength += head.length + range.length();
+        }
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += tail.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            out.write(partHeaders.get(i));
+            content.copy(ranges.get(i), out);
+        }
+        out.write(tail);
+    }
+
+    // Not FileChannel.transferTo: into a channel wrapped around the servlet
+    // stream it copies through small temporary buffers and is several times slower
+    private static void copyRange(InputStream in, Range range, OutputStream out) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER];
+        long remaining = range.length();
+        while (remaining > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (n < 0) {
+                throw new IOException("File ended before " + (range.end() + 1) + " bytes");
+            }
+            out.write(buffer, 0, n);
+            remaining -= n;
+        }
+    }
+
+    // ==================== VALIDATORS ====================
+
+    // Comma-separated entity tags; If-None-Match compares weakly, If-Match strongly
+    private static boolean matches(String header, String etag, boolean weak) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                if (!weak) {
+                    continue;
+                }
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean notModifiedSince(HttpServletRequest request, long lastModified) {
+        long since = parseDate(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return since != -1 && lastModified <= since;
+    }
+
+    private static boolean modifiedSince(HttpServletRequest request, String header, long lastModified) {
+        long since = parseDate(request, header);
+        return since != -1 && lastModified > since;
+    }
+
+    private static long parseDate(HttpServletRequest request, String header) {
+        try {
+            return request.getDateHeader(header);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package com.mitmeerut.CFM_Portal.Controller;
 
 import com.mitmeerut.CFM_Portal.Model.Heading;
-import com.mitmeerut.CFM_Portal.Model.Document;
 import com.mitmeerut.CFM_Portal.Service.HeadingService;
-import com.mitmeerut.CFM_Portal.Service.DocumentService;
+import com.mitmeerut.CFM_Portal.dto.HeadingBatchRequest;
+import com.mitmeerut.CFM_Portal.Service.HeadingTreeLoader;
 import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -17,12 +17,12 @@ import java.util.*;
 public class HeadingController {
 
     private final HeadingService headingService;
-    private final DocumentService documentService;
+    private final HeadingTreeLoader headingTreeLoader;
 
     @Autowired
-    public HeadingController(HeadingService headingService, DocumentService documentService) {
+    public HeadingController(HeadingService headingService, HeadingTreeLoader headingTreeLoader) {
         this.headingService = headingService;
-        this.documentService = documentService;
+        this.headingTreeLoader = headingTreeLoader;
     }
 
     // DTO for creating heading
@@ -38,6 +38,11 @@ public class HeadingController {
         public String title;
     }
 
+    // DTO for moving heading (null parent = make it a root heading)
+    public static class MoveHeadingRequest {
+        public Long parentHeadingId;
+    }
+
     @PostMapping
     public ResponseEntity<Map<String, Object>> createHeading(
             @RequestBody CreateHeadingRequest request,
@@ -67,58 +72,63 @@ public class HeadingController {
         return ResponseEntity.ok(Map.of("message", "Heading deleted successfully"));
     }
 
-    // Get full tree structure for a course file
-    @GetMapping("/course-file/{courseFileId}/tree")
-    public ResponseEntity<List<Map<String, Object>>> getTreeStructure(
-            @PathVariable Long courseFileId,
+    @PutMapping("/{id}/move")
+    public ResponseEntity<Map<String, Object>> moveHeading(
+            @PathVariable Long id,
+            @RequestBody MoveHeadingRequest request,
             @AuthenticationPrincipal CustomUserDetails user) {
-        List<Heading> rootHeadings = headingService.getHeadingsByCourseFile(courseFileId);
-        List<Map<String, Object>> tree = new ArrayList<>();
+        Heading heading = headingService.moveHeading(id, request.parentHeadingId);
+        return ResponseEntity.ok(headingToMap(heading));
+    }
 
-        for (Heading heading : rootHeadings) {
-            tree.add(buildTreeNode(heading));
+    // Several moves/reorders in one transaction (drag and drop)
+    @PostMapping("/batch")
+    public ResponseEntity<List<Map<String, Object>>> applyBatch(
+            @RequestBody HeadingBatchRequest request,
+            @AuthenticationPrincipal CustomUserDetails user) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Heading heading : headingService.applyBatch(request.getCourseFileId(), request.getOperations())) {
+            result.add(headingToMap(heading));
         }
+        return ResponseEntity.ok(result);
+    }
 
-        return ResponseEntity.ok(tree);
+    // Depth and subtree size, answered from the closure table
+    @GetMapping("/{id}/summary")
+    public ResponseEntity<Map<String, Object>> getSummary(
+            @PathVariable Long id,
+            @AuthenticationPrincipal CustomUserDetails user) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("id", id);
+        summary.put("depth", headingService.getDepth(id));
+        summary.put("subtreeSize", headingService.getSubtree(id).size());
+        summary.put("documentCount", headingService.countDocumentsInSubtree(id));
+        return ResponseEntity.ok(summary);
     }
 
-    private Map<String, Object> buildTreeNode(Heading heading) {
-        Map<String, Object> node = headingToMap(heading);
+    // Get full tree structure for a course file
+    @GetMapping("/course-file/{courseFileId}/tree")
+    public ResponseEntity<String> getTreeStructure(
+            @PathVariable Long courseFileId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+            @AuthenticationPrincipal CustomUserDetails user) {
+        return TreeResponses.conditionalTree(headingTreeLoader, courseFileId, "files", ifNoneMatch);
+    }
 
-        // Get children
-        List<Heading> children = headingService.getChildHeadings(heading.getId());
-        List<Map<String, Object>> childNodes = new ArrayList<>();
-        for (Heading child : children) {
-            childNodes.add(buildTreeNode(child));
-        }
-        node.put("children", childNodes);
-
-        // Get documents
-        List<Document> documents = documentService.getDocumentsByHeading(heading.getId());
-        List<Map<String, Object>> docList = new ArrayList<>();
-        for (Document doc : documents) {
-            Map<String, Object> docMap = new HashMap<>();
-            docMap.put("id", doc.getId());
-            docMap.put("fileName", doc.getFileName());
-            docMap.put("fileSize", doc.getFileSize());
-            docMap.put("versionNo", doc.getVersionNo());
-            docMap.put("uploadedAt", doc.getUploadedAt());
-            docMap.put("type", doc.getType());
-            docList.add(docMap);
+    // Delta since a content version, or a snapshot when too far behind
+    @GetMapping("/course-file/{courseFileId}/changes")
+    public ResponseEntity<Map<String, Object>> getChanges(
+            @PathVariable Long courseFileId,
+            @RequestParam(required = false) Long since,
+            @AuthenticationPrincipal CustomUserDetails user) {
+        Map<String, Object> changes = headingTreeLoader.loadChanges(courseFileId, since);
+        if (changes == null) {
+            return ResponseEntity.notFound().build();
         }
-        node.put("files", docList);
-
-        return node;
+        return ResponseEntity.ok(changes);
     }
 
     private Map<String, Object> headingToMap(Heading heading) {
-        Map<String, Object> map = new HashMap<>();
-        map.put("id", heading.getId());
-        map.put("title", heading.getTitle());
-        map.put("orderIndex", heading.getOrderIndex());
-        map.put("courseFileId", heading.getCourseFile() != null ? heading.getCourseFile().getId() : null);
-        map.put("parentHeadingId", heading.getParentHeading() != null ? heading.getParentHeading().getId() : null);
-        map.put("createdAt", heading.getCreatedAt());
-        return map;
+        return headingTreeLoader.headingToMap(heading);
     }
 }
\ No newline at end of file
@@ -2,13 +2,18 @@ package com.mitmeerut.CFM_Portal.Controller;
 
 import com.mitmeerut.CFM_Portal.Model.*;
 import com.mitmeerut.CFM_Portal.Repository.CourseFileRepository;
-import com.mitmeerut.CFM_Portal.Service.HeadingService;
-import com.mitmeerut.CFM_Portal.Service.DocumentService;
+import com.mitmeerut.CFM_Portal.Service.CourseFileZipExporter;
+import com.mitmeerut.CFM_Portal.Service.HeadingTreeLoader;
 import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -19,15 +24,14 @@ import java.util.*;
 public class ReviewController {
 
     private final CourseFileRepository courseFileRepository;
-    private final HeadingService headingService;
-    private final DocumentService documentService;
+    private final HeadingTreeLoader headingTreeLoader;
+    private final CourseFileZipExporter zipExporter;
 
     public ReviewController(CourseFileRepository courseFileRepository,
-            HeadingService headingService,
-            DocumentService documentService) {
+            HeadingTreeLoader headingTreeLoader, CourseFileZipExporter zipExporter) {
         this.courseFileRepository = courseFileRepository;
-        this.headingService = headingService;
-        this.documentService = documentService;
+        this.headingTreeLoader = headingTreeLoader;
+        this.zipExporter = zipExporter;
     }
 
     /**
@@ -58,52 +62,30 @@ public class ReviewController {
      * Get heading tree structure for a course file (for review purposes)
      */
     @GetMapping("/course-file/{courseFileId}/tree")
-    public ResponseEntity<List<Map<String, Object>>> getTreeStructure(
+    public ResponseEntity<String> getTreeStructure(
             @PathVariable Long courseFileId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
             @AuthenticationPrincipal CustomUserDetails user) {
 
-        List<Heading> rootHeadings = headingService.getHeadingsByCourseFile(courseFileId);
-        List<Map<String, Object>> tree = new ArrayList<>();
-
-        for (Heading heading : rootHeadings) {
-            tree.add(buildTreeNode(heading));
-        }
-
-        return ResponseEntity.ok(tree);
+        return TreeResponses.conditionalTree(headingTreeLoader, courseFileId, "documents", ifNoneMatch);
     }
 
-    private Map<String, Object> buildTreeNode(Heading heading) {
-        Map<String, Object> node = new HashMap<>();
-        node.put("id", heading.getId());
-        node.put("title", heading.getTitle());
-        node.put("orderIndex", heading.getOrderIndex());
-        node.put("courseFileId", heading.getCourseFile() != null ? heading.getCourseFile().getId() : null);
-        node.put("parentHeadingId", heading.getParentHeading() != null ? heading.getParentHeading().getId() : null);
-        node.put("createdAt", heading.getCreatedAt());
-
-        // Get children
-        List<Heading> children = headingService.getChildHeadings(heading.getId());
-        List<Map<String, Object>> childNodes = new ArrayList<>();
-        for (Heading child : children) {
-            childNodes.add(buildTreeNode(child));
-        }
-        node.put("children", childNodes);
+    /**
+     * Whole course file as a ZIP (folders = headings), streamed to the client
+     */
+    @GetMapping("/course-file/{courseFileId}/export.zip")
+    public void exportZip(
+            @PathVariable Long courseFileId,
+            HttpServletResponse response,
+            @AuthenticationPrincipal CustomUserDetails user) throws IOException {
 
-        // Get documents
-        List<Document> documents = documentService.getDocumentsByHeading(heading.getId());
-        List<Map<String, Object>> docList = new ArrayList<>();
-        for (Document doc : documents) {
-            Map<String, Object> docMap = new HashMap<>();
-            docMap.put("id", doc.getId());
-            docMap.put("fileName", doc.getFileName());
-            docMap.put("fileSize", doc.getFileSize());
-            docMap.put("versionNo", doc.getVersionNo());
-            docMap.put("uploadedAt", doc.getUploadedAt());
-            docMap.put("type", doc.getType());
-            docList.add(docMap);
-        }
-        node.put("documents", docList);
+        CourseFileZipExporter.Plan plan = zipExporter.plan(courseFileId);
 
-        return node;
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(plan.zipName(), StandardCharsets.UTF_8)
+                .build()
+                .toString());
+        zipExporter.write(plan, response.getOutputStream());
     }
 }
@@ -0,0 +1,33 @@
+package com.mitmeerut.CFM_Portal.Controller;
+
+import com.mitmeerut.CFM_Portal.Service.StorageScrubberService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Progress of the storage scrubber's passes and its open findings
+ * (dangling documents, corrupt objects, quarantined orphans).
+ */
+@RestController
+@RequestMapping("/api/admin/storage")
+public class StorageScrubController {
+
+    private final StorageScrubberService scrubberService;
+
+    @Autowired
+    public StorageScrubController(StorageScrubberService scrubberService) {
+        this.scrubberService = scrubberService;
+    }
+
+    @GetMapping("/scrub")
+    public ResponseEntity<?> status() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("passes", scrubberService.getCursors());
+        result.put("findings", scrubberService.getOpenFindings());
+        return ResponseEntity.ok(result);
+    }
+}
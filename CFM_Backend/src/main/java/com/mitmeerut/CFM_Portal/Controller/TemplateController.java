@@ -1,7 +1,9 @@
 package com.mitmeerut.CFM_Portal.Controller;
 
 import com.mitmeerut.CFM_Portal.Model.Template;
+import com.mitmeerut.CFM_Portal.Model.TemplateEvolutionJob;
 import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
+import com.mitmeerut.CFM_Portal.Service.CompiledTemplate;
 import com.mitmeerut.CFM_Portal.Service.TemplateService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
@@ -53,6 +55,18 @@ public class TemplateController {
         return templateService.getByDepartment(deptId);
     }
 
+    @GetMapping("/{id}/compiled")
+    public ResponseEntity<CompiledTemplate> getCompiled(@PathVariable Long id) {
+        currentUser();
+        return ResponseEntity.ok(templateService.getCompiled(id));
+    }
+
+    // Progress of applying this template's edits to existing draft course files
+    @GetMapping("/{id}/evolution-jobs")
+    public ResponseEntity<List<TemplateEvolutionJob>> getEvolutionJobs(@PathVariable Long id) {
+        return ResponseEntity.ok(templateService.getEvolutionJobs(id, currentUser()));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<Template> update(
             @PathVariable Long id,
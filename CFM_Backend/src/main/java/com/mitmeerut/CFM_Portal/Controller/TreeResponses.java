@@ -0,0 +1,67 @@
+package com.mitmeerut.CFM_Portal.Controller;
+
+import com.mitmeerut.CFM_Portal.Service.CourseFileTreeCache;
+import com.mitmeerut.CFM_Portal.Service.HeadingTreeLoader;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Conditional GET for course-file tree endpoints: a strong ETag derived from
+ * the course file's content version, and 304 Not Modified without loading
+ * the tree when the client already has that version.
+ *
+ * "no-cache, private" replaces Spring Security's default no-store, so the
+ * browser keeps the tree and revalidates it on every use.
+ */
+final class TreeResponses {
+
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private TreeResponses() {
+    }
+
+    static ResponseEntity<String> conditionalTree(HeadingTreeLoader loader, Long courseFileId,
+            String documentsKey, String ifNoneMatch) {
+        Long version = loader.currentVersion(courseFileId);
+        if (version == null) {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body("[]");
+        }
+        String etag = etag(courseFileId, version);
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE).build();
+        }
+
+        CourseFileTreeCache.Entry tree = loader.loadSerializedTree(courseFileId, documentsKey);
+        if (tree == null) {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body("[]");
+        }
+        return ResponseEntity.ok()
+                .eTag(etag(courseFileId, tree.version))
+                .cacheControl(REVALIDATE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(tree.json);
+    }
+
+    static String etag(Long courseFileId, long version) {
+        return "\"cf" + courseFileId + "-v" + version + "\"";
+    }
+
+    // If-None-Match may list several tags; weak tags compare by their opaque part
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,32 @@
+package com.mitmeerut.CFM_Portal.Model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Denormalized comment counts for one course file, maintained in the same
+ * transaction as comment writes so list views never count the Comment table.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "comment_counter")
+public class CommentCounter {
+
+    @Id
+    @Column(name = "course_file_id")
+    private Long courseFileId;
+
+    // All comments including replies
+    @Column(name = "total_count", nullable = false)
+    private Long totalCount = 0L;
+
+    // Root comments (threads)
+    @Column(name = "root_count", nullable = false)
+    private Long rootCount = 0L;
+
+    // Comments by others that the course file owner has not opened yet
+    @Column(name = "unread_count", nullable = false)
+    private Long unreadCount = 0L;
+}
@@ -0,0 +1,48 @@
+package com.mitmeerut.CFM_Portal.Model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stored file content, keyed by its SHA-256. Documents with the same
+ * bytes share the blob; refCount is the number of Document rows pointing
+ * at it. A blob whose count dropped to zero (releasedAt set) is reclaimed
+ * by ContentBlobService after a grace period.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "content_blob", indexes = {
+        @Index(name = "idx_content_blob_released", columnList = "ref_count, released_at")
+})
+public class ContentBlob {
+
+    // Lower-case hex
+    @Id
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private Long size;
+
+    // Where the BlobStore keeps the object (informational; the store is addressed by sha256)
+    @Column(name = "storage_path", nullable = false, length = 512)
+    private String storagePath;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount = 0;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // When refCount last reached zero
+    @Column(name = "released_at")
+    private LocalDateTime releasedAt;
+
+    // Last time the storage scrubber re-read the object and its checksum matched
+    @Column(name = "verified_at")
+    private LocalDateTime verifiedAt;
+}
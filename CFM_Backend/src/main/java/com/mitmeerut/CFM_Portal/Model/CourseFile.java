@@ -30,4 +30,15 @@ public class CourseFile {
 
     private LocalDateTime createdAt;
 
+    // Template the heading tree was created from (template evolution target)
+    @Column(name = "template_id")
+    private Long templateId;
+
+    // Bumped by every heading/document change (see CourseFileVersionService).
+    // Written only with an atomic UPDATE, never from this entity, so saving a
+    // stale CourseFile cannot roll it back.
+    @Column(name = "content_version", insertable = false, updatable = false,
+            columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long contentVersion;
+
 }
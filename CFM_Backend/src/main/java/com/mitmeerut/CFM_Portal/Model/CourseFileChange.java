@@ -0,0 +1,53 @@
+package com.mitmeerut.CFM_Portal.Model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of a course file's change log: a heading or document that was
+ * created/updated (UPSERT) or deleted at a given content version. Deleting a
+ * heading logs only that heading; clients drop its whole subtree.
+ *
+ * Every content version has at least one entry, and old versions are purged
+ * oldest first, so the retained versions of a course file are contiguous.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "course_file_change", indexes = {
+        @Index(name = "idx_cf_change_version", columnList = "course_file_id, version"),
+        @Index(name = "idx_cf_change_created", columnList = "created_at")
+})
+public class CourseFileChange {
+
+    public static final String HEADING = "HEADING";
+    public static final String DOCUMENT = "DOCUMENT";
+
+    public static final String UPSERT = "UPSERT";
+    public static final String DELETE = "DELETE";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "course_file_id", nullable = false)
+    private Long courseFileId;
+
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(name = "entity_type", nullable = false, length = 16)
+    private String entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @Column(nullable = false, length = 8)
+    private String op;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
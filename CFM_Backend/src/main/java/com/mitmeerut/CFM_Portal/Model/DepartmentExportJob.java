@@ -0,0 +1,76 @@
+package com.mitmeerut.CFM_Portal.Model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Export of every approved course file of a department and academic year
+ * into size-bounded ZIP parts under {base}/exports/{id}/.
+ *
+ * Which course files are done for good is recorded by the sealed parts
+ * (DepartmentExportPart), so a restarted job skips them and redoes only
+ * what was in unfinished parts. exportedCount follows each course file as
+ * it is written, so progress shows before the first part seals.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "department_export_job", indexes = {
+        @Index(name = "idx_department_export_job_dept", columnList = "department_id, created_at")
+})
+public class DepartmentExportJob {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "department_id", nullable = false)
+    private Long departmentId;
+
+    @Column(name = "academic_year", nullable = false)
+    private String academicYear;
+
+    @Column(name = "requested_by")
+    private Long requestedBy;
+
+    @Column(nullable = false, length = 16)
+    private String status = PENDING;
+
+    @Column(name = "total_course_files", nullable = false)
+    private Integer totalCourseFiles = 0;
+
+    // Course files in sealed parts
+    @Column(name = "completed_count", nullable = false)
+    private Integer completedCount = 0;
+
+    // Course files written so far, sealed or not; reset to completedCount
+    // when a restarted job redoes its unsealed parts
+    @Column(name = "exported_count", nullable = false)
+    private Integer exportedCount = 0;
+
+    @Column(name = "part_count", nullable = false)
+    private Integer partCount = 0;
+
+    @Column(name = "bytes_written", nullable = false)
+    private Long bytesWritten = 0L;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,44 @@
+package com.mitmeerut.CFM_Portal.Model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One finished ZIP of a department export. The row is written only after
+ * the file is complete and renamed into place, so every row is a valid,
+ * downloadable archive.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "department_export_part", uniqueConstraints = @UniqueConstraint(name = "uk_export_part",
+        columnNames = { "job_id", "part_no" }))
+public class DepartmentExportPart {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    @Column(name = "part_no", nullable = false)
+    private Integer partNo;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    // Comma-separated ids of the course files inside
+    @Lob
+    @Column(name = "course_file_ids", nullable = false, columnDefinition = "TEXT")
+    private String courseFileIds;
+
+    @Column(name = "sealed_at", nullable = false)
+    private LocalDateTime sealedAt;
+}
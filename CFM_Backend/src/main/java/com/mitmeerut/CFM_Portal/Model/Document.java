@@ -4,25 +4,35 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "Document")
+@Table(name = "Document", indexes = {
+        @Index(name = "idx_document_blob_hash", columnList = "blob_hash"),
+        @Index(name = "idx_document_heading_file_version", columnList = "heading_id, file_name, version_no")
+})
 public class Document {
     @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne 
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "heading_id")
     private Heading heading;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "uploaded_by")
     private Teacher uploadedBy;
 
     @Column(name = "file_name")
     private String fileName;
 
+    // Legacy file-system path, only for files not yet migrated into the BlobStore
+    // (kept until the migrated object has been written)
     @Column(name = "file_path", columnDefinition = "TEXT")
     private String filePath;
 
+    // SHA-256 of the content in content_blob and the storage key in the BlobStore;
+    // null for files stored before the blob store and not yet migrated
+    @Column(name = "blob_hash", length = 64)
+    private String blobHash;
+
     private String type;
 
     @Column(name = "file_size")
@@ -47,6 +57,8 @@ public class Document {
     public void setFileName(String fileName){ this.fileName = fileName; }
     public String getFilePath(){ return filePath; }
     public void setFilePath(String filePath){ this.filePath = filePath; }
+    public String getBlobHash(){ return blobHash; }
+    public void setBlobHash(String blobHash){ this.blobHash = blobHash; }
     public String getType(){ return type; }
     public void setType(String type){ this.type = type; }
     public Long getFileSize(){ return fileSize; }
@@ -0,0 +1,41 @@
+package com.mitmeerut.CFM_Portal.Model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Last version number handed out for a file name under a heading. Versions
+ * are allocated with an atomic upsert on this row, so concurrent uploads of
+ * the same name never get the same number; numbers of deleted versions are
+ * not reused.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@IdClass(DocumentVersionCounter.Key.class)
+@Table(name = "document_version_counter")
+public class DocumentVersionCounter {
+
+    @Id
+    @Column(name = "heading_id")
+    private Long headingId;
+
+    @Id
+    @Column(name = "file_name")
+    private String fileName;
+
+    @Column(name = "last_version", nullable = false)
+    private Integer lastVersion = 0;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long headingId;
+        private String fileName;
+    }
+}
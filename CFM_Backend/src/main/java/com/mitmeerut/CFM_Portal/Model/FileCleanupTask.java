@@ -0,0 +1,41 @@
+package com.mitmeerut.CFM_Portal.Model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A physical file whose database row is gone and which still has to be
+ * removed from storage. Rows are written in the same transaction as the
+ * delete, so a file is only queued if the delete commits, and the queue
+ * survives restarts.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "file_cleanup_task", indexes = {
+        @Index(name = "idx_file_cleanup_due", columnList = "next_attempt_at, id")
+})
+public class FileCleanupTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "file_path", nullable = false, length = 1024)
+    private String filePath;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -13,15 +13,18 @@ import java.util.List;
 @Data
 public class Heading {
 
+    // Pooled sequence instead of IDENTITY so inserts can be JDBC-batched
+    // (on MySQL Hibernate keeps it in the heading_seq table)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "heading_seq")
+    @SequenceGenerator(name = "heading_seq", sequenceName = "heading_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "course_file_id")
     private CourseFile courseFile;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "parent_heading_id")
     private Heading parentHeading;
 
@@ -0,0 +1,40 @@
+package com.mitmeerut.CFM_Portal.Model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Closure table over the heading hierarchy: one row per (ancestor, descendant)
+ * pair, including the (self, self, 0) row. Lets subtree reads, deletes, depth
+ * and document counts run as single set-based statements.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@IdClass(HeadingClosure.Key.class)
+@Table(name = "heading_closure", indexes = {
+        @Index(name = "idx_heading_closure_descendant", columnList = "descendant_id, depth")
+})
+public class HeadingClosure {
+
+    @Id
+    @Column(name = "ancestor_id")
+    private Long ancestorId;
+
+    @Id
+    @Column(name = "descendant_id")
+    private Long descendantId;
+
+    @Column(nullable = false)
+    private Integer depth;
+
+    @Data
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private Long ancestorId;
+        private Long descendantId;
+    }
+}
@@ -0,0 +1,80 @@
+package com.mitmeerut.CFM_Portal.Model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * HOD-triggered bulk creation of course files for every CourseTeacher
+ * assignment of a department and academic year.
+ *
+ * Assignments are processed in id order; lastAssignmentId is committed
+ * together with each batch of course files, so a restarted job continues
+ * exactly where it stopped.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "provisioning_job", indexes = {
+        @Index(name = "idx_provisioning_job_dept", columnList = "department_id, created_at")
+})
+public class ProvisioningJob {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "department_id", nullable = false)
+    private Long departmentId;
+
+    @Column(name = "academic_year", nullable = false)
+    private String academicYear;
+
+    @Column(name = "template_id", nullable = false)
+    private Long templateId;
+
+    @Column(name = "requested_by")
+    private Long requestedBy;
+
+    @Column(nullable = false, length = 16)
+    private String status = PENDING;
+
+    @Column(name = "total_assignments", nullable = false)
+    private Integer totalAssignments = 0;
+
+    @Column(name = "processed_count", nullable = false)
+    private Integer processedCount = 0;
+
+    @Column(name = "created_count", nullable = false)
+    private Integer createdCount = 0;
+
+    // Assignment already had a course file
+    @Column(name = "skipped_count", nullable = false)
+    private Integer skippedCount = 0;
+
+    @Column(name = "failed_count", nullable = false)
+    private Integer failedCount = 0;
+
+    // Resume cursor: highest course_teacher.id handled so far
+    @Column(name = "last_assignment_id", nullable = false)
+    private Long lastAssignmentId = 0L;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
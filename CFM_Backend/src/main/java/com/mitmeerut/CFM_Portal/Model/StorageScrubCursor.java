@@ -0,0 +1,42 @@
+package com.mitmeerut.CFM_Portal.Model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Where one pass of the storage scrubber stopped, so it resumes there after
+ * a restart. A pass starts over from the beginning once it reaches the end.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "storage_scrub_cursor")
+public class StorageScrubCursor {
+
+    public static final String DOCUMENTS = "documents";
+    public static final String OBJECTS = "objects";
+    public static final String LEGACY_FILES = "legacy-files";
+
+    @Id
+    @Column(length = 32)
+    private String name;
+
+    // Last item processed (document id, storage key or relative path); "" = start
+    @Column(nullable = false, length = 1024)
+    private String position = "";
+
+    @Column(name = "pass_started_at")
+    private LocalDateTime passStartedAt;
+
+    @Column(name = "last_pass_finished_at")
+    private LocalDateTime lastPassFinishedAt;
+
+    @Column(name = "completed_passes", nullable = false)
+    private Long completedPasses = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,56 @@
+package com.mitmeerut.CFM_Portal.Model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Something the storage scrubber found wrong. One row per (kind, subject):
+ * seeing it again updates lastSeenAt, and a dangling or corrupt finding is
+ * resolved automatically once a later pass finds the subject healthy.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "storage_scrub_finding", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_scrub_finding_subject", columnNames = { "kind", "subject" })
+}, indexes = {
+        @Index(name = "idx_scrub_finding_open", columnList = "resolved_at, last_seen_at")
+})
+public class StorageScrubFinding {
+
+    // Document row whose content is missing from storage
+    public static final String DANGLING_DOCUMENT = "DANGLING_DOCUMENT";
+    // Stored object whose bytes no longer match its SHA-256 or size
+    public static final String CORRUPT_OBJECT = "CORRUPT_OBJECT";
+    // Unreferenced object or file moved to quarantine
+    public static final String ORPHAN_QUARANTINED = "ORPHAN_QUARANTINED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 32)
+    private String kind;
+
+    // "document:<id>", a storage key, or a path relative to the upload directory
+    @Column(nullable = false, length = 512)
+    private String subject;
+
+    @Column(name = "document_id")
+    private Long documentId;
+
+    @Column(length = 500)
+    private String detail;
+
+    @Column(name = "first_seen_at", nullable = false)
+    private LocalDateTime firstSeenAt;
+
+    @Column(name = "last_seen_at", nullable = false)
+    private LocalDateTime lastSeenAt;
+
+    @Column(name = "resolved_at")
+    private LocalDateTime resolvedAt;
+}
@@ -31,6 +31,10 @@ public class Template {
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    // Bumped on every update; keys the compiled template cache
+    @Column(name = "revision", columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long revision = 0L;
+
 	public Long getId() {
 		return id;
 	}
@@ -95,6 +99,14 @@ public class Template {
 		this.createdAt = createdAt;
 	}
 
+	public Long getRevision() {
+		return revision;
+	}
+
+	public void setRevision(Long revision) {
+		this.revision = revision;
+	}
+
 	public Template(Long id, Long departmentId, String name, String description, String structure, String checklist,
 			Long createdBy, LocalDateTime createdAt) {
 		super();
@@ -0,0 +1,91 @@
+package com.mitmeerut.CFM_Portal.Model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Propagation of one template edit (fromRevision -> toRevision) to the
+ * draft course files created from that template.
+ *
+ * plan holds the diff of the two compiled trees as JSON, so a restarted
+ * job applies exactly the same changes. Course files are processed in id
+ * order; lastCourseFileId is committed together with each chunk.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "template_evolution_job", indexes = {
+        @Index(name = "idx_template_evolution_job_template", columnList = "template_id, created_at")
+})
+public class TemplateEvolutionJob {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "template_id", nullable = false)
+    private Long templateId;
+
+    @Column(name = "from_revision", nullable = false)
+    private Long fromRevision;
+
+    @Column(name = "to_revision", nullable = false)
+    private Long toRevision;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "LONGTEXT")
+    private String plan;
+
+    @Column(nullable = false, length = 16)
+    private String status = PENDING;
+
+    @Column(name = "total_course_files", nullable = false)
+    private Integer totalCourseFiles = 0;
+
+    @Column(name = "processed_count", nullable = false)
+    private Integer processedCount = 0;
+
+    // Course files that actually changed
+    @Column(name = "updated_count", nullable = false)
+    private Integer updatedCount = 0;
+
+    @Column(name = "failed_count", nullable = false)
+    private Integer failedCount = 0;
+
+    @Column(name = "headings_added", nullable = false)
+    private Integer headingsAdded = 0;
+
+    @Column(name = "headings_renamed", nullable = false)
+    private Integer headingsRenamed = 0;
+
+    @Column(name = "headings_reordered", nullable = false)
+    private Integer headingsReordered = 0;
+
+    // Left alone: they hold documents, or the teacher removed/renamed them
+    @Column(name = "headings_skipped", nullable = false)
+    private Integer headingsSkipped = 0;
+
+    // Resume cursor: highest course_file.id handled so far
+    @Column(name = "last_course_file_id", nullable = false)
+    private Long lastCourseFileId = 0L;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,78 @@
+package com.mitmeerut.CFM_Portal.Model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A resumable upload in progress. The file is split into chunkCount chunks
+ * of chunkSize bytes (the last may be shorter); each received chunk sets its
+ * bit in receivedChunks. Bytes live in {base}/uploads/{id}.part until the
+ * session is completed and becomes a Document.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "upload_session", indexes = {
+        @Index(name = "idx_upload_session_expires", columnList = "expires_at")
+})
+public class UploadSession {
+
+    public static final String OPEN = "OPEN";
+    // All chunks received and the .part file frozen: chunk writes are rejected
+    public static final String COMPLETING = "COMPLETING";
+    public static final String COMPLETED = "COMPLETED";
+
+    // Random UUID: the session id is also the capability to write to it
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "heading_id", nullable = false)
+    private Long headingId;
+
+    @Column(name = "teacher_id", nullable = false)
+    private Long teacherId;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "total_size", nullable = false)
+    private Long totalSize;
+
+    @Column(name = "chunk_size", nullable = false)
+    private Integer chunkSize;
+
+    @Column(name = "chunk_count", nullable = false)
+    private Integer chunkCount;
+
+    // java.util.BitSet.toByteArray()
+    @Lob
+    @Column(name = "received_chunks", columnDefinition = "BLOB")
+    private byte[] receivedChunks;
+
+    @Column(name = "received_count", nullable = false)
+    private Integer receivedCount = 0;
+
+    @Column(nullable = false, length = 16)
+    private String status = OPEN;
+
+    // Set on completion, so a retried complete returns the same document
+    @Column(name = "document_id")
+    private Long documentId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Pushed forward by every chunk
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -1,6 +1,10 @@
 package com.mitmeerut.CFM_Portal.Repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -17,4 +21,20 @@ public interface ApprovalRepository extends JpaRepository<Approval, Long> {
     List<Approval> findByStageAndStatus(String stage, String status);
 
     Optional<Approval> findTopByCourseFile_IdOrderByActedAtDesc(Long courseFileId);
+
+    // Index rebuild: [id, comment, courseFileId, departmentId, actedAt, stage] in id order
+    @Query("""
+            SELECT a.id, a.comment, cf.id, p.department.id, a.actedAt, a.stage
+            FROM Approval a
+            LEFT JOIN a.courseFile cf
+            LEFT JOIN cf.course co
+            LEFT JOIN Program p ON co.programId = p.id
+            WHERE a.id > :afterId
+            ORDER BY a.id
+            """)
+    List<Object[]> findSearchRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM Approval a WHERE a.courseFile.id = :courseFileId")
+    int deleteByCourseFileId(@Param("courseFileId") Long courseFileId);
 }
@@ -0,0 +1,53 @@
+package com.mitmeerut.CFM_Portal.Repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import com.mitmeerut.CFM_Portal.Model.CommentCounter;
+
+@Repository
+public interface CommentCounterRepository extends JpaRepository<CommentCounter, Long> {
+
+    // Atomic upsert: applies the deltas to the row, creating it on first use
+    @Modifying
+    @Query(value = """
+            INSERT INTO comment_counter (course_file_id, total_count, root_count, unread_count)
+            VALUES (:courseFileId, GREATEST(:total, 0), GREATEST(:root, 0), GREATEST(:unread, 0))
+            ON DUPLICATE KEY UPDATE
+                total_count = GREATEST(total_count + :total, 0),
+                root_count = GREATEST(root_count + :root, 0),
+                unread_count = GREATEST(unread_count + :unread, 0)
+            """, nativeQuery = true)
+    void applyDelta(@Param("courseFileId") Long courseFileId,
+            @Param("total") long total,
+            @Param("root") long root,
+            @Param("unread") long unread);
+
+    @Modifying
+    @Query("UPDATE CommentCounter c SET c.unreadCount = 0 WHERE c.courseFileId = :courseFileId")
+    void resetUnread(@Param("courseFileId") Long courseFileId);
+
+    // One-off backfill for course files that have comments but no counter row
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO comment_counter (course_file_id, total_count, root_count, unread_count)
+            SELECT c.course_file_id,
+                   COUNT(*),
+                   SUM(CASE WHEN c.parent_comment_id IS NULL THEN 1 ELSE 0 END),
+                   SUM(CASE WHEN c.is_received = false
+                            AND (c.author_id IS NULL OR c.author_id <> cf.created_by) THEN 1 ELSE 0 END)
+            FROM comment c
+            JOIN course_file cf ON cf.id = c.course_file_id
+            WHERE NOT EXISTS (SELECT 1 FROM comment_counter cc WHERE cc.course_file_id = c.course_file_id)
+            GROUP BY c.course_file_id
+            """, nativeQuery = true)
+    int backfillMissing();
+
+    @Modifying
+    @Query("DELETE FROM CommentCounter c WHERE c.courseFileId = :courseFileId")
+    int deleteByCourseFileId(@Param("courseFileId") Long courseFileId);
+}
@@ -1,7 +1,13 @@
 package com.mitmeerut.CFM_Portal.Repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import com.mitmeerut.CFM_Portal.Model.Comment;
 
@@ -14,4 +20,142 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     List<Comment> findByAuthor_Id(Long authorId);
 
     List<Comment> findByDocument_Id(Long documentId);
+
+    // ---- Thread loading: roots and replies of a scope in a single statement ----
+
+    // All comments (roots and replies) on one course file
+    @Query("""
+            SELECT c FROM Comment c
+            LEFT JOIN FETCH c.author
+            LEFT JOIN FETCH c.courseFile cf
+            LEFT JOIN FETCH cf.course
+            LEFT JOIN FETCH c.heading
+            LEFT JOIN FETCH c.document
+            WHERE cf.id = :courseFileId
+            """)
+    List<Comment> findThreadsByCourseFileId(@Param("courseFileId") Long courseFileId);
+
+    // All comments (roots and replies) on course files of a department
+    @Query("""
+            SELECT c FROM Comment c
+            LEFT JOIN FETCH c.author
+            JOIN FETCH c.courseFile cf
+            JOIN FETCH cf.course co
+            LEFT JOIN FETCH c.heading
+            LEFT JOIN FETCH c.document
+            WHERE co.programId IN (SELECT p.id FROM Program p WHERE p.department.id = :departmentId)
+            """)
+    List<Comment> findThreadsByDepartmentId(@Param("departmentId") Long departmentId);
+
+    // Root comments authored by the teacher or posted on their course files, plus
+    // every reply to those roots
+    @Query("""
+            SELECT c FROM Comment c
+            LEFT JOIN FETCH c.author
+            LEFT JOIN FETCH c.courseFile cf
+            LEFT JOIN FETCH cf.course
+            LEFT JOIN FETCH c.heading
+            LEFT JOIN FETCH c.document
+            WHERE c.id IN (SELECT r.id FROM Comment r LEFT JOIN r.courseFile rcf
+                           WHERE r.parentComment IS NULL
+                           AND (r.author.id = :teacherId OR rcf.createdBy.id = :teacherId))
+               OR c.parentComment.id IN (SELECT r.id FROM Comment r LEFT JOIN r.courseFile rcf
+                           WHERE r.parentComment IS NULL
+                           AND (r.author.id = :teacherId OR rcf.createdBy.id = :teacherId))
+            """)
+    List<Comment> findThreadsForTeacher(@Param("teacherId") Long teacherId);
+
+    // Replies of a single root comment
+    @Query("""
+            SELECT c FROM Comment c
+            LEFT JOIN FETCH c.author
+            WHERE c.parentComment.id = :parentId
+            """)
+    List<Comment> findRepliesByParentId(@Param("parentId") Long parentId);
+
+    // Replies of a page of root comments
+    @Query("""
+            SELECT c FROM Comment c
+            LEFT JOIN FETCH c.author
+            WHERE c.parentComment.id IN :parentIds
+            """)
+    List<Comment> findRepliesByParentIds(@Param("parentIds") Collection<Long> parentIds);
+
+    // Keyset page of root comments on course files of a department, newest first.
+    // The cursor is the (createdAt, id) of the last row of the previous page.
+    @Query("""
+            SELECT c FROM Comment c
+            LEFT JOIN FETCH c.author a
+            JOIN FETCH c.courseFile cf
+            JOIN FETCH cf.course co
+            LEFT JOIN FETCH c.heading h
+            LEFT JOIN FETCH c.document
+            JOIN Program p ON co.programId = p.id
+            WHERE p.department.id = :departmentId
+            AND c.parentComment IS NULL
+            AND (:courseId IS NULL OR co.id = :courseId)
+            AND (:authorId IS NULL OR a.id = :authorId)
+            AND (:headingId IS NULL OR h.id = :headingId)
+            AND (:fromDate IS NULL OR c.createdAt >= :fromDate)
+            AND (:toDate IS NULL OR c.createdAt < :toDate)
+            AND (:cursorAt IS NULL
+                 OR c.createdAt < :cursorAt
+                 OR (c.createdAt = :cursorAt AND c.id < :cursorId))
+            ORDER BY c.createdAt DESC, c.id DESC
+            """)
+    List<Comment> findDepartmentRootPage(@Param("departmentId") Long departmentId,
+            @Param("courseId") Long courseId,
+            @Param("authorId") Long authorId,
+            @Param("headingId") Long headingId,
+            @Param("fromDate") LocalDateTime fromDate,
+            @Param("toDate") LocalDateTime toDate,
+            @Param("cursorAt") LocalDateTime cursorAt,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable);
+
+    // Index rebuild: [id, text, courseFileId, departmentId, createdAt, parentCommentId] in id order
+    @Query("""
+            SELECT c.id, c.text, cf.id, p.department.id, c.createdAt, pc.id
+            FROM Comment c
+            LEFT JOIN c.parentComment pc
+            LEFT JOIN c.courseFile cf
+            LEFT JOIN cf.course co
+            LEFT JOIN Program p ON co.programId = p.id
+            WHERE c.id > :afterId
+            ORDER BY c.id
+            """)
+    List<Object[]> findSearchRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Owner opened the discussion: mark comments by others as received
+    @Modifying
+    @Query("""
+            UPDATE Comment c SET c.isReceived = true
+            WHERE c.courseFile.id = :courseFileId
+            AND c.isReceived = false
+            AND (c.author IS NULL OR c.author.id <> :ownerId)
+            """)
+    int markReceivedForOwner(@Param("courseFileId") Long courseFileId, @Param("ownerId") Long ownerId);
+
+    // Keep discussions when a heading subtree is deleted: detach them from the
+    // headings/documents that are going away
+    @Modifying
+    @Query("""
+            UPDATE Comment c SET c.heading = null, c.document = null
+            WHERE c.heading.id IN (SELECT hc.descendantId FROM HeadingClosure hc WHERE hc.ancestorId = :headingId)
+               OR c.document.id IN (SELECT d.id FROM Document d
+                                    WHERE d.heading.id IN (SELECT hc.descendantId FROM HeadingClosure hc
+                                                           WHERE hc.ancestorId = :headingId))
+            """)
+    int detachFromHeadingSubtree(@Param("headingId") Long headingId);
+
+    // ---- course file delete ----
+
+    // Replies point at their parent in the same table, so unlink before the DELETE
+    @Modifying
+    @Query("UPDATE Comment c SET c.parentComment = null WHERE c.courseFile.id = :courseFileId")
+    int detachRepliesForCourseFile(@Param("courseFileId") Long courseFileId);
+
+    @Modifying
+    @Query("DELETE FROM Comment c WHERE c.courseFile.id = :courseFileId")
+    int deleteByCourseFileId(@Param("courseFileId") Long courseFileId);
 }
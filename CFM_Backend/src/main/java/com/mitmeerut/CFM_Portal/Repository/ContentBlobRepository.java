@@ -0,0 +1,87 @@
+package com.mitmeerut.CFM_Portal.Repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import com.mitmeerut.CFM_Portal.Model.ContentBlob;
+
+@Repository
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+    // New reference: creates the row or bumps the count. Holds the row lock
+    // until the caller commits, which keeps the reclaimer away meanwhile.
+    @Modifying
+    @Query(value = """
+            INSERT INTO content_blob (sha256, size, storage_path, ref_count, created_at, released_at)
+            VALUES (:sha256, :size, :storagePath, 1, NOW(), NULL)
+            ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, released_at = NULL
+            """, nativeQuery = true)
+    int acquire(@Param("sha256") String sha256, @Param("size") long size,
+            @Param("storagePath") String storagePath);
+
+    // MySQL applies SET assignments left to right: released_at must read the old count
+    @Modifying
+    @Query(value = """
+            UPDATE content_blob
+            SET released_at = IF(ref_count <= 1, NOW(), released_at),
+                ref_count = GREATEST(ref_count - 1, 0)
+            WHERE sha256 = :sha256
+            """, nativeQuery = true)
+    int release(@Param("sha256") String sha256);
+
+    // Bulk release for every document of a course file
+    @Modifying
+    @Query(value = """
+            UPDATE content_blob b
+            JOIN (SELECT d.blob_hash, COUNT(*) AS n
+                  FROM document d
+                  JOIN heading h ON h.id = d.heading_id
+                  WHERE h.course_file_id = :courseFileId AND d.blob_hash IS NOT NULL
+                  GROUP BY d.blob_hash) r ON r.blob_hash = b.sha256
+            SET b.released_at = IF(b.ref_count <= r.n, NOW(), b.released_at),
+                b.ref_count = GREATEST(b.ref_count - r.n, 0)
+            """, nativeQuery = true)
+    int releaseForCourseFile(@Param("courseFileId") Long courseFileId);
+
+    // Same for a heading subtree (through heading_closure)
+    @Modifying
+    @Query(value = """
+            UPDATE content_blob b
+            JOIN (SELECT d.blob_hash, COUNT(*) AS n
+                  FROM document d
+                  JOIN heading_closure c ON c.descendant_id = d.heading_id
+                  WHERE c.ancestor_id = :headingId AND d.blob_hash IS NOT NULL
+                  GROUP BY d.blob_hash) r ON r.blob_hash = b.sha256
+            SET b.released_at = IF(b.ref_count <= r.n, NOW(), b.released_at),
+                b.ref_count = GREATEST(b.ref_count - r.n, 0)
+            """, nativeQuery = true)
+    int releaseForHeadingSubtree(@Param("headingId") Long headingId);
+
+    @Query("SELECT b.sha256 FROM ContentBlob b WHERE b.refCount = 0 AND b.releasedAt <= :releasedBefore ORDER BY b.releasedAt")
+    List<String> findReclaimable(@Param("releasedBefore") LocalDateTime releasedBefore, Pageable pageable);
+
+    // Keyset page over all blobs, for storage migration
+    @Query("SELECT b.sha256 FROM ContentBlob b WHERE b.sha256 > :afterSha256 ORDER BY b.sha256")
+    List<String> findHashesAfter(@Param("afterSha256") String afterSha256, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE ContentBlob b SET b.storagePath = :storagePath WHERE b.sha256 = :sha256")
+    int updateStoragePath(@Param("sha256") String sha256, @Param("storagePath") String storagePath);
+
+    @Modifying
+    @Query("UPDATE ContentBlob b SET b.verifiedAt = :verifiedAt WHERE b.sha256 = :sha256")
+    int markVerified(@Param("sha256") String sha256, @Param("verifiedAt") LocalDateTime verifiedAt);
+
+    // Row lock for the reclaimer; empty if the blob was referenced again
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM ContentBlob b WHERE b.sha256 = :sha256 AND b.refCount = 0")
+    Optional<ContentBlob> lockUnreferenced(@Param("sha256") String sha256);
+}
@@ -0,0 +1,43 @@
+package com.mitmeerut.CFM_Portal.Repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
+import com.mitmeerut.CFM_Portal.Model.CourseFileChange;
+
+@Repository
+public interface CourseFileChangeRepository extends JpaRepository<CourseFileChange, Long> {
+
+    @Query("""
+            SELECT c FROM CourseFileChange c
+            WHERE c.courseFileId = :courseFileId AND c.version > :since
+            ORDER BY c.version, c.id
+            """)
+    List<CourseFileChange> findSince(@Param("courseFileId") Long courseFileId, @Param("since") Long since);
+
+    @Query("SELECT COUNT(c) FROM CourseFileChange c WHERE c.courseFileId = :courseFileId AND c.version > :since")
+    long countSince(@Param("courseFileId") Long courseFileId, @Param("since") Long since);
+
+    // Oldest version still in the log (null if the log is empty)
+    @Query("SELECT MIN(c.version) FROM CourseFileChange c WHERE c.courseFileId = :courseFileId")
+    Long findOldestVersion(@Param("courseFileId") Long courseFileId);
+
+    @Modifying
+    @Query("DELETE FROM CourseFileChange c WHERE c.courseFileId = :courseFileId AND c.version <= :version")
+    int deleteUpToVersion(@Param("courseFileId") Long courseFileId, @Param("version") Long version);
+
+    @Modifying
+    @Query("DELETE FROM CourseFileChange c WHERE c.courseFileId = :courseFileId")
+    int deleteByCourseFileId(@Param("courseFileId") Long courseFileId);
+
+    // Scheduled retention purge, outside any request transaction
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CourseFileChange c WHERE c.createdAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -1,10 +1,13 @@
 package com.mitmeerut.CFM_Portal.Repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
+import org.springframework.data.domain.Pageable;
 import com.mitmeerut.CFM_Portal.Model.CourseFile;
 
 @Repository
@@ -38,4 +41,68 @@ public interface CourseFileRepository extends JpaRepository<CourseFile, Long> {
                         "AND ct.isSubjectHead = true " +
                         "AND cf.status = 'SUBMITTED'")
         List<CourseFile> findPendingForSubjectHead(@Param("subjectHeadId") Long subjectHeadId);
+
+        @Modifying
+        @Query("DELETE FROM CourseFile cf WHERE cf.id = :id")
+        int deleteByIdDirect(@Param("id") Long id);
+
+        // ---- content version ----
+
+        @Modifying
+        @Query(value = "UPDATE course_file SET content_version = content_version + 1 WHERE id = :id", nativeQuery = true)
+        int incrementContentVersion(@Param("id") Long id);
+
+        @Query(value = "SELECT content_version FROM course_file WHERE id = :id", nativeQuery = true)
+        Long findContentVersion(@Param("id") Long id);
+
+        // Row lock standing for the root heading group (see HeadingOrderRebalancer.lockGroup)
+        @Query(value = "SELECT id FROM course_file WHERE id = :id FOR UPDATE", nativeQuery = true)
+        Long lockById(@Param("id") Long id);
+
+        // One course file per (course, teacher, academic year, section)
+        @Query("""
+                        SELECT COUNT(cf) > 0 FROM CourseFile cf
+                        WHERE cf.course.id = :courseId AND cf.createdBy.id = :teacherId
+                        AND cf.academicYear = :academicYear
+                        AND (cf.section = :section OR (cf.section IS NULL AND :section IS NULL))
+                        """)
+        boolean existsForAssignment(@Param("courseId") Long courseId, @Param("teacherId") Long teacherId,
+                        @Param("academicYear") String academicYear, @Param("section") String section);
+
+        // Department export: course files of a department, year and status in id order
+        @Query("""
+                        SELECT cf.id FROM CourseFile cf JOIN Program p ON cf.course.programId = p.id
+                        WHERE p.department.id = :departmentId AND cf.academicYear = :academicYear
+                        AND cf.status = :status
+                        ORDER BY cf.id
+                        """)
+        List<Long> findIdsByDepartmentAndYear(@Param("departmentId") Long departmentId,
+                        @Param("academicYear") String academicYear, @Param("status") String status);
+
+        // ---- template evolution ----
+
+        @Query("""
+                        SELECT cf.id FROM CourseFile cf
+                        WHERE cf.templateId = :templateId AND cf.status IN :statuses AND cf.id > :afterId
+                        ORDER BY cf.id
+                        """)
+        List<Long> findIdsByTemplateAfter(@Param("templateId") Long templateId,
+                        @Param("statuses") Collection<String> statuses, @Param("afterId") Long afterId,
+                        Pageable pageable);
+
+        long countByTemplateIdAndStatusIn(Long templateId, Collection<String> statuses);
+
+        // Course files created before template_id existed: link them when their
+        // department has exactly one template, so there is no guessing
+        @Modifying
+        @Query(value = """
+                        UPDATE course_file cf
+                        JOIN course c ON c.id = cf.course_id
+                        JOIN program p ON p.id = c.program_id
+                        JOIN (SELECT department_id, MIN(id) AS template_id FROM template
+                              GROUP BY department_id HAVING COUNT(*) = 1) t ON t.department_id = p.department_id
+                        SET cf.template_id = t.template_id
+                        WHERE cf.template_id IS NULL
+                        """, nativeQuery = true)
+        int backfillTemplateIds();
 }
@@ -1,5 +1,6 @@
 package com.mitmeerut.CFM_Portal.Repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -32,4 +33,27 @@ public interface CourseTeacherRepository extends JpaRepository<CourseTeacher, Lo
                 WHERE ct.teacher.id = :teacherId AND ct.isSubjectHead = true
             """)
     List<CourseTeacher> findSubjectHeadAssignmentsByTeacherId(@Param("teacherId") Long teacherId);
-}
\ No newline at end of file
+
+    // Department assignments for a year in id order (bulk provisioning cursor)
+    @Query("""
+                SELECT ct
+                FROM CourseTeacher ct
+                JOIN Program p ON ct.course.programId = p.id
+                WHERE p.department.id = :departmentId
+                AND ct.academicYear = :academicYear
+                AND ct.id > :afterId
+                ORDER BY ct.id
+            """)
+    List<CourseTeacher> findDepartmentAssignmentsAfter(@Param("departmentId") Long departmentId,
+            @Param("academicYear") String academicYear, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("""
+                SELECT COUNT(ct)
+                FROM CourseTeacher ct
+                JOIN Program p ON ct.course.programId = p.id
+                WHERE p.department.id = :departmentId
+                AND ct.academicYear = :academicYear
+            """)
+    long countDepartmentAssignments(@Param("departmentId") Long departmentId,
+            @Param("academicYear") String academicYear);
+}
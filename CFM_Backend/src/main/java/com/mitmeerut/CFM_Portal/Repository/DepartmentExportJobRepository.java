@@ -0,0 +1,42 @@
+package com.mitmeerut.CFM_Portal.Repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
+import java.util.List;
+import com.mitmeerut.CFM_Portal.Model.DepartmentExportJob;
+
+@Repository
+public interface DepartmentExportJobRepository extends JpaRepository<DepartmentExportJob, Long> {
+
+    List<DepartmentExportJob> findByStatusIn(Collection<String> statuses);
+
+    List<DepartmentExportJob> findByDepartmentIdOrderByCreatedAtDesc(Long departmentId);
+
+    boolean existsByDepartmentIdAndAcademicYearAndStatusIn(Long departmentId, String academicYear,
+            Collection<String> statuses);
+
+    // Parts are sealed by parallel workers: count them atomically
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE DepartmentExportJob j
+            SET j.completedCount = j.completedCount + :courseFiles, j.partCount = j.partCount + 1,
+                j.bytesWritten = j.bytesWritten + :bytes, j.updatedAt = CURRENT_TIMESTAMP
+            WHERE j.id = :id
+            """)
+    int addSealedPart(@Param("id") Long id, @Param("courseFiles") int courseFiles, @Param("bytes") long bytes);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE DepartmentExportJob j
+            SET j.exportedCount = j.exportedCount + 1, j.updatedAt = CURRENT_TIMESTAMP
+            WHERE j.id = :id
+            """)
+    int addExported(@Param("id") Long id);
+}
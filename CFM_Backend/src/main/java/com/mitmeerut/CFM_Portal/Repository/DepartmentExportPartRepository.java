@@ -0,0 +1,15 @@
+package com.mitmeerut.CFM_Portal.Repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+import java.util.Optional;
+import com.mitmeerut.CFM_Portal.Model.DepartmentExportPart;
+
+@Repository
+public interface DepartmentExportPartRepository extends JpaRepository<DepartmentExportPart, Long> {
+
+    List<DepartmentExportPart> findByJobIdOrderByPartNo(Long jobId);
+
+    Optional<DepartmentExportPart> findByJobIdAndPartNo(Long jobId, Integer partNo);
+}
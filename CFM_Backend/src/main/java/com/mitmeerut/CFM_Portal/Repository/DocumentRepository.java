@@ -1,8 +1,16 @@
 package com.mitmeerut.CFM_Portal.Repository;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import com.mitmeerut.CFM_Portal.Model.Document;
 import com.mitmeerut.CFM_Portal.Model.Heading;
 
@@ -12,5 +20,80 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
 
 	List<Document> findByHeading_Id(Long headingId);
 
+	List<Document> findByHeading_IdIn(Collection<Long> headingIds);
+
+	// ---- latest version per file name ----
+
+	@Query("""
+			SELECT d FROM Document d
+			WHERE d.heading.id IN :headingIds
+			AND d.versionNo = (SELECT MAX(d2.versionNo) FROM Document d2
+			                   WHERE d2.heading.id = d.heading.id AND d2.fileName = d.fileName)
+			""")
+	List<Document> findLatestByHeadingIds(@Param("headingIds") Collection<Long> headingIds);
+
+	Optional<Document> findFirstByHeading_IdAndFileNameOrderByVersionNoDesc(Long headingId, String fileName);
+
+	// Locking read: also sees versions committed by concurrent uploads of the name
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("""
+			SELECT d FROM Document d
+			WHERE d.heading.id = :headingId AND d.fileName = :fileName
+			ORDER BY d.versionNo DESC
+			LIMIT 1
+			""")
+	Optional<Document> findLatestForUpdate(@Param("headingId") Long headingId, @Param("fileName") String fileName);
+
+	// Headings of these course files that hold at least one document
+	@Query("SELECT DISTINCT d.heading.id FROM Document d WHERE d.heading.courseFile.id IN :courseFileIds")
+	List<Long> findHeadingIdsWithDocuments(@Param("courseFileIds") Collection<Long> courseFileIds);
+
   boolean existsByHeading(Heading heading);
+
+	// ---- subtree operations through heading_closure ----
+
+	@Query("""
+			SELECT COUNT(d) FROM Document d
+			WHERE d.heading.id IN (SELECT c.descendantId FROM HeadingClosure c WHERE c.ancestorId = :headingId)
+			""")
+	long countInSubtree(@Param("headingId") Long headingId);
+
+	@Modifying
+	@Query("""
+			DELETE FROM Document d
+			WHERE d.heading.id IN (SELECT c.descendantId FROM HeadingClosure c WHERE c.ancestorId = :headingId)
+			""")
+	int deleteInSubtree(@Param("headingId") Long headingId);
+
+	// ---- storage scrubber ----
+
+	@Query("SELECT d FROM Document d WHERE d.id > :afterId ORDER BY d.id")
+	List<Document> findAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+	@Query("SELECT d.filePath FROM Document d WHERE d.filePath IN :filePaths")
+	List<String> findFilePathsIn(@Param("filePaths") Collection<String> filePaths);
+
+	// ---- migration into the BlobStore ----
+
+	@Query("SELECT d FROM Document d WHERE d.filePath IS NOT NULL AND d.id > :afterId ORDER BY d.id")
+	List<Document> findWithFilePathAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+	// Guarded: only if the row still holds the legacy file that was hashed
+	@Modifying
+	@Query("UPDATE Document d SET d.blobHash = :blobHash WHERE d.id = :id AND d.blobHash IS NULL AND d.filePath = :filePath")
+	int attachBlob(@Param("id") Long id, @Param("filePath") String filePath, @Param("blobHash") String blobHash);
+
+	@Modifying
+	@Query("UPDATE Document d SET d.filePath = NULL WHERE d.id = :id AND d.filePath = :filePath AND d.blobHash IS NOT NULL")
+	int detachFilePath(@Param("id") Long id, @Param("filePath") String filePath);
+
+	@Modifying
+	@Query("UPDATE Document d SET d.blobHash = NULL WHERE d.id = :id AND d.blobHash = :blobHash AND d.filePath IS NOT NULL")
+	int detachBlob(@Param("id") Long id, @Param("blobHash") String blobHash);
+
+	// ---- course file delete ----
+
+	@Modifying
+	@Query("DELETE FROM Document d WHERE d.heading.id IN (SELECT h.id FROM Heading h WHERE h.courseFile.id = :courseFileId)")
+	int deleteByCourseFileId(@Param("courseFileId") Long courseFileId);
 }
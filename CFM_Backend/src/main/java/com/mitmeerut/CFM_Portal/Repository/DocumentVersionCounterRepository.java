@@ -0,0 +1,43 @@
+package com.mitmeerut.CFM_Portal.Repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import com.mitmeerut.CFM_Portal.Model.DocumentVersionCounter;
+
+@Repository
+public interface DocumentVersionCounterRepository
+        extends JpaRepository<DocumentVersionCounter, DocumentVersionCounter.Key> {
+
+    // Atomic increment; the first allocation for a name continues after the
+    // highest version already stored. The new number is left in
+    // LAST_INSERT_ID() of this connection, read it with lastAllocated().
+    @Modifying
+    @Query(value = """
+            INSERT INTO document_version_counter (heading_id, file_name, last_version)
+            SELECT :headingId, :fileName, LAST_INSERT_ID(COALESCE(MAX(d.version_no), 0) + 1)
+            FROM document d
+            WHERE d.heading_id = :headingId AND d.file_name = :fileName
+            ON DUPLICATE KEY UPDATE last_version = LAST_INSERT_ID(last_version + 1)
+            """, nativeQuery = true)
+    void allocate(@Param("headingId") Long headingId, @Param("fileName") String fileName);
+
+    @Query(value = "SELECT LAST_INSERT_ID()", nativeQuery = true)
+    long lastAllocated();
+
+    @Modifying
+    @Query("""
+            DELETE FROM DocumentVersionCounter v
+            WHERE v.headingId IN (SELECT c.descendantId FROM HeadingClosure c WHERE c.ancestorId = :headingId)
+            """)
+    int deleteInSubtree(@Param("headingId") Long headingId);
+
+    @Modifying
+    @Query("""
+            DELETE FROM DocumentVersionCounter v
+            WHERE v.headingId IN (SELECT h.id FROM Heading h WHERE h.courseFile.id = :courseFileId)
+            """)
+    int deleteByCourseFileId(@Param("courseFileId") Long courseFileId);
+}
@@ -0,0 +1,50 @@
+package com.mitmeerut.CFM_Portal.Repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import com.mitmeerut.CFM_Portal.Model.FileCleanupTask;
+
+@Repository
+public interface FileCleanupTaskRepository extends JpaRepository<FileCleanupTask, Long> {
+
+    // Queues every uploaded file of a course file with one INSERT ... SELECT
+    // (blob content is released through content_blob; these are legacy files)
+    @Modifying
+    @Query(value = """
+            INSERT INTO file_cleanup_task (file_path, attempts, next_attempt_at, created_at)
+            SELECT d.file_path, 0, NOW(), NOW()
+            FROM document d
+            JOIN heading h ON h.id = d.heading_id
+            WHERE h.course_file_id = :courseFileId AND d.file_path IS NOT NULL
+            """, nativeQuery = true)
+    int enqueueForCourseFile(@Param("courseFileId") Long courseFileId);
+
+    // Same for a heading subtree (through heading_closure)
+    @Modifying
+    @Query(value = """
+            INSERT INTO file_cleanup_task (file_path, attempts, next_attempt_at, created_at)
+            SELECT d.file_path, 0, NOW(), NOW()
+            FROM document d
+            JOIN heading_closure c ON c.descendant_id = d.heading_id
+            WHERE c.ancestor_id = :headingId AND d.file_path IS NOT NULL
+            """, nativeQuery = true)
+    int enqueueForHeadingSubtree(@Param("headingId") Long headingId);
+
+    @Query("SELECT t FROM FileCleanupTask t WHERE t.nextAttemptAt <= :now AND t.attempts < :maxAttempts ORDER BY t.id")
+    List<FileCleanupTask> findDue(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts,
+            Pageable pageable);
+
+    // Called from the worker thread, outside any request transaction
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM FileCleanupTask t WHERE t.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,105 @@
+package com.mitmeerut.CFM_Portal.Repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+import com.mitmeerut.CFM_Portal.Model.HeadingClosure;
+
+@Repository
+public interface HeadingClosureRepository extends JpaRepository<HeadingClosure, HeadingClosure.Key> {
+
+    // ---- maintenance ----
+
+    // New heading: self row plus one row per ancestor of its parent
+    @Modifying
+    @Query(value = """
+            INSERT INTO heading_closure (ancestor_id, descendant_id, depth)
+            SELECT ancestor_id, :headingId, depth + 1 FROM heading_closure WHERE descendant_id = :parentId
+            UNION ALL
+            SELECT :headingId, :headingId, 0
+            """, nativeQuery = true)
+    void insertForNewHeading(@Param("headingId") Long headingId, @Param("parentId") Long parentId);
+
+    // Move, step 1: detach the subtree from all of its current outside ancestors
+    @Modifying
+    @Query(value = """
+            DELETE c FROM heading_closure c
+            JOIN heading_closure sub ON sub.descendant_id = c.descendant_id AND sub.ancestor_id = :headingId
+            LEFT JOIN heading_closure inside ON inside.ancestor_id = :headingId AND inside.descendant_id = c.ancestor_id
+            WHERE inside.ancestor_id IS NULL
+            """, nativeQuery = true)
+    void detachSubtree(@Param("headingId") Long headingId);
+
+    // Move, step 2: link every node of the subtree under the new parent's ancestors
+    @Modifying
+    @Query(value = """
+            INSERT INTO heading_closure (ancestor_id, descendant_id, depth)
+            SELECT p.ancestor_id, s.descendant_id, p.depth + s.depth + 1
+            FROM heading_closure p
+            JOIN heading_closure s ON s.ancestor_id = :headingId
+            WHERE p.descendant_id = :newParentId
+            """, nativeQuery = true)
+    void attachSubtree(@Param("headingId") Long headingId, @Param("newParentId") Long newParentId);
+
+    // Removes every row that touches the subtree (call after the headings are gone)
+    @Modifying
+    @Query(value = """
+            DELETE c FROM heading_closure c
+            JOIN heading_closure sub ON sub.descendant_id = c.descendant_id AND sub.ancestor_id = :headingId
+            """, nativeQuery = true)
+    void deleteSubtree(@Param("headingId") Long headingId);
+
+    // ---- reads ----
+
+    @Query("SELECT c.descendantId FROM HeadingClosure c WHERE c.ancestorId = :headingId")
+    List<Long> findSubtreeIds(@Param("headingId") Long headingId);
+
+    @Query("SELECT COUNT(c) > 0 FROM HeadingClosure c WHERE c.ancestorId = :ancestorId AND c.descendantId = :descendantId")
+    boolean isAncestor(@Param("ancestorId") Long ancestorId, @Param("descendantId") Long descendantId);
+
+    // Depth of a heading (0 = root)
+    @Query("SELECT COALESCE(MAX(c.depth), 0) FROM HeadingClosure c WHERE c.descendantId = :headingId")
+    Integer findDepth(@Param("headingId") Long headingId);
+
+    // ---- backfill ----
+
+    @Query(value = """
+            SELECT DISTINCT h.course_file_id FROM heading h
+            WHERE h.course_file_id IS NOT NULL
+            AND NOT EXISTS (SELECT 1 FROM heading_closure c WHERE c.ancestor_id = h.id AND c.descendant_id = h.id)
+            """, nativeQuery = true)
+    List<Long> findCourseFilesMissingClosure();
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO heading_closure (ancestor_id, descendant_id, depth)
+            SELECT h.id, h.id, 0 FROM heading h
+            WHERE h.course_file_id = :courseFileId
+            AND NOT EXISTS (SELECT 1 FROM heading_closure c WHERE c.ancestor_id = h.id AND c.descendant_id = h.id)
+            """, nativeQuery = true)
+    int backfillSelfRows(@Param("courseFileId") Long courseFileId);
+
+    // Adds one more level of ancestor links; repeat until it inserts nothing
+    @Modifying
+    @Query(value = """
+            INSERT INTO heading_closure (ancestor_id, descendant_id, depth)
+            SELECT c.ancestor_id, h.id, c.depth + 1
+            FROM heading h
+            JOIN heading_closure c ON c.descendant_id = h.parent_heading_id
+            WHERE h.course_file_id = :courseFileId
+            AND NOT EXISTS (SELECT 1 FROM heading_closure x
+                            WHERE x.ancestor_id = c.ancestor_id AND x.descendant_id = h.id)
+            """, nativeQuery = true)
+    int backfillNextLevel(@Param("courseFileId") Long courseFileId);
+
+    @Modifying
+    @Query(value = """
+            DELETE c FROM heading_closure c
+            JOIN heading h ON h.id = c.descendant_id
+            WHERE h.course_file_id = :courseFileId
+            """, nativeQuery = true)
+    int deleteByCourseFileId(@Param("courseFileId") Long courseFileId);
+}
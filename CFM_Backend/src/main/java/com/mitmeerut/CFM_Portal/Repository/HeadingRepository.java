@@ -1,7 +1,11 @@
 package com.mitmeerut.CFM_Portal.Repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import com.mitmeerut.CFM_Portal.Model.Heading;
 
@@ -11,4 +15,67 @@ public interface HeadingRepository extends JpaRepository<Heading, Long> {
     List<Heading> findByCourseFileIdAndParentHeadingIsNull(Long courseFileId);
 
     List<Heading> findByParentHeadingId(Long parentId);
+
+    // Every heading of a course file (all levels) in one query
+    List<Heading> findByCourseFileId(Long courseFileId);
+
+    // Every heading of a batch of course files
+    List<Heading> findByCourseFileIdIn(Collection<Long> courseFileIds);
+
+    // ---- subtree operations through heading_closure ----
+
+    @Query("""
+            SELECT h FROM Heading h
+            WHERE h.id IN (SELECT c.descendantId FROM HeadingClosure c WHERE c.ancestorId = :headingId)
+            """)
+    List<Heading> findSubtree(@Param("headingId") Long headingId);
+
+    // Break the self references first so the subtree can go in one DELETE
+    @Modifying
+    @Query("""
+            UPDATE Heading h SET h.parentHeading = null
+            WHERE h.id IN (SELECT c.descendantId FROM HeadingClosure c WHERE c.ancestorId = :headingId)
+            """)
+    int detachSubtreeParents(@Param("headingId") Long headingId);
+
+    @Modifying
+    @Query("""
+            DELETE FROM Heading h
+            WHERE h.id IN (SELECT c.descendantId FROM HeadingClosure c WHERE c.ancestorId = :headingId)
+            """)
+    int deleteSubtree(@Param("headingId") Long headingId);
+
+    // ---- course file delete ----
+
+    @Modifying
+    @Query("UPDATE Heading h SET h.parentHeading = null WHERE h.courseFile.id = :courseFileId")
+    int detachParentsByCourseFileId(@Param("courseFileId") Long courseFileId);
+
+    @Modifying
+    @Query("DELETE FROM Heading h WHERE h.courseFile.id = :courseFileId")
+    int deleteByCourseFileId(@Param("courseFileId") Long courseFileId);
+
+    // ---- sibling order keys ----
+
+    // Row lock on the parent of a sibling group (see HeadingOrderRebalancer.lockGroup)
+    @Query(value = "SELECT id FROM heading WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Long lockById(@Param("id") Long id);
+
+    // Renumbers one sibling group to evenly spaced keys in a single statement
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            UPDATE heading h
+            JOIN (SELECT id, ROW_NUMBER() OVER (ORDER BY order_index IS NULL, order_index, id) AS rn
+                  FROM heading
+                  WHERE course_file_id = :courseFileId AND parent_heading_id <=> :parentId) r ON r.id = h.id
+            SET h.order_index = r.rn * :gap
+            """, nativeQuery = true)
+    int respaceSiblings(@Param("courseFileId") Long courseFileId, @Param("parentId") Long parentId,
+            @Param("gap") int gap);
+
+    @Query(value = """
+            SELECT id FROM heading
+            WHERE course_file_id = :courseFileId AND parent_heading_id <=> :parentId
+            """, nativeQuery = true)
+    List<Long> findSiblingIds(@Param("courseFileId") Long courseFileId, @Param("parentId") Long parentId);
 }
@@ -1,6 +1,9 @@
 package com.mitmeerut.CFM_Portal.Repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import com.mitmeerut.CFM_Portal.Model.Notification;
@@ -22,4 +25,15 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     // notifications for an institute (via user -> teacher -> department ->
     // institute)
     List<Notification> findByUser_Teacher_Department_Institute_Id(Long instituteId);
+
+    // Submission notifications carry the course file id as payload.relatedId,
+    // comment notifications as payload.courseFileId
+    @Modifying
+    @Query(value = """
+            DELETE FROM Notification
+            WHERE (type = 'FILE_SUBMITTED'
+                   AND JSON_EXTRACT(payload, '$.relatedId') = :courseFileId)
+            OR JSON_EXTRACT(payload, '$.courseFileId') = :courseFileId
+            """, nativeQuery = true)
+    int deleteByCourseFileId(@Param("courseFileId") Long courseFileId);
 }
@@ -0,0 +1,18 @@
+package com.mitmeerut.CFM_Portal.Repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
+import com.mitmeerut.CFM_Portal.Model.ProvisioningJob;
+
+@Repository
+public interface ProvisioningJobRepository extends JpaRepository<ProvisioningJob, Long> {
+
+    List<ProvisioningJob> findByStatusIn(Collection<String> statuses);
+
+    List<ProvisioningJob> findByDepartmentIdOrderByCreatedAtDesc(Long departmentId);
+
+    boolean existsByDepartmentIdAndAcademicYearAndStatusIn(Long departmentId, String academicYear,
+            Collection<String> statuses);
+}
@@ -0,0 +1,9 @@
+package com.mitmeerut.CFM_Portal.Repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import com.mitmeerut.CFM_Portal.Model.StorageScrubCursor;
+
+@Repository
+public interface StorageScrubCursorRepository extends JpaRepository<StorageScrubCursor, String> {
+}
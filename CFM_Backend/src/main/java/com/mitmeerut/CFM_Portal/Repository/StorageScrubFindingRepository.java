@@ -0,0 +1,39 @@
+package com.mitmeerut.CFM_Portal.Repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import com.mitmeerut.CFM_Portal.Model.StorageScrubFinding;
+
+@Repository
+public interface StorageScrubFindingRepository extends JpaRepository<StorageScrubFinding, Long> {
+
+    Optional<StorageScrubFinding> findByKindAndSubject(String kind, String subject);
+
+    List<StorageScrubFinding> findByResolvedAtIsNullOrderByLastSeenAtDesc(Pageable pageable);
+
+    // Subjects a pass found healthy again
+    @Modifying
+    @Query("""
+            UPDATE StorageScrubFinding f SET f.resolvedAt = :now
+            WHERE f.kind = :kind AND f.subject IN :subjects AND f.resolvedAt IS NULL
+            """)
+    int resolve(@Param("kind") String kind, @Param("subjects") Collection<String> subjects,
+            @Param("now") LocalDateTime now);
+
+    // Quarantined orphans whose quarantine day has been purged
+    @Modifying
+    @Query("""
+            UPDATE StorageScrubFinding f SET f.resolvedAt = :now
+            WHERE f.kind = :kind AND f.lastSeenAt < :before AND f.resolvedAt IS NULL
+            """)
+    int resolveSeenBefore(@Param("kind") String kind, @Param("before") LocalDateTime before,
+            @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,16 @@
+package com.mitmeerut.CFM_Portal.Repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
+import com.mitmeerut.CFM_Portal.Model.TemplateEvolutionJob;
+
+@Repository
+public interface TemplateEvolutionJobRepository extends JpaRepository<TemplateEvolutionJob, Long> {
+
+    // Oldest first: jobs of one template must be applied in revision order
+    List<TemplateEvolutionJob> findByStatusInOrderByIdAsc(Collection<String> statuses);
+
+    List<TemplateEvolutionJob> findByTemplateIdOrderByCreatedAtDesc(Long templateId);
+}
@@ -0,0 +1,401 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.Document;
+import com.mitmeerut.CFM_Portal.Model.UploadSession;
+import com.mitmeerut.CFM_Portal.Repository.HeadingRepository;
+import com.mitmeerut.CFM_Portal.Repository.UploadSessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Resumable uploads: create a session, PUT numbered chunks (any order, any
+ * number of retries), poll progress, then complete.
+ *
+ * Each chunk is streamed straight into the session's .part file with
+ * positional FileChannel writes at index x chunkSize and forced to disk
+ * before its bit is recorded, so a chunk reported as received survives a
+ * crash. Completion first moves the session to COMPLETING, waiting for
+ * chunk writes in progress, so the file cannot change once it is hashed.
+ * It then hashes the file with no transaction open, creates the Document
+ * in one short transaction and moves the file into the blob store after it
+ * commits; a failed completion before that point can be retried.
+ * Sessions expire sessionTtl after their last chunk and are purged with
+ * their file.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int DEFAULT_CHUNK_SIZE = 5 * 1024 * 1024;
+    private static final int IO_BUFFER = 64 * 1024;
+    private static final int PURGE_BATCH = 200;
+    private static final long COMPLETE_WAIT_SECONDS = 30;
+
+    private final UploadSessionRepository sessionRepository;
+    private final HeadingRepository headingRepository;
+    private final DocumentService documentService;
+    private final ContentBlobService blobService;
+    private final TransactionTemplate transactionTemplate;
+
+    // Chunk writes hold the read lock and complete() the write lock while it
+    // moves the session to COMPLETING, so no write is in flight once it has
+    private final ConcurrentHashMap<String, ReentrantReadWriteLock> sessionLocks = new ConcurrentHashMap<>();
+
+    @Value("${file.upload.base-path:storage}")
+    private String baseUploadPath;
+
+    @Value("${upload.chunked.max-size:2147483648}")
+    private long maxUploadSize;
+
+    @Value("${upload.chunked.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    public ChunkedUploadService(UploadSessionRepository sessionRepository, HeadingRepository headingRepository,
+            DocumentService documentService, ContentBlobService blobService,
+            TransactionTemplate transactionTemplate) {
+        this.sessionRepository = sessionRepository;
+        this.headingRepository = headingRepository;
+        this.documentService = documentService;
+        this.blobService = blobService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // ==================== SESSION ====================
+
+    public UploadSession create(Long teacherId, Long headingId, String fileName, String contentType, Long totalSize,
+            Integer chunkSize) {
+        if (fileName == null || fileName.isBlank()) {
+            throw new RuntimeException("fileName is required");
+        }
+        if (totalSize == null || totalSize <= 0) {
+            throw new RuntimeException("totalSize must be positive");
+        }
+        if (totalSize > maxUploadSize) {
+            throw new RuntimeException("File is larger than the " + maxUploadSize + " byte limit");
+        }
+        if (!headingRepository.existsById(headingId)) {
+            throw new RuntimeException("Heading not found");
+        }
+
+        int size = chunkSize != null ? Math.max(MIN_CHUNK_SIZE, Math.min(chunkSize, MAX_CHUNK_SIZE))
+                : DEFAULT_CHUNK_SIZE;
+        LocalDateTime now = LocalDateTime.now();
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setHeadingId(headingId);
+        session.setTeacherId(teacherId);
+        session.setFileName(fileName);
+        session.setContentType(contentType);
+        session.setTotalSize(totalSize);
+        session.setChunkSize(size);
+        session.setChunkCount((int) ((totalSize + size - 1) / size));
+        session.setReceivedChunks(new byte[0]);
+        session.setCreatedAt(now);
+        session.setUpdatedAt(now);
+        session.setExpiresAt(now.plusHours(sessionTtlHours));
+
+        try {
+            Files.createDirectories(partPath(session.getId()).getParent());
+            Files.createFile(partPath(session.getId()));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create upload file: " + e.getMessage());
+        }
+        return sessionRepository.save(session);
+    }
+
+    public UploadSession getSession(String id, Long teacherId) {
+        UploadSession session = sessionRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Upload session not found"));
+        checkOwner(session, teacherId);
+        return session;
+    }
+
+    // ==================== CHUNKS ====================
+
+    /**
+     * Writes chunk {@code index} from the request body. The body must be
+     * exactly the chunk's length; re-sending a chunk overwrites it.
+     */
+    public UploadSession writeChunk(String id, Long teacherId, int index, long offset, InputStream body) {
+        Lock lock = lockFor(id).readLock();
+        lock.lock();
+        try {
+            return write(id, teacherId, index, offset, body);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private UploadSession write(String id, Long teacherId, int index, long offset, InputStream body) {
+        UploadSession session = getSession(id, teacherId);
+        checkOpen(session);
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new RuntimeException("Chunk index must be between 0 and " + (session.getChunkCount() - 1));
+        }
+        if (offset != (long) index * session.getChunkSize()) {
+            throw new RuntimeException("Chunk " + index + " starts at offset " + (long) index * session.getChunkSize());
+        }
+        long expected = chunkLength(session, index);
+
+        try (FileChannel channel = FileChannel.open(partPath(id), StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[IO_BUFFER];
+            long position = offset;
+            long written = 0;
+            int n;
+            while ((n = body.read(buffer)) != -1) {
+                if (written + n > expected) {
+                    throw new RuntimeException("Chunk " + index + " is longer than " + expected + " bytes");
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, n);
+                while (bytes.hasRemaining()) {
+                    position += channel.write(bytes, position);
+                }
+                written += n;
+            }
+            if (written != expected) {
+                throw new RuntimeException("Chunk " + index + " is incomplete: expected " + expected
+                        + " bytes, received " + written);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write chunk " + index + ": " + e.getMessage());
+        }
+
+        return transactionTemplate.execute(status -> {
+            UploadSession locked = sessionRepository.findByIdForUpdate(id)
+                    .orElseThrow(() -> new RuntimeException("Upload session not found"));
+            checkOpen(locked);
+            BitSet received = BitSet.valueOf(locked.getReceivedChunks());
+            if (!received.get(index)) {
+                received.set(index);
+                locked.setReceivedChunks(received.toByteArray());
+                locked.setReceivedCount(locked.getReceivedCount() + 1);
+            }
+            LocalDateTime now = LocalDateTime.now();
+            locked.setUpdatedAt(now);
+            locked.setExpiresAt(now.plusHours(sessionTtlHours));
+            return sessionRepository.save(locked);
+        });
+    }
+
+    public List<Integer> missingChunks(UploadSession session) {
+        BitSet received = BitSet.valueOf(session.getReceivedChunks());
+        List<Integer> missing = new ArrayList<>();
+        for (int i = received.nextClearBit(0); i < session.getChunkCount(); i = received.nextClearBit(i + 1)) {
+            missing.add(i);
+        }
+        return missing;
+    }
+
+    public long receivedBytes(UploadSession session) {
+        BitSet received = BitSet.valueOf(session.getReceivedChunks());
+        long bytes = 0;
+        for (int i = received.nextSetBit(0); i >= 0 && i < session.getChunkCount(); i = received.nextSetBit(i + 1)) {
+            bytes += chunkLength(session, i);
+        }
+        return bytes;
+    }
+
+    // ==================== COMPLETE / CANCEL ====================
+
+    /**
+     * Turns a fully received session into a Document. Idempotent: completing
+     * an already completed session returns its document.
+     */
+    public Document complete(String id, Long teacherId) {
+        UploadSession current = getSession(id, teacherId);
+        if (UploadSession.COMPLETED.equals(current.getStatus())) {
+            return documentService.getDocumentById(current.getDocumentId());
+        }
+        if (!UploadSession.COMPLETING.equals(current.getStatus())) {
+            freeze(id, teacherId);
+        }
+        // Hash the assembled file before the transaction: for a large upload
+        // that read is by far the slowest step
+        ContentBlobService.StagedBlob staged = blobService.stageFile(partPath(id));
+
+        boolean[] created = { false };
+        Document document = transactionTemplate.execute(status -> {
+            UploadSession session = sessionRepository.findByIdForUpdate(id)
+                    .orElseThrow(() -> new RuntimeException("Upload session not found"));
+            checkOwner(session, teacherId);
+            if (UploadSession.COMPLETED.equals(session.getStatus())) {
+                return documentService.getDocumentById(session.getDocumentId());
+            }
+            if (!UploadSession.COMPLETING.equals(session.getStatus())) {
+                throw new RuntimeException("Upload is not being completed");
+            }
+
+            Path part = partPath(id);
+            try {
+                if (Files.size(part) != session.getTotalSize()) {
+                    throw new RuntimeException("Assembled file is " + Files.size(part) + " bytes, expected "
+                            + session.getTotalSize());
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Upload file is missing: " + e.getMessage());
+            }
+
+            Document saved = documentService.createDocument(session.getHeadingId(), session.getTeacherId(),
+                    session.getFileName(),
+                    ContentSniffer.resolve(staged.sniffedType(), session.getContentType(), session.getFileName()),
+                    blobService.reference(staged));
+
+            LocalDateTime now = LocalDateTime.now();
+            session.setStatus(UploadSession.COMPLETED);
+            session.setDocumentId(saved.getId());
+            session.setUpdatedAt(now);
+            // Kept a while so a client retrying complete gets the same document
+            session.setExpiresAt(now.plusHours(sessionTtlHours));
+            sessionRepository.save(session);
+            created[0] = true;
+            return saved;
+        });
+        if (!created[0]) {
+            return document;
+        }
+
+        // After commit, like DocumentServiceImpl.uploadDocument: a move, or a
+        // full copy on some backends, must not run inside the transaction.
+        // publish consumes the part file either way, so a failure ends the upload
+        sessionLocks.remove(id);
+        try {
+            blobService.publish(staged);
+        } catch (RuntimeException e) {
+            Long documentId = document.getId();
+            transactionTemplate.executeWithoutResult(status -> {
+                documentService.deleteDocument(documentId);
+                sessionRepository.deleteById(id);
+            });
+            throw e;
+        }
+        return document;
+    }
+
+    // OPEN -> COMPLETING once no chunk write is in flight; later writes are rejected
+    private void freeze(String id, Long teacherId) {
+        Lock lock = lockFor(id).writeLock();
+        try {
+            if (!lock.tryLock(COMPLETE_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new RuntimeException("A chunk is still being uploaded, retry complete later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for chunk uploads");
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                UploadSession session = sessionRepository.findByIdForUpdate(id)
+                        .orElseThrow(() -> new RuntimeException("Upload session not found"));
+                checkOwner(session, teacherId);
+                if (!UploadSession.OPEN.equals(session.getStatus())) {
+                    return;
+                }
+                checkOpen(session);
+                if (session.getReceivedCount() < session.getChunkCount()) {
+                    throw new RuntimeException("Upload is incomplete: " + session.getReceivedCount() + " of "
+                            + session.getChunkCount() + " chunks received");
+                }
+                LocalDateTime now = LocalDateTime.now();
+                session.setStatus(UploadSession.COMPLETING);
+                session.setUpdatedAt(now);
+                session.setExpiresAt(now.plusHours(sessionTtlHours));
+                sessionRepository.save(session);
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void cancel(String id, Long teacherId) {
+        UploadSession session = getSession(id, teacherId);
+        if (UploadSession.COMPLETED.equals(session.getStatus())) {
+            throw new RuntimeException("Upload is already completed");
+        }
+        sessionRepository.delete(session);
+        sessionLocks.remove(id);
+        deletePartFile(id);
+    }
+
+    @Scheduled(fixedDelayString = "${upload.chunked.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        List<UploadSession> expired = sessionRepository.findExpired(LocalDateTime.now(),
+                PageRequest.of(0, PURGE_BATCH));
+        for (UploadSession session : expired) {
+            try {
+                sessionRepository.delete(session);
+                sessionLocks.remove(session.getId());
+                deletePartFile(session.getId());
+            } catch (Exception e) {
+                System.err.println("Failed to purge upload session " + session.getId() + ": " + e.getMessage());
+            }
+        }
+        if (!expired.isEmpty()) {
+            System.out.println("Purged " + expired.size() + " expired upload sessions");
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    private long chunkLength(UploadSession session, int index) {
+        long start = (long) index * session.getChunkSize();
+        return Math.min(session.getChunkSize(), session.getTotalSize() - start);
+    }
+
+    private void checkOwner(UploadSession session, Long teacherId) {
+        if (!session.getTeacherId().equals(teacherId)) {
+            throw new RuntimeException("Access denied");
+        }
+    }
+
+    private void checkOpen(UploadSession session) {
+        if (UploadSession.COMPLETING.equals(session.getStatus())) {
+            throw new RuntimeException("Upload is being completed");
+        }
+        if (!UploadSession.OPEN.equals(session.getStatus())) {
+            throw new RuntimeException("Upload is already completed");
+        }
+        if (session.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new RuntimeException("Upload session has expired");
+        }
+    }
+
+    private ReentrantReadWriteLock lockFor(String id) {
+        return sessionLocks.computeIfAbsent(id, key -> new ReentrantReadWriteLock());
+    }
+
+    private Path partPath(String id) {
+        return Paths.get(baseUploadPath, "uploads", id + ".part");
+    }
+
+    private void deletePartFile(String id) {
+        try {
+            Files.deleteIfExists(partPath(id));
+        } catch (IOException e) {
+            System.err.println("Failed to delete upload file " + id + ": " + e.getMessage());
+        }
+    }
+}
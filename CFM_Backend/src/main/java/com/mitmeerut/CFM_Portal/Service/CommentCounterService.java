@@ -0,0 +1,100 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.Comment;
+import com.mitmeerut.CFM_Portal.Model.CommentCounter;
+import com.mitmeerut.CFM_Portal.Model.CourseFile;
+import com.mitmeerut.CFM_Portal.Repository.CommentCounterRepository;
+import com.mitmeerut.CFM_Portal.Repository.CommentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Maintains per-course-file comment counters (total, threads, unread by owner).
+ *
+ * Callers invoke these methods inside the transaction that writes the comment,
+ * so the counters commit or roll back together with it.
+ */
+@Service
+@Transactional
+public class CommentCounterService {
+
+    private final CommentCounterRepository counterRepository;
+    private final CommentRepository commentRepository;
+
+    public CommentCounterService(CommentCounterRepository counterRepository,
+            CommentRepository commentRepository) {
+        this.counterRepository = counterRepository;
+        this.commentRepository = commentRepository;
+    }
+
+    @PostConstruct
+    public void backfill() {
+        int created = counterRepository.backfillMissing();
+        if (created > 0) {
+            System.out.println("Backfilled comment counters for " + created + " course files");
+        }
+    }
+
+    public void onCommentAdded(Comment comment) {
+        applyDelta(comment, 1);
+    }
+
+    public void onCommentRemoved(Comment comment) {
+        applyDelta(comment, -1);
+    }
+
+    private void applyDelta(Comment comment, int sign) {
+        CourseFile cf = comment.getCourseFile();
+        if (cf == null) {
+            return;
+        }
+        long root = comment.getParentComment() == null ? sign : 0;
+        long unread = isUnreadForOwner(comment, cf) ? sign : 0;
+        counterRepository.applyDelta(cf.getId(), sign, root, unread);
+    }
+
+    private boolean isUnreadForOwner(Comment comment, CourseFile cf) {
+        if (Boolean.TRUE.equals(comment.getIsReceived())) {
+            return false;
+        }
+        Long ownerId = cf.getCreatedBy() != null ? cf.getCreatedBy().getId() : null;
+        return comment.getAuthor() == null || !comment.getAuthor().getId().equals(ownerId);
+    }
+
+    /**
+     * Owner opened the discussion: clear the unread badge
+     */
+    public void markRead(CourseFile courseFile) {
+        if (courseFile.getCreatedBy() == null) {
+            return;
+        }
+        commentRepository.markReceivedForOwner(courseFile.getId(), courseFile.getCreatedBy().getId());
+        counterRepository.resetUnread(courseFile.getId());
+    }
+
+    /**
+     * Counters for a page of course files in one query, keyed by course file id
+     */
+    public Map<Long, CommentCounter> getCounters(Collection<Long> courseFileIds) {
+        Map<Long, CommentCounter> result = new HashMap<>();
+        if (courseFileIds.isEmpty()) {
+            return result;
+        }
+        for (CommentCounter counter : counterRepository.findAllById(courseFileIds)) {
+            result.put(counter.getCourseFileId(), counter);
+        }
+        return result;
+    }
+
+    /**
+     * Adds commentCount / rootCommentCount / unreadCommentCount to a list item
+     */
+    public void putCounts(Map<String, Object> item, CommentCounter counter) {
+        item.put("commentCount", counter != null ? counter.getTotalCount() : 0L);
+        item.put("rootCommentCount", counter != null ? counter.getRootCount() : 0L);
+        item.put("unreadCommentCount", counter != null ? counter.getUnreadCount() : 0L);
+    }
+}
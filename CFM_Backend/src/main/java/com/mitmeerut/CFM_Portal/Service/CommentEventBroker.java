@@ -0,0 +1,250 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process fan-out of live comment events to Server-Sent Event subscribers,
+ * one channel per course file.
+ *
+ * - Events are published only after the surrounding transaction commits.
+ * - Each subscriber has a small bounded buffer drained by a shared pool, so a
+ * slow client never blocks the request that published the event. A
+ * subscriber whose buffer overflows is disconnected and resumes on reconnect.
+ * - Each channel keeps a short replay window so a reconnecting client sending
+ * Last-Event-ID receives what it missed; if it is too far behind it gets a
+ * "resync" event and should refetch the thread list.
+ */
+@Service
+public class CommentEventBroker {
+
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+    private static final int REPLAY_EVENTS = 200;
+    // Must hold a full replay plus a few live events
+    private static final int SUBSCRIBER_BUFFER = REPLAY_EVENTS + 56;
+    private static final long REPLAY_AGE_MS = 10 * 60 * 1000L;
+
+    // Seeded from the clock so ids keep increasing across restarts; anything
+    // older than the seed was published by a previous process and is gone
+    private final long bootSequence = System.currentTimeMillis() * 1000;
+    private final AtomicLong sequence = new AtomicLong(bootSequence);
+    private final ConcurrentHashMap<Long, Channel> channels = new ConcurrentHashMap<>();
+    private final ExecutorService dispatcher = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "comment-sse-dispatch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // ==================== SUBSCRIBE ====================
+
+    public SseEmitter subscribe(Long courseFileId, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(emitter);
+        subscriber.offer(new Event(0, null, "connected"));
+
+        // Replay and registration happen under the channel lock so no event is
+        // missed or delivered twice between the two; a channel that heartbeat
+        // removed in the meantime is replaced by a fresh one
+        Channel channel;
+        while (true) {
+            channel = channels.computeIfAbsent(courseFileId, id -> new Channel());
+            synchronized (channel) {
+                if (channel.removed) {
+                    continue;
+                }
+                if (lastEventId != null) {
+                    if (lastEventId < bootSequence || lastEventId < channel.evictedUpTo) {
+                        subscriber.offer(new Event(sequence.incrementAndGet(), "resync",
+                                Map.of("courseFileId", courseFileId)));
+                    }
+                    for (Event event : channel.replay) {
+                        if (event.id > lastEventId) {
+                            subscriber.offer(event);
+                        }
+                    }
+                }
+                channel.subscribers.add(subscriber);
+                break;
+            }
+        }
+
+        Channel joined = channel;
+        emitter.onCompletion(() -> joined.subscribers.remove(subscriber));
+        emitter.onTimeout(() -> joined.subscribers.remove(subscriber));
+        emitter.onError(e -> joined.subscribers.remove(subscriber));
+        return emitter;
+    }
+
+    // ==================== PUBLISH ====================
+
+    /**
+     * Publishes an event to every subscriber of the course file once the
+     * current transaction commits (immediately if there is none).
+     */
+    public void publish(Long courseFileId, String type, Map<String, Object> data) {
+        if (courseFileId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(courseFileId, type, data);
+                }
+            });
+        } else {
+            dispatch(courseFileId, type, data);
+        }
+    }
+
+    private void dispatch(Long courseFileId, String type, Map<String, Object> data) {
+        while (true) {
+            Channel channel = channels.computeIfAbsent(courseFileId, id -> new Channel());
+            synchronized (channel) {
+                if (channel.removed) {
+                    continue;
+                }
+                Event event = new Event(sequence.incrementAndGet(), type, data);
+                channel.replay.addLast(event);
+                while (channel.replay.size() > REPLAY_EVENTS) {
+                    channel.evictedUpTo = channel.replay.removeFirst().id;
+                }
+                for (Subscriber subscriber : channel.subscribers) {
+                    subscriber.offer(event);
+                }
+                return;
+            }
+        }
+    }
+
+    // ==================== HEARTBEAT / HOUSEKEEPING ====================
+
+    @Scheduled(fixedDelayString = "${comments.sse.heartbeat-ms:15000}")
+    public void heartbeat() {
+        long cutoff = System.currentTimeMillis() - REPLAY_AGE_MS;
+        Event ping = new Event(0, null, "heartbeat");
+
+        for (Map.Entry<Long, Channel> entry : channels.entrySet()) {
+            Channel channel = entry.getValue();
+            synchronized (channel) {
+                while (!channel.replay.isEmpty() && channel.replay.peekFirst().createdAt < cutoff) {
+                    channel.evictedUpTo = channel.replay.removeFirst().id;
+                }
+                if (channel.subscribers.isEmpty() && channel.replay.isEmpty()) {
+                    channel.removed = true;
+                    channels.remove(entry.getKey(), channel);
+                    continue;
+                }
+                for (Subscriber subscriber : channel.subscribers) {
+                    subscriber.offer(ping);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Channel channel : channels.values()) {
+            for (Subscriber subscriber : channel.subscribers) {
+                subscriber.emitter.complete();
+            }
+        }
+        dispatcher.shutdownNow();
+    }
+
+    // ==================== INTERNALS ====================
+
+    private static final class Event {
+        final long id;
+        final String name; // null = SSE comment line (connected / heartbeat)
+        final Object data;
+        final long createdAt = System.currentTimeMillis();
+
+        Event(long id, String name, Object data) {
+            this.id = id;
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    private static final class Channel {
+        final Deque<Event> replay = new ArrayDeque<>();
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        // Id of the newest event that fell out of the replay window
+        long evictedUpTo;
+        // Dropped from the map by heartbeat: callers that still hold it look it up again
+        boolean removed;
+    }
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final BlockingQueue<Event> buffer = new ArrayBlockingQueue<>(SUBSCRIBER_BUFFER);
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Event event) {
+            if (closed) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                // Too slow to keep up: drop it, the client resumes with Last-Event-ID
+                close();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                dispatcher.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Event event;
+                while (!closed && (event = buffer.poll()) != null) {
+                    if (event.name == null) {
+                        emitter.send(SseEmitter.event().comment(String.valueOf(event.data)));
+                    } else {
+                        emitter.send(SseEmitter.event()
+                                .id(String.valueOf(event.id))
+                                .name(event.name)
+                                .data(event.data, MediaType.APPLICATION_JSON));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            } finally {
+                draining.set(false);
+                // An event may have arrived after the last poll
+                if (!closed && !buffer.isEmpty() && draining.compareAndSet(false, true)) {
+                    dispatcher.execute(this::drain);
+                }
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.clear();
+            try {
+                emitter.complete();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.Comment;
+import com.mitmeerut.CFM_Portal.Repository.CommentRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Builds nested comment threads (root comment + replies) for the Comments &
+ * Discussions views.
+ *
+ * Every scope is loaded with one query, replies are grouped by parent id in
+ * memory and the DTOs are built in a single pass, so the number of SQL
+ * statements does not grow with the number of threads.
+ */
+@Service
+@Transactional
+public class CommentThreadService {
+
+    private static final Comparator<Comment> OLDEST_FIRST = Comparator
+            .comparing(Comment::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Comment::getId);
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final CommentRepository commentRepository;
+
+    public CommentThreadService(CommentRepository commentRepository) {
+        this.commentRepository = commentRepository;
+    }
+
+    /**
+     * Threads posted on a single course file, newest first
+     */
+    public List<Map<String, Object>> getThreadsForCourseFile(Long courseFileId) {
+        return assemble(commentRepository.findThreadsByCourseFileId(courseFileId));
+    }
+
+    /**
+     * Threads posted on any course file of a department, newest first
+     */
+    public List<Map<String, Object>> getThreadsForDepartment(Long departmentId) {
+        return assemble(commentRepository.findThreadsByDepartmentId(departmentId));
+    }
+
+    /**
+     * Threads started by the teacher or posted on the teacher's course files,
+     * newest first
+     */
+    public List<Map<String, Object>> getThreadsForTeacher(Long teacherId) {
+        return assemble(commentRepository.findThreadsForTeacher(teacherId));
+    }
+
+    /**
+     * One keyset page of department threads, newest first.
+     * Returns "items", "nextCursor" (null on the last page) and "hasMore".
+     *
+     * @throws IllegalArgumentException if the cursor is not one this method returned
+     */
+    public Map<String, Object> getDepartmentFeedPage(Long departmentId, Long courseId, Long authorId,
+            Long headingId, LocalDate from, LocalDate to, String cursor, int limit) {
+
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        LocalDateTime cursorAt = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = decodeCursor(cursor);
+            try {
+                cursorAt = LocalDateTime.parse(parts[0]);
+                cursorId = Long.parseLong(parts[1]);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        // Fetch one extra row to know whether another page exists
+        List<Comment> roots = commentRepository.findDepartmentRootPage(departmentId, courseId, authorId, headingId,
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay() : null,
+                cursorAt, cursorId, PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = roots.size() > pageSize;
+        if (hasMore) {
+            roots = roots.subList(0, pageSize);
+        }
+
+        Map<Long, List<Comment>> repliesByParent = new HashMap<>();
+        if (!roots.isEmpty()) {
+            List<Long> rootIds = roots.stream().map(Comment::getId).collect(Collectors.toList());
+            for (Comment reply : commentRepository.findRepliesByParentIds(rootIds)) {
+                repliesByParent.computeIfAbsent(reply.getParentComment().getId(), k -> new ArrayList<>()).add(reply);
+            }
+        }
+
+        List<Map<String, Object>> items = new ArrayList<>(roots.size());
+        for (Comment root : roots) {
+            List<Comment> replies = repliesByParent.getOrDefault(root.getId(), Collections.emptyList());
+            replies.sort(OLDEST_FIRST);
+            items.add(toDto(root, replies));
+        }
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("items", items);
+        page.put("hasMore", hasMore);
+        page.put("nextCursor", hasMore ? encodeCursor(roots.get(roots.size() - 1)) : null);
+        return page;
+    }
+
+    /**
+     * Single thread for an already loaded root comment
+     */
+    public Map<String, Object> getThread(Comment root) {
+        List<Comment> replies = commentRepository.findRepliesByParentId(root.getId());
+        replies.sort(OLDEST_FIRST);
+        return toDto(root, replies);
+    }
+
+    /**
+     * Groups a flat list of roots and replies into threads
+     */
+    public List<Map<String, Object>> assemble(List<Comment> comments) {
+        List<Comment> roots = new ArrayList<>();
+        Map<Long, List<Comment>> repliesByParent = new HashMap<>();
+
+        for (Comment c : comments) {
+            if (c.getParentComment() == null) {
+                roots.add(c);
+            } else {
+                // getId() on the lazy parent proxy does not hit the database
+                repliesByParent.computeIfAbsent(c.getParentComment().getId(), k -> new ArrayList<>()).add(c);
+            }
+        }
+
+        roots.sort(OLDEST_FIRST.reversed());
+
+        List<Map<String, Object>> result = new ArrayList<>(roots.size());
+        for (Comment root : roots) {
+            List<Comment> replies = repliesByParent.getOrDefault(root.getId(), Collections.emptyList());
+            replies.sort(OLDEST_FIRST);
+            result.add(toDto(root, replies));
+        }
+        return result;
+    }
+
+    /**
+     * Root comment DTO with the given replies nested under "replies"
+     */
+    public Map<String, Object> toDto(Comment comment, List<Comment> replies) {
+        Map<String, Object> dto = new HashMap<>();
+        dto.put("id", comment.getId());
+        dto.put("text", comment.getText());
+        dto.put("createdAt", comment.getCreatedAt());
+        dto.put("isReceived", comment.getIsReceived());
+
+        // Author info
+        if (comment.getAuthor() != null) {
+            Map<String, Object> author = new HashMap<>();
+            author.put("id", comment.getAuthor().getId());
+            author.put("name", comment.getAuthor().getName());
+            author.put("designation",
+                    comment.getAuthor().getDesignation() != null ? comment.getAuthor().getDesignation() : "");
+            author.put("avatar", getInitials(comment.getAuthor().getName()));
+            dto.put("author", author);
+        }
+
+        // Course file info
+        if (comment.getCourseFile() != null) {
+            Map<String, Object> cf = new HashMap<>();
+            cf.put("id", comment.getCourseFile().getId());
+            cf.put("courseCode", comment.getCourseFile().getCourse().getCode());
+            cf.put("courseTitle", comment.getCourseFile().getCourse().getTitle());
+            dto.put("courseFile", cf);
+        }
+
+        // Document info
+        if (comment.getDocument() != null) {
+            Map<String, Object> doc = new HashMap<>();
+            doc.put("id", comment.getDocument().getId());
+            doc.put("fileName", comment.getDocument().getFileName());
+            dto.put("document", doc);
+        }
+
+        // Heading info
+        if (comment.getHeading() != null) {
+            Map<String, Object> heading = new HashMap<>();
+            heading.put("id", comment.getHeading().getId());
+            heading.put("title", comment.getHeading().getTitle());
+            dto.put("heading", heading);
+        }
+
+        dto.put("replies", replies.stream()
+                .map(this::replyToDto)
+                .collect(Collectors.toList()));
+
+        return dto;
+    }
+
+    public Map<String, Object> replyToDto(Comment reply) {
+        Map<String, Object> dto = new HashMap<>();
+        dto.put("id", reply.getId());
+        dto.put("text", reply.getText());
+        dto.put("createdAt", reply.getCreatedAt());
+
+        if (reply.getAuthor() != null) {
+            dto.put("author", reply.getAuthor().getName());
+            dto.put("avatar", getInitials(reply.getAuthor().getName()));
+            dto.put("authorDesignation",
+                    reply.getAuthor().getDesignation() != null ? reply.getAuthor().getDesignation() : "");
+        }
+
+        return dto;
+    }
+
+    // Cursor is an opaque base64url token of "createdAt|id"
+    private String encodeCursor(Comment last) {
+        String raw = last.getCreatedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException();
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private String getInitials(String name) {
+        if (name == null || name.isEmpty())
+            return "??";
+        String[] parts = name.split(" ");
+        if (parts.length >= 2) {
+            return (parts[0].charAt(0) + "" + parts[parts.length - 1].charAt(0)).toUpperCase();
+        }
+        return name.substring(0, Math.min(2, name.length())).toUpperCase();
+    }
+}
@@ -0,0 +1,22 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import java.util.List;
+
+/**
+ * Immutable, validated form of a Template's structure and checklist JSON.
+ * Built once per template revision by {@link CompiledTemplateCache}.
+ */
+public record CompiledTemplate(Long templateId, long revision, String type, List<Node> headings,
+        List<String> checklist, int nodeCount) {
+
+    public record Node(String title, List<Node> children) {
+        public Node {
+            children = List.copyOf(children);
+        }
+    }
+
+    public CompiledTemplate {
+        headings = List.copyOf(headings);
+        checklist = List.copyOf(checklist);
+    }
+}
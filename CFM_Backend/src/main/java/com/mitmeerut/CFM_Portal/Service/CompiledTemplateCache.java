@@ -0,0 +1,124 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mitmeerut.CFM_Portal.Model.Template;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parses and validates Template.structure / Template.checklist once per
+ * template revision. Entries are keyed by template id and checked against
+ * the template's revision, so an update made elsewhere is picked up on the
+ * next read; TemplateServiceImpl also evicts on update and delete.
+ *
+ * Structure: {"type": "...", "headings": [{"title": "...", "children": [...]}]},
+ * or the admin UI's legacy ["title", ...], compiled as flat root headings.
+ * A heading may also be given as a bare title string.
+ * Checklist: ["item", ...] (null or blank = no checklist)
+ */
+@Component
+public class CompiledTemplateCache {
+
+    private final ConcurrentHashMap<Long, CompiledTemplate> cache = new ConcurrentHashMap<>();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public CompiledTemplate get(Template template) {
+        long revision = revisionOf(template);
+        CompiledTemplate cached = template.getId() != null ? cache.get(template.getId()) : null;
+        if (cached != null && cached.revision() == revision) {
+            return cached;
+        }
+        CompiledTemplate compiled = compile(template);
+        if (template.getId() != null) {
+            cache.merge(template.getId(), compiled,
+                    (old, fresh) -> old.revision() > fresh.revision() ? old : fresh);
+        }
+        return compiled;
+    }
+
+    public void evict(Long templateId) {
+        if (templateId != null) {
+            cache.remove(templateId);
+        }
+    }
+
+    /**
+     * Parses and validates without caching; throws on invalid JSON or shape
+     */
+    public CompiledTemplate compile(Template template) {
+        if (template.getStructure() == null || template.getStructure().isBlank()) {
+            throw new RuntimeException("Template has no structure");
+        }
+        JsonNode root = readJson(template.getStructure(), "structure");
+        JsonNode headings = root.isArray() ? root : root.get("headings");
+        if (headings == null || !headings.isArray()) {
+            throw new RuntimeException("Template structure must be an array or contain a \"headings\" array");
+        }
+        int[] count = { 0 };
+        List<CompiledTemplate.Node> nodes = compileLevel(headings, "headings", count);
+        String type = root.hasNonNull("type") ? root.get("type").asText() : null;
+
+        return new CompiledTemplate(template.getId(), revisionOf(template), type, nodes,
+                compileChecklist(template.getChecklist()), count[0]);
+    }
+
+    private List<CompiledTemplate.Node> compileLevel(JsonNode nodes, String path, int[] count) {
+        List<CompiledTemplate.Node> result = new ArrayList<>();
+        int index = 0;
+        for (JsonNode node : nodes) {
+            String nodePath = path + "[" + index++ + "]";
+            JsonNode title = node.isTextual() ? node : node.get("title");
+            if (title == null || !title.isTextual() || title.asText().isBlank()) {
+                throw new RuntimeException("Template heading " + nodePath + " has no title");
+            }
+            List<CompiledTemplate.Node> children = List.of();
+            JsonNode childNodes = node.get("children");
+            if (childNodes != null && !childNodes.isNull()) {
+                if (!childNodes.isArray()) {
+                    throw new RuntimeException("Template heading " + nodePath + " has a non-array \"children\"");
+                }
+                children = compileLevel(childNodes, nodePath + ".children", count);
+            }
+            count[0]++;
+            result.add(new CompiledTemplate.Node(title.asText().trim(), children));
+        }
+        return result;
+    }
+
+    private List<String> compileChecklist(String checklist) {
+        if (checklist == null || checklist.isBlank()) {
+            return List.of();
+        }
+        JsonNode root = readJson(checklist, "checklist");
+        if (!root.isArray()) {
+            throw new RuntimeException("Template checklist must be a JSON array");
+        }
+        List<String> items = new ArrayList<>();
+        int index = 0;
+        for (JsonNode item : root) {
+            if (!item.isTextual() || item.asText().isBlank()) {
+                throw new RuntimeException("Template checklist item " + index + " must be a non-empty string");
+            }
+            items.add(item.asText().trim());
+            index++;
+        }
+        return items;
+    }
+
+    private JsonNode readJson(String json, String field) {
+        try {
+            return mapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Invalid template " + field + " JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private long revisionOf(Template template) {
+        return template.getRevision() != null ? template.getRevision() : 0L;
+    }
+}
@@ -0,0 +1,228 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Repository.ContentBlobRepository;
+import com.mitmeerut.CFM_Portal.storage.BlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Content-addressed, reference-counted storage for uploaded documents.
+ *
+ * An upload is staged: streamed to a temp file while its SHA-256 is
+ * computed, with no transaction open. The caller then takes a reference in
+ * a short transaction and, once that commits, the file is published once
+ * to the {@link BlobStore} under its SHA-256; identical uploads only add a
+ * reference to the content_blob row. Documents store the hash (blobHash)
+ * as their storage key, not a file path.
+ *
+ * References are taken and released in the caller's transaction. Blobs
+ * whose count dropped to zero are reclaimed after a grace period; the
+ * reclaimer deletes the file while holding the row lock, and
+ * {@link #publish} checks for the file only after the reference is
+ * committed, so a blob that is uploaded again while being reclaimed is
+ * rewritten rather than lost.
+ */
+@Service
+public class ContentBlobService {
+
+    private static final int RECLAIM_BATCH = 200;
+    private static final int IO_BUFFER = 64 * 1024;
+
+    // sha256 is also the document's key in the BlobStore
+    public record StoredBlob(String sha256, long size) {
+    }
+
+    // Hashed content not yet in the store; file is moved or removed by publish/discard,
+    // sniffedType = type detected from the leading bytes (null if unknown)
+    public record StagedBlob(String sha256, long size, Path file, String sniffedType) {
+    }
+
+    private final ContentBlobRepository blobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BlobStore blobStore;
+
+    @Value("${file.upload.base-path:storage}")
+    private String baseUploadPath;
+
+    @Value("${storage.blobs.reclaim-grace-ms:600000}")
+    private long reclaimGraceMs;
+
+    public ContentBlobService(ContentBlobRepository blobRepository, TransactionTemplate transactionTemplate,
+            BlobStore blobStore) {
+        this.blobRepository = blobRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.blobStore = blobStore;
+    }
+
+    // ==================== STAGING (no transaction) ====================
+
+    /**
+     * Streams the content to a staging file under {base}/blobs/tmp while
+     * hashing it. Runs outside any transaction; pass the result to
+     * {@link #reference} in the transaction that saves the Document, then to
+     * {@link #publish} after it commits (or {@link #discard} if it does not).
+     * Size, checksum and content type are all taken in this single pass.
+     */
+    public StagedBlob stage(InputStream content) {
+        Path temp = null;
+        boolean staged = false;
+        try {
+            Path tmpDir = Paths.get(baseUploadPath, "blobs", "tmp");
+            Files.createDirectories(tmpDir);
+            temp = Files.createTempFile(tmpDir, "upload-", ".part");
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ContentSniffer.Probe probe = new ContentSniffer.Probe(content);
+            long size;
+            try (InputStream in = new DigestInputStream(probe, digest);
+                    OutputStream out = Files.newOutputStream(temp)) {
+                size = transfer(in, out);
+            }
+            staged = true;
+            return new StagedBlob(HexFormat.of().formatHex(digest.digest()), size, temp, probe.type());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to store file: " + e.getMessage());
+        } finally {
+            if (!staged) {
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #stage} for a file already on disk (an assembled chunked
+     * upload): only hashes it. The file is taken over: {@link #publish} moves
+     * it into the blob store and {@link #discard} deletes it, so it must not
+     * be written to once hashed.
+     */
+    public StagedBlob stageFile(Path source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ContentSniffer.Probe probe = new ContentSniffer.Probe(Files.newInputStream(source));
+            long size;
+            try (InputStream in = new DigestInputStream(probe, digest)) {
+                size = transfer(in, OutputStream.nullOutputStream());
+            }
+            return new StagedBlob(HexFormat.of().formatHex(digest.digest()), size, source, probe.type());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to store file: " + e.getMessage());
+        }
+    }
+
+    // ==================== REFERENCES (caller's transaction) ====================
+
+    /**
+     * Takes one reference to the staged content. Must run in the transaction
+     * that saves the Document; only a row upsert, no file I/O.
+     */
+    public StoredBlob reference(StagedBlob staged) {
+        blobRepository.acquire(staged.sha256(), staged.size(), blobStore.describe(staged.sha256()));
+        return new StoredBlob(staged.sha256(), staged.size());
+    }
+
+    /**
+     * Moves the staged file into place unless the content is already stored.
+     * Call once the reference is committed: from then on the reclaimer leaves
+     * the blob alone, so a file it deleted earlier is simply written again.
+     */
+    public void publish(StagedBlob staged) {
+        try {
+            if (!blobStore.exists(staged.sha256())) {
+                blobStore.put(staged.sha256(), staged.file(), false);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store file: " + e.getMessage());
+        } finally {
+            discard(staged);
+        }
+    }
+
+    // Removes the staged file
+    public void discard(StagedBlob staged) {
+        if (staged != null) {
+            deleteQuietly(staged.file());
+        }
+    }
+
+    private long transfer(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[IO_BUFFER];
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+            total += n;
+        }
+        return total;
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public void release(String sha256) {
+        if (sha256 != null) {
+            blobRepository.release(sha256);
+        }
+    }
+
+    public int releaseCourseFile(Long courseFileId) {
+        return blobRepository.releaseForCourseFile(courseFileId);
+    }
+
+    public int releaseHeadingSubtree(Long headingId) {
+        return blobRepository.releaseForHeadingSubtree(headingId);
+    }
+
+    // ==================== RECLAIM ====================
+
+    @Scheduled(fixedDelayString = "${storage.blobs.reclaim-interval-ms:60000}")
+    public void reclaimReleased() {
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(reclaimGraceMs * 1_000_000L);
+        List<String> hashes = blobRepository.findReclaimable(cutoff, PageRequest.of(0, RECLAIM_BATCH));
+        int reclaimed = 0;
+        for (String sha256 : hashes) {
+            try {
+                Boolean deleted = transactionTemplate.execute(status -> blobRepository.lockUnreferenced(sha256)
+                        .map(blob -> {
+                            try {
+                                blobStore.delete(blob.getSha256());
+                            } catch (IOException e) {
+                                throw new RuntimeException(e.getMessage());
+                            }
+                            blobRepository.delete(blob);
+                            return true;
+                        })
+                        .orElse(false));
+                if (Boolean.TRUE.equals(deleted)) {
+                    reclaimed++;
+                }
+            } catch (Exception e) {
+                System.err.println("Failed to reclaim blob " + sha256 + ": " + e.getMessage());
+            }
+        }
+        if (reclaimed > 0) {
+            System.out.println("Reclaimed " + reclaimed + " unreferenced blobs");
+        }
+    }
+}
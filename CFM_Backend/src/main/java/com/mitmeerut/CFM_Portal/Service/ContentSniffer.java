@@ -0,0 +1,121 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Content type detection from a file's leading bytes, for the formats
+ * course files actually hold. The bytes are captured by a {@link Probe}
+ * wrapped around the upload stream, so detection costs no extra read.
+ */
+public final class ContentSniffer {
+
+    private static final int PROBE_BYTES = 16;
+
+    private ContentSniffer() {
+    }
+
+    /**
+     * Passes the stream through unchanged, remembering its first bytes
+     */
+    public static final class Probe extends FilterInputStream {
+        private final byte[] head = new byte[PROBE_BYTES];
+        private int length;
+
+        public Probe(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0 && length < PROBE_BYTES) {
+                head[length++] = (byte) b;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0 && length < PROBE_BYTES) {
+                int copy = Math.min(n, PROBE_BYTES - length);
+                System.arraycopy(b, off, head, length, copy);
+                length += copy;
+            }
+            return n;
+        }
+
+        // Detected type, or null if the leading bytes match no known format
+        public String type() {
+            return sniff(head, length);
+        }
+    }
+
+    static String sniff(byte[] b, int n) {
+        if (startsWith(b, n, 0x25, 0x50, 0x44, 0x46)) {
+            return "application/pdf";
+        }
+        if (startsWith(b, n, 0x89, 0x50, 0x4E, 0x47)) {
+            return "image/png";
+        }
+        if (startsWith(b, n, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(b, n, 0x47, 0x49, 0x46, 0x38)) {
+            return "image/gif";
+        }
+        if (startsWith(b, n, 0x50, 0x4B, 0x03, 0x04)) {
+            return "application/zip";
+        }
+        if (startsWith(b, n, 0xD0, 0xCF, 0x11, 0xE0)) {
+            return "application/x-ole-storage";
+        }
+        return null;
+    }
+
+    /**
+     * The type to store: the sniffed one, refined by the file extension for
+     * container formats (docx/xlsx/pptx are ZIPs, doc/xls/ppt are OLE files),
+     * falling back to what the client declared.
+     */
+    public static String resolve(String sniffed, String declared, String fileName) {
+        String ext = fileName != null && fileName.lastIndexOf('.') >= 0
+                ? fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT)
+                : "";
+        if ("application/zip".equals(sniffed)) {
+            return switch (ext) {
+                case "docx" -> "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+                case "xlsx" -> "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+                case "pptx" -> "application/vnd.openxmlformats-officedocument.presentationml.presentation";
+                default -> sniffed;
+            };
+        }
+        if ("application/x-ole-storage".equals(sniffed)) {
+            return switch (ext) {
+                case "doc" -> "application/msword";
+                case "xls" -> "application/vnd.ms-excel";
+                case "ppt" -> "application/vnd.ms-powerpoint";
+                default -> declared != null ? declared : "application/octet-stream";
+            };
+        }
+        if (sniffed != null) {
+            return sniffed;
+        }
+        return declared != null && !declared.isBlank() ? declared : "application/octet-stream";
+    }
+
+    private static boolean startsWith(byte[] b, int n, int... magic) {
+        if (n < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((b[i] & 0xff) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
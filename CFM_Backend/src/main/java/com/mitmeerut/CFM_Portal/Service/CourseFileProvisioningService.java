@@ -0,0 +1,237 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.CourseTeacher;
+import com.mitmeerut.CFM_Portal.Model.ProvisioningJob;
+import com.mitmeerut.CFM_Portal.Model.Template;
+import com.mitmeerut.CFM_Portal.Repository.CourseFileRepository;
+import com.mitmeerut.CFM_Portal.Repository.CourseTeacherRepository;
+import com.mitmeerut.CFM_Portal.Repository.ProvisioningJobRepository;
+import com.mitmeerut.CFM_Portal.Repository.TemplateRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates every missing course file of a department and academic year from
+ * the department template, in the background.
+ *
+ * - Idempotent on (course, teacher, academic year, section): assignments
+ * that already have a course file are skipped. This is an application
+ * check only (section is nullable, so a unique key could not enforce it);
+ * only one job per department and academic year runs at a time.
+ * - Resumable: each batch of course files commits together with the job's
+ * cursor and counters; PENDING/RUNNING jobs are resumed at startup.
+ * - A batch that fails is retried one assignment per transaction, so one
+ * bad assignment is counted as failed without blocking the rest.
+ */
+@Service
+public class CourseFileProvisioningService {
+
+    private static final int BATCH_SIZE = 25;
+    private static final List<String> ACTIVE = List.of(ProvisioningJob.PENDING, ProvisioningJob.RUNNING);
+
+    private final ProvisioningJobRepository jobRepository;
+    private final CourseTeacherRepository courseTeacherRepository;
+    private final CourseFileRepository courseFileRepository;
+    private final TemplateRepository templateRepository;
+    private final CourseFileService courseFileService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "course-file-provisioning");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public CourseFileProvisioningService(ProvisioningJobRepository jobRepository,
+            CourseTeacherRepository courseTeacherRepository, CourseFileRepository courseFileRepository,
+            TemplateRepository templateRepository, CourseFileService courseFileService,
+            TransactionTemplate transactionTemplate) {
+        this.jobRepository = jobRepository;
+        this.courseTeacherRepository = courseTeacherRepository;
+        this.courseFileRepository = courseFileRepository;
+        this.templateRepository = templateRepository;
+        this.courseFileService = courseFileService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // ==================== START / STATUS ====================
+
+    public synchronized ProvisioningJob start(Long departmentId, String academicYear, Long templateId,
+            Long requestedBy) {
+        if (departmentId == null) {
+            throw new RuntimeException("Department not linked");
+        }
+        if (academicYear == null || academicYear.isBlank()) {
+            throw new RuntimeException("academicYear is required");
+        }
+        if (jobRepository.existsByDepartmentIdAndAcademicYearAndStatusIn(departmentId, academicYear, ACTIVE)) {
+            throw new RuntimeException("A provisioning job is already running for " + academicYear);
+        }
+
+        Template template = templateId != null
+                ? templateRepository.findById(templateId)
+                        .orElseThrow(() -> new RuntimeException("Template not found"))
+                : templateRepository.findFirstByDepartmentId(departmentId)
+                        .orElseThrow(() -> new RuntimeException("Template not found for department"));
+        if (!departmentId.equals(template.getDepartmentId())) {
+            throw new RuntimeException("Template belongs to another department");
+        }
+
+        ProvisioningJob job = new ProvisioningJob();
+        job.setDepartmentId(departmentId);
+        job.setAcademicYear(academicYear);
+        job.setTemplateId(template.getId());
+        job.setRequestedBy(requestedBy);
+        job.setTotalAssignments((int) courseTeacherRepository.countDepartmentAssignments(departmentId, academicYear));
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(job.getCreatedAt());
+        job = jobRepository.save(job);
+
+        Long jobId = job.getId();
+        executor.execute(() -> run(jobId));
+        return job;
+    }
+
+    public ProvisioningJob getJob(Long jobId, Long departmentId) {
+        ProvisioningJob job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Job not found"));
+        if (!job.getDepartmentId().equals(departmentId)) {
+            throw new RuntimeException("Access denied");
+        }
+        return job;
+    }
+
+    public List<ProvisioningJob> getJobs(Long departmentId) {
+        return jobRepository.findByDepartmentIdOrderByCreatedAtDesc(departmentId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        for (ProvisioningJob job : jobRepository.findByStatusIn(ACTIVE)) {
+            System.out.println("Resuming course file provisioning job " + job.getId() + " after assignment "
+                    + job.getLastAssignmentId());
+            Long jobId = job.getId();
+            executor.execute(() -> run(jobId));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ==================== WORKER ====================
+
+    private void run(Long jobId) {
+        try {
+            ProvisioningJob job = jobRepository.findById(jobId).orElse(null);
+            if (job == null || !ACTIVE.contains(job.getStatus())) {
+                return;
+            }
+            job.setStatus(ProvisioningJob.RUNNING);
+            job.setUpdatedAt(LocalDateTime.now());
+            jobRepository.save(job);
+
+            Template template = templateRepository.findById(job.getTemplateId())
+                    .orElseThrow(() -> new RuntimeException("Template " + job.getTemplateId() + " was deleted"));
+
+            while (!Thread.currentThread().isInterrupted()) {
+                List<CourseTeacher> batch = courseTeacherRepository.findDepartmentAssignmentsAfter(
+                        job.getDepartmentId(), job.getAcademicYear(), job.getLastAssignmentId(),
+                        PageRequest.of(0, BATCH_SIZE));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        for (CourseTeacher assignment : batch) {
+                            provision(job, assignment, template);
+                        }
+                        checkpoint(job, batch.get(batch.size() - 1).getId());
+                    });
+                } catch (Exception batchFailure) {
+                    // Counters were changed by the rolled-back attempt: reload and go one by one
+                    ProvisioningJob fresh = jobRepository.findById(jobId).orElseThrow();
+                    copyProgress(fresh, job);
+                    for (CourseTeacher assignment : batch) {
+                        provisionAlone(job, assignment, template);
+                    }
+                }
+            }
+
+            job.setStatus(Thread.currentThread().isInterrupted() ? ProvisioningJob.RUNNING : ProvisioningJob.COMPLETED);
+            if (ProvisioningJob.COMPLETED.equals(job.getStatus())) {
+                job.setFinishedAt(LocalDateTime.now());
+            }
+            job.setUpdatedAt(LocalDateTime.now());
+            jobRepository.save(job);
+        } catch (Exception e) {
+            System.err.println("Course file provisioning job " + jobId + " failed: " + e.getMessage());
+            jobRepository.findById(jobId).ifPresent(job -> {
+                job.setStatus(ProvisioningJob.FAILED);
+                job.setLastError(truncate(e.getMessage()));
+                job.setFinishedAt(LocalDateTime.now());
+                job.setUpdatedAt(LocalDateTime.now());
+                jobRepository.save(job);
+            });
+        }
+    }
+
+    private void provisionAlone(ProvisioningJob job, CourseTeacher assignment, Template template) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                provision(job, assignment, template);
+                checkpoint(job, assignment.getId());
+            });
+        } catch (Exception e) {
+            ProvisioningJob fresh = jobRepository.findById(job.getId()).orElseThrow();
+            copyProgress(fresh, job);
+            job.setFailedCount(job.getFailedCount() + 1);
+            job.setLastError(truncate("Assignment " + assignment.getId() + ": " + e.getMessage()));
+            checkpoint(job, assignment.getId());
+        }
+    }
+
+    private void provision(ProvisioningJob job, CourseTeacher assignment, Template template) {
+        if (assignment.getCourse() == null || assignment.getTeacher() == null) {
+            job.setSkippedCount(job.getSkippedCount() + 1);
+        } else if (courseFileRepository.existsForAssignment(assignment.getCourse().getId(),
+                assignment.getTeacher().getId(), assignment.getAcademicYear(), assignment.getSection())) {
+            job.setSkippedCount(job.getSkippedCount() + 1);
+        } else {
+            courseFileService.createFromTemplate(assignment.getCourse(), assignment.getTeacher(),
+                    assignment.getAcademicYear(), assignment.getSection(), template);
+            job.setCreatedCount(job.getCreatedCount() + 1);
+        }
+        job.setProcessedCount(job.getProcessedCount() + 1);
+    }
+
+    private void checkpoint(ProvisioningJob job, Long lastAssignmentId) {
+        job.setLastAssignmentId(lastAssignmentId);
+        job.setUpdatedAt(LocalDateTime.now());
+        jobRepository.save(job);
+    }
+
+    private void copyProgress(ProvisioningJob from, ProvisioningJob to) {
+        to.setProcessedCount(from.getProcessedCount());
+        to.setCreatedCount(from.getCreatedCount());
+        to.setSkippedCount(from.getSkippedCount());
+        to.setFailedCount(from.getFailedCount());
+        to.setLastAssignmentId(from.getLastAssignmentId());
+    }
+
+    private String truncate(String s) {
+        if (s == null) {
+            return null;
+        }
+        return s.length() > 500 ? s.substring(0, 500) : s;
+    }
+}
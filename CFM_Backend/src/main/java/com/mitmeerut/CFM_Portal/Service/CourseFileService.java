@@ -1,6 +1,9 @@
 package com.mitmeerut.CFM_Portal.Service;
 
+import com.mitmeerut.CFM_Portal.Model.Course;
 import com.mitmeerut.CFM_Portal.Model.CourseFile;
+import com.mitmeerut.CFM_Portal.Model.Teacher;
+import com.mitmeerut.CFM_Portal.Model.Template;
 import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
 
 import java.util.List;
@@ -10,6 +13,10 @@ public interface CourseFileService {
 
     CourseFile createCourseFile(com.mitmeerut.CFM_Portal.dto.CreateCourseFileRequest request, CustomUserDetails user);
 
+    // New DRAFT course file with the template's full heading tree (no ownership checks)
+    CourseFile createFromTemplate(Course course, Teacher teacher, String academicYear, String section,
+            Template template);
+
     List<CourseFile> getCourseFilesByTeacher(Long teacherId);
 
     void deleteCourseFile(Long id);
@@ -1,20 +1,15 @@
 package com.mitmeerut.CFM_Portal.Service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mitmeerut.CFM_Portal.Model.*;
-import com.mitmeerut.CFM_Portal.Repository.CourseFileRepository;
-import com.mitmeerut.CFM_Portal.Repository.HeadingRepository;
-import com.mitmeerut.CFM_Portal.Repository.CourseRepository;
-import com.mitmeerut.CFM_Portal.Repository.TemplateRepository;
+import com.mitmeerut.CFM_Portal.Repository.*;
 import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.lang.reflect.Type;
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Service
 @Transactional
@@ -23,17 +18,45 @@ public class CourseFileServiceImpl implements CourseFileService {
     private HeadingRepository headingRepo;
     private CourseRepository courseRepo;
     private TemplateRepository templateRepo;
-    private ObjectMapper mapper = new ObjectMapper();
-    private final HeadingService headingService;
+    private final HeadingClosureRepository closureRepo;
+    private final DocumentRepository documentRepo;
+    private final CommentRepository commentRepo;
+    private final ApprovalRepository approvalRepo;
+    private final NotificationRepository notificationRepo;
+    private final CommentCounterRepository commentCounterRepo;
+    private final FileCleanupService fileCleanupService;
+    private final RemarkSearchService remarkSearchService;
+    private final CourseFileChangeRepository changeRepo;
+    private final TemplateInstantiator templateInstantiator;
+    private final ContentBlobService blobService;
+    private final DocumentVersionCounterRepository versionCounterRepo;
 
     @Autowired
     public CourseFileServiceImpl(CourseFileRepository courseFileRepo, HeadingRepository headingRepo,
-            CourseRepository courseRepo, TemplateRepository templateRepo, HeadingService headingService) {
+            CourseRepository courseRepo, TemplateRepository templateRepo,
+            HeadingClosureRepository closureRepo, DocumentRepository documentRepo,
+            CommentRepository commentRepo, ApprovalRepository approvalRepo,
+            NotificationRepository notificationRepo, CommentCounterRepository commentCounterRepo,
+            FileCleanupService fileCleanupService, RemarkSearchService remarkSearchService,
+            CourseFileChangeRepository changeRepo,
+            TemplateInstantiator templateInstantiator, ContentBlobService blobService,
+            DocumentVersionCounterRepository versionCounterRepo) {
         this.CourseFileRepo = courseFileRepo;
         this.headingRepo = headingRepo;
         this.courseRepo = courseRepo;
         this.templateRepo = templateRepo;
-        this.headingService = headingService;
+        this.closureRepo = closureRepo;
+        this.documentRepo = documentRepo;
+        this.commentRepo = commentRepo;
+        this.approvalRepo = approvalRepo;
+        this.notificationRepo = notificationRepo;
+        this.commentCounterRepo = commentCounterRepo;
+        this.fileCleanupService = fileCleanupService;
+        this.remarkSearchService = remarkSearchService;
+        this.changeRepo = changeRepo;
+        this.templateInstantiator = templateInstantiator;
+        this.blobService = blobService;
+        this.versionCounterRepo = versionCounterRepo;
     }
 
     @Override
@@ -52,47 +75,30 @@ public class CourseFileServiceImpl implements CourseFileService {
         Template template = templateRepo.findById(request.getTemplateId())
                 .orElseThrow(() -> new RuntimeException("Template not found"));
 
+        if (CourseFileRepo.existsForAssignment(course.getId(), teacher.getId(), request.getAcademicYear(),
+                request.getSection())) {
+            throw new RuntimeException("Course file already exists for this course, section and academic year");
+        }
+        return createFromTemplate(course, teacher, request.getAcademicYear(), request.getSection(), template);
+    }
+
+    @Override
+    public CourseFile createFromTemplate(Course course, Teacher teacher, String academicYear, String section,
+            Template template) {
         CourseFile courseFile = new CourseFile();
         courseFile.setCourse(course);
         courseFile.setCreatedBy(teacher);
-        courseFile.setAcademicYear(request.getAcademicYear());
-        courseFile.setSection(request.getSection());
+        courseFile.setAcademicYear(academicYear);
+        courseFile.setSection(section);
         courseFile.setStatus("DRAFT");
         courseFile.setCreatedAt(LocalDateTime.now());
+        courseFile.setTemplateId(template.getId());
         courseFile = CourseFileRepo.save(courseFile);
 
-        createRootHeadings(courseFile, template);
+        templateInstantiator.instantiate(courseFile, template);
         return courseFile;
     }
 
-    public void createRootHeadings(CourseFile courseFile, Template template) {
-        try {
-            com.fasterxml.jackson.databind.JsonNode root = mapper.readTree(template.getStructure());
-            com.fasterxml.jackson.databind.JsonNode headings = root.get("headings");
-
-            if (headings != null && headings.isArray()) {
-                int order = 1;
-                for (com.fasterxml.jackson.databind.JsonNode node : headings) {
-                    String title = node.get("title").asText();
-
-                    Heading heading = new Heading();
-                    heading.setCourseFile(courseFile);
-                    heading.setTitle(title);
-                    heading.setParentHeading(null);
-                    heading.setOrderIndex(order++);
-                    heading.setCreatedAt(LocalDateTime.now());
-                    headingRepo.save(heading);
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error parsing template structure: " + e.getMessage());
-            // Don't fail the whole creation, just log? Or throw?
-            // throw new RuntimeException("Invalid template structure JSON");
-            // For now let's just create the file without headings to avoid total blockage
-            // if parsing fails
-        }
-    }
-
     @Override
     public java.util.List<CourseFile> getCourseFilesByTeacher(Long teacherId) {
         return CourseFileRepo.findByCreatedById(teacherId);
@@ -100,19 +106,44 @@ public class CourseFileServiceImpl implements CourseFileService {
 
     @Override
     public void deleteCourseFile(Long id) {
-        CourseFile courseFile = CourseFileRepo.findById(id)
-                .orElseThrow(() -> new RuntimeException("Course File not found"));
+        if (!CourseFileRepo.existsById(id)) {
+            throw new RuntimeException("Course File not found");
+        }
 
-        // Fetch root headings (headings directly under this course file)
-        List<Heading> rootHeadings = headingRepo.findByCourseFileIdAndParentHeadingIsNull(courseFile.getId());
+        // A fixed number of bulk statements, independent of the number of
+        // headings and uploads. Files are queued and blob references released
+        // first (both read the document rows); the files go after commit.
+        fileCleanupService.enqueueCourseFile(id);
+        blobService.releaseCourseFile(id);
 
-        // Delete each root heading using HeadingService (which cascades to children and
-        // documents)
-        for (Heading heading : rootHeadings) {
-            headingService.deleteHeading(heading.getId());
-        }
+        commentRepo.detachRepliesForCourseFile(id);
+        commentRepo.deleteByCourseFileId(id);
+        approvalRepo.deleteByCourseFileId(id);
+        notificationRepo.deleteByCourseFileId(id);
+        commentCounterRepo.deleteByCourseFileId(id);
+        changeRepo.deleteByCourseFileId(id);
+
+        documentRepo.deleteByCourseFileId(id);
+        versionCounterRepo.deleteByCourseFileId(id);
+        closureRepo.deleteByCourseFileId(id);
+        headingRepo.detachParentsByCourseFileId(id);
+        headingRepo.deleteByCourseFileId(id);
+
+        CourseFileRepo.deleteByIdDirect(id);
 
-        // Delete the course file record
-        CourseFileRepo.delete(courseFile);
+        removeFromSearchAfterCommit(id);
+    }
+
+    private void removeFromSearchAfterCommit(Long courseFileId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remarkSearchService.removeCourseFile(courseFileId);
+                }
+            });
+        } else {
+            remarkSearchService.removeCourseFile(courseFileId);
+        }
     }
 }
@@ -0,0 +1,59 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Serialized heading/document trees keyed by course file, tree flavour and
+ * content version. Only the newest version of each tree is kept: versions
+ * never go back, so an older entry can never be served again. Least recently
+ * used trees are dropped beyond {@code tree.cache.max-entries}.
+ */
+@Component
+public class CourseFileTreeCache {
+
+    public static final class Entry {
+        public final long version;
+        public final String json;
+
+        Entry(long version, String json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+
+    private final Map<String, Entry> entries;
+
+    public CourseFileTreeCache(@Value("${tree.cache.max-entries:500}") int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized Entry get(Long courseFileId, String documentsKey, long version) {
+        Entry entry = entries.get(key(courseFileId, documentsKey));
+        return entry != null && entry.version == version ? entry : null;
+    }
+
+    public synchronized Entry put(Long courseFileId, String documentsKey, long version, String json) {
+        String key = key(courseFileId, documentsKey);
+        Entry existing = entries.get(key);
+        if (existing != null && existing.version > version) {
+            // A newer tree was cached concurrently; keep it
+            return new Entry(version, json);
+        }
+        Entry entry = new Entry(version, json);
+        entries.put(key, entry);
+        return entry;
+    }
+
+    private String key(Long courseFileId, String documentsKey) {
+        return courseFileId + ":" + documentsKey;
+    }
+}
@@ -0,0 +1,145 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.CourseFileChange;
+import com.mitmeerut.CFM_Portal.Repository.CourseFileChangeRepository;
+import com.mitmeerut.CFM_Portal.Repository.CourseFileRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Monotonic content version of a course file's heading/document tree, and
+ * the per-course-file change log behind delta sync.
+ *
+ * Every heading or document mutation calls {@link #recordChange} in its own
+ * transaction, so the version and the log entry commit together with the
+ * change. All changes of one transaction share one version. Tree endpoints
+ * use the version as an ETag and as the key of the serialized tree cache.
+ */
+@Service
+@Transactional
+public class CourseFileVersionService {
+
+    // Transaction-bound map: course file id -> version allocated by this transaction
+    private static final Object TX_VERSIONS = new Object();
+    // Trim the log of a course file every this many versions
+    private static final int TRIM_EVERY = 50;
+
+    private final CourseFileRepository courseFileRepository;
+    private final CourseFileChangeRepository changeRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${tree.changes.max-versions:200}")
+    private int maxVersions;
+
+    @Value("${tree.changes.retention-days:7}")
+    private int retentionDays;
+
+    public CourseFileVersionService(CourseFileRepository courseFileRepository,
+            CourseFileChangeRepository changeRepository, JdbcTemplate jdbcTemplate) {
+        this.courseFileRepository = courseFileRepository;
+        this.changeRepository = changeRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Logs a heading/document change and bumps the content version (once per
+     * transaction and course file). Returns the version of the change.
+     */
+    public long recordChange(Long courseFileId, String entityType, Long entityId, String op) {
+        if (courseFileId == null) {
+            return 0L;
+        }
+        long version = versionForChange(courseFileId);
+
+        CourseFileChange change = new CourseFileChange();
+        change.setCourseFileId(courseFileId);
+        change.setVersion(version);
+        change.setEntityType(entityType);
+        change.setEntityId(entityId);
+        change.setOp(op);
+        change.setCreatedAt(LocalDateTime.now());
+        changeRepository.save(change);
+        return version;
+    }
+
+    /**
+     * Same as {@link #recordChange} for many entities at once, as one JDBC batch
+     */
+    public long recordChanges(Long courseFileId, String entityType, List<Long> entityIds, String op) {
+        if (courseFileId == null || entityIds.isEmpty()) {
+            return 0L;
+        }
+        long version = versionForChange(courseFileId);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO course_file_change (course_file_id, version, entity_type, entity_id, op, created_at)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """, entityIds, 500, (ps, entityId) -> {
+            ps.setLong(1, courseFileId);
+            ps.setLong(2, version);
+            ps.setString(3, entityType);
+            ps.setLong(4, entityId);
+            ps.setString(5, op);
+            ps.setTimestamp(6, now);
+        });
+        return version;
+    }
+
+    @SuppressWarnings("unchecked")
+    private long versionForChange(Long courseFileId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return bump(courseFileId);
+        }
+        Map<Long, Long> versions = (Map<Long, Long>) TransactionSynchronizationManager.getResource(TX_VERSIONS);
+        if (versions == null) {
+            versions = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(TX_VERSIONS, versions);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TX_VERSIONS);
+                }
+            });
+        }
+        return versions.computeIfAbsent(courseFileId, this::bump);
+    }
+
+    /**
+     * Increments the version and returns the new value. The UPDATE row lock
+     * serializes concurrent writers of the same course file.
+     */
+    private long bump(Long courseFileId) {
+        if (courseFileRepository.incrementContentVersion(courseFileId) == 0) {
+            return 0L;
+        }
+        long version = courseFileRepository.findContentVersion(courseFileId);
+        if (version % TRIM_EVERY == 0 && version > maxVersions) {
+            changeRepository.deleteUpToVersion(courseFileId, version - maxVersions);
+        }
+        return version;
+    }
+
+    // null if the course file does not exist
+    public Long currentVersion(Long courseFileId) {
+        return courseFileRepository.findContentVersion(courseFileId);
+    }
+
+    @Scheduled(fixedDelayString = "${tree.changes.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        int removed = changeRepository.deleteOlderThan(LocalDateTime.now().minusDays(retentionDays));
+        if (removed > 0) {
+            System.out.println("Purged " + removed + " course file change log entries");
+        }
+    }
+}
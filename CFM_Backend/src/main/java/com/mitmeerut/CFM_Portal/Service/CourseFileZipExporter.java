@@ -0,0 +1,297 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.CourseFile;
+import com.mitmeerut.CFM_Portal.Model.Document;
+import com.mitmeerut.CFM_Portal.Model.Heading;
+import com.mitmeerut.CFM_Portal.Repository.CourseFileRepository;
+import com.mitmeerut.CFM_Portal.Repository.DocumentRepository;
+import com.mitmeerut.CFM_Portal.Repository.HeadingRepository;
+import com.mitmeerut.CFM_Portal.storage.BlobStore;
+import jakarta.transaction.Transactional;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams a whole course file as a ZIP whose folders mirror the heading tree
+ * ("01 - Syllabus/02 - Unit 1/notes.pdf").
+ *
+ * {@link #plan} reads headings and documents with two queries inside a
+ * short transaction; {@link #write} then streams the files one by one to
+ * the given output stream without a temp file or buffer larger than a copy
+ * buffer, so memory stays flat however large the course file is. It holds
+ * no database connection only because the export endpoint is excluded from
+ * open-in-view (OpenInViewConfig); a caller with an open EntityManager
+ * keeps its connection for the whole download.
+ *
+ * Formats that are already compressed are STORED. ZipOutputStream needs
+ * the CRC of a stored entry before its data, so those files are read twice
+ * (the second read usually comes from the page cache).
+ */
+@Service
+public class CourseFileZipExporter {
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "pdf", "jpg", "jpeg", "png", "gif", "webp", "docx", "xlsx", "pptx", "odt", "ods", "odp",
+            "zip", "7z", "rar", "gz", "mp3", "mp4", "m4a", "mov", "avi", "mkv", "webm");
+    private static final int COPY_BUFFER = 64 * 1024;
+
+    // blobKey: the document's key in the BlobStore; filePath: legacy file not yet migrated
+    public record Entry(String path, String blobKey, String filePath) {
+    }
+
+    public record Plan(String zipName, List<String> folders, List<Entry> files) {
+    }
+
+    private final CourseFileRepository courseFileRepository;
+    private final HeadingRepository headingRepository;
+    private final DocumentRepository documentRepository;
+    private final BlobStore blobStore;
+
+    public CourseFileZipExporter(CourseFileRepository courseFileRepository, HeadingRepository headingRepository,
+            DocumentRepository documentRepository, BlobStore blobStore) {
+        this.courseFileRepository = courseFileRepository;
+        this.headingRepository = headingRepository;
+        this.documentRepository = documentRepository;
+        this.blobStore = blobStore;
+    }
+
+    // ==================== PLAN ====================
+
+    @Transactional
+    public Plan plan(Long courseFileId) {
+        CourseFile courseFile = courseFileRepository.findById(courseFileId)
+                .orElseThrow(() -> new RuntimeException("Course file not found"));
+
+        List<Heading> headings = new ArrayList<>(headingRepository.findByCourseFileId(courseFileId));
+        headings.sort(Comparator
+                .comparing(Heading::getOrderIndex, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Heading::getId));
+        Map<Long, List<Heading>> children = new HashMap<>();
+        Map<Long, List<Document>> documents = new HashMap<>();
+        for (Heading heading : headings) {
+            Long parentId = heading.getParentHeading() != null ? heading.getParentHeading().getId() : null;
+            children.computeIfAbsent(parentId, id -> new ArrayList<>()).add(heading);
+            documents.put(heading.getId(), new ArrayList<>());
+        }
+        if (!documents.isEmpty()) {
+            for (Document doc : documentRepository.findByHeading_IdIn(documents.keySet())) {
+                documents.get(doc.getHeading().getId()).add(doc);
+            }
+        }
+
+        List<String> folders = new ArrayList<>();
+        List<Entry> files = new ArrayList<>();
+        addLevel(children, documents, null, "", folders, files);
+        return new Plan(zipName(courseFile), folders, files);
+    }
+
+    private void addLevel(Map<Long, List<Heading>> children, Map<Long, List<Document>> documents, Long parentId,
+            String prefix, List<String> folders, List<Entry> files) {
+        List<Heading> level = children.getOrDefault(parentId, List.of());
+        Set<String> used = new HashSet<>();
+        int position = 1;
+        for (Heading heading : level) {
+            String folder = prefix + unique(String.format("%02d - %s", position++, sanitize(heading.getTitle())),
+                    used) + "/";
+            folders.add(folder);
+
+            List<Document> docs = documents.getOrDefault(heading.getId(), List.of());
+            docs.sort(Comparator.comparing(Document::getId));
+            Map<String, Integer> nameCounts = new HashMap<>();
+            for (Document doc : docs) {
+                nameCounts.merge(sanitize(doc.getFileName()), 1, Integer::sum);
+            }
+            Set<String> usedNames = new HashSet<>();
+            for (Document doc : docs) {
+                if (doc.getBlobHash() == null && doc.getFilePath() == null) {
+                    continue;
+                }
+                String name = sanitize(doc.getFileName());
+                // Several versions of one file: keep them apart by version number
+                if (nameCounts.get(name) > 1 && doc.getVersionNo() != null) {
+                    name = withSuffix(name, " (v" + doc.getVersionNo() + ")");
+                }
+                files.add(new Entry(folder + unique(name, usedNames), doc.getBlobHash(), doc.getFilePath()));
+            }
+
+            addLevel(children, documents, heading.getId(), folder, folders, files);
+        }
+    }
+
+    // ==================== WRITE ====================
+
+    /**
+     * Streams the ZIP to {@code out}; files missing from storage are listed in
+     * MISSING_FILES.txt at the end instead of failing the whole export.
+     */
+    public void write(Plan plan, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        writeEntries(plan, zip, "");
+        zip.finish();
+        zip.flush();
+    }
+
+    /**
+     * Adds the course file's entries under {@code root} ("" or "folder/") to
+     * an archive shared with other course files (department export).
+     */
+    public void writeEntries(Plan plan, ZipOutputStream zip, String root) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER];
+        List<String> missing = new ArrayList<>();
+
+        if (!root.isEmpty()) {
+            zip.putNextEntry(new ZipEntry(root));
+            zip.closeEntry();
+        }
+        for (String folder : plan.folders()) {
+            zip.putNextEntry(new ZipEntry(root + folder));
+            zip.closeEntry();
+        }
+        for (Entry entry : plan.files()) {
+            Source source = source(entry);
+            if (source == null) {
+                missing.add(entry.path());
+                continue;
+            }
+            ZipEntry zipEntry = new ZipEntry(root + entry.path());
+            if (isCompressed(entry.path())) {
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(source.size());
+                zipEntry.setCompressedSize(source.size());
+                zipEntry.setCrc(crc(source, buffer));
+            }
+            zipEntry.setLastModifiedTime(FileTime.fromMillis(source.lastModified()));
+            zip.putNextEntry(zipEntry);
+            try (InputStream in = source.open()) {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    zip.write(buffer, 0, n);
+                }
+            }
+            zip.closeEntry();
+        }
+        if (!missing.isEmpty()) {
+            zip.putNextEntry(new ZipEntry(root + "MISSING_FILES.txt"));
+            zip.write(("These documents were not found in storage:\n" + String.join("\n", missing) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+    }
+
+    private interface Source {
+        long size() throws IOException;
+
+        long lastModified() throws IOException;
+
+        InputStream open() throws IOException;
+    }
+
+    // Where an entry's bytes come from, or null if they are missing from storage
+    private Source source(Entry entry) throws IOException {
+        // A legacy file stays the source until its migrated object exists
+        if (entry.blobKey() != null && blobStore.exists(entry.blobKey())) {
+            String key = entry.blobKey();
+            return new Source() {
+                public long size() throws IOException {
+                    return blobStore.size(key);
+                }
+
+                public long lastModified() throws IOException {
+                    return blobStore.lastModified(key);
+                }
+
+                public InputStream open() throws IOException {
+                    return blobStore.open(key, 0);
+                }
+            };
+        }
+        if (entry.filePath() == null) {
+            return null;
+        }
+        Path file = Paths.get(entry.filePath());
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        return new Source() {
+            public long size() throws IOException {
+                return Files.size(file);
+            }
+
+            public long lastModified() throws IOException {
+                return Files.getLastModifiedTime(file).toMillis();
+            }
+
+            public InputStream open() throws IOException {
+                return Files.newInputStream(file);
+            }
+        };
+    }
+
+    private long crc(Source source, byte[] buffer) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = source.open()) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
+    // ==================== NAMES ====================
+
+    private boolean isCompressed(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(path.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private String zipName(CourseFile courseFile) {
+        StringBuilder name = new StringBuilder();
+        name.append(courseFile.getCourse() != null ? courseFile.getCourse().getCode() : "course-file");
+        if (courseFile.getAcademicYear() != null) {
+            name.append('_').append(courseFile.getAcademicYear());
+        }
+        if (courseFile.getSection() != null && !courseFile.getSection().isBlank()) {
+            name.append('_').append(courseFile.getSection());
+        }
+        return sanitize(name.toString()) + ".zip";
+    }
+
+    // Keeps letters of any script; drops path separators and characters Windows rejects
+    private String sanitize(String name) {
+        if (name == null || name.isBlank()) {
+            return "unnamed";
+        }
+        String cleaned = name.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        while (cleaned.endsWith(".")) {
+            cleaned = cleaned.substring(0, cleaned.length() - 1);
+        }
+        return cleaned.isEmpty() ? "unnamed" : cleaned;
+    }
+
+    private String unique(String name, Set<String> used) {
+        String candidate = name;
+        int n = 2;
+        while (!used.add(candidate.toLowerCase(Locale.ROOT))) {
+            candidate = withSuffix(name, " (" + n++ + ")");
+        }
+        return candidate;
+    }
+
+    private String withSuffix(String name, String suffix) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) + suffix + name.substring(dot) : name + suffix;
+    }
+}
@@ -0,0 +1,357 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.DepartmentExportJob;
+import com.mitmeerut.CFM_Portal.Model.DepartmentExportPart;
+import com.mitmeerut.CFM_Portal.Repository.CourseFileRepository;
+import com.mitmeerut.CFM_Portal.Repository.DepartmentExportJobRepository;
+import com.mitmeerut.CFM_Portal.Repository.DepartmentExportPartRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exports every approved course file of a department and academic year to
+ * local disk as a series of ZIP parts, for accreditation visits.
+ *
+ * - A bounded pool of workers takes course files from a shared queue; each
+ * worker streams into its own part (one folder per course file) and seals
+ * it once it passes export.department.part-size-bytes.
+ * - A part is written as .partial, fsynced and renamed; only then is its
+ * DepartmentExportPart row (with the ids it holds) recorded. After a
+ * restart the job skips course files of sealed parts, deletes leftover
+ * .partial files and redoes the rest.
+ * - Resume is per sealed part, not per course file: a half-written ZIP
+ * has no central directory and cannot be appended to after a crash, so
+ * the course files of unsealed parts are exported again (at most workers
+ * x part-size-bytes of rework). Progress (exportedCount) still advances
+ * as each course file is written.
+ * - Jobs run one at a time; the pool parallelizes within a job.
+ */
+@Service
+public class DepartmentExportService {
+
+    private static final List<String> ACTIVE = List.of(DepartmentExportJob.PENDING, DepartmentExportJob.RUNNING);
+
+    private final DepartmentExportJobRepository jobRepository;
+    private final DepartmentExportPartRepository partRepository;
+    private final CourseFileRepository courseFileRepository;
+    private final CourseFileZipExporter zipExporter;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "department-export");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${file.upload.base-path:storage}")
+    private String baseUploadPath;
+
+    @Value("${export.department.workers:3}")
+    private int workers;
+
+    @Value("${export.department.part-size-bytes:2147483648}")
+    private long partSizeBytes;
+
+    public DepartmentExportService(DepartmentExportJobRepository jobRepository,
+            DepartmentExportPartRepository partRepository, CourseFileRepository courseFileRepository,
+            CourseFileZipExporter zipExporter) {
+        this.jobRepository = jobRepository;
+        this.partRepository = partRepository;
+        this.courseFileRepository = courseFileRepository;
+        this.zipExporter = zipExporter;
+    }
+
+    // ==================== START / STATUS ====================
+
+    public synchronized DepartmentExportJob start(Long departmentId, String academicYear, Long requestedBy) {
+        if (departmentId == null) {
+            throw new RuntimeException("Department not linked");
+        }
+        if (academicYear == null || academicYear.isBlank()) {
+            throw new RuntimeException("academicYear is required");
+        }
+        if (jobRepository.existsByDepartmentIdAndAcademicYearAndStatusIn(departmentId, academicYear, ACTIVE)) {
+            throw new RuntimeException("An export is already running for " + academicYear);
+        }
+
+        DepartmentExportJob job = new DepartmentExportJob();
+        job.setDepartmentId(departmentId);
+        job.setAcademicYear(academicYear);
+        job.setRequestedBy(requestedBy);
+        job.setTotalCourseFiles(courseFileRepository.findIdsByDepartmentAndYear(departmentId, academicYear,
+                "APPROVED").size());
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(job.getCreatedAt());
+        job = jobRepository.save(job);
+
+        Long jobId = job.getId();
+        coordinator.execute(() -> run(jobId));
+        return job;
+    }
+
+    public DepartmentExportJob getJob(Long jobId, Long departmentId) {
+        DepartmentExportJob job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Export not found"));
+        if (!job.getDepartmentId().equals(departmentId)) {
+            throw new RuntimeException("Access denied");
+        }
+        return job;
+    }
+
+    public List<DepartmentExportJob> getJobs(Long departmentId) {
+        return jobRepository.findByDepartmentIdOrderByCreatedAtDesc(departmentId);
+    }
+
+    public List<DepartmentExportPart> getParts(Long jobId) {
+        return partRepository.findByJobIdOrderByPartNo(jobId);
+    }
+
+    public DepartmentExportPart getPart(Long jobId, Integer partNo) {
+        return partRepository.findByJobIdAndPartNo(jobId, partNo)
+                .orElseThrow(() -> new RuntimeException("Part not found"));
+    }
+
+    public Path partFile(DepartmentExportPart part) {
+        return jobDir(part.getJobId()).resolve(part.getFileName());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        for (DepartmentExportJob job : jobRepository.findByStatusIn(ACTIVE)) {
+            System.out.println("Resuming department export " + job.getId() + " (" + job.getCompletedCount()
+                    + " of " + job.getTotalCourseFiles() + " course files done)");
+            Long jobId = job.getId();
+            coordinator.execute(() -> run(jobId));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+    }
+
+    // ==================== JOB ====================
+
+    private void run(Long jobId) {
+        ExecutorService pool = null;
+        try {
+            DepartmentExportJob job = jobRepository.findById(jobId).orElse(null);
+            if (job == null || !ACTIVE.contains(job.getStatus())) {
+                return;
+            }
+            job.setStatus(DepartmentExportJob.RUNNING);
+            // Unsealed parts are redone
+            job.setExportedCount(job.getCompletedCount());
+            job.setUpdatedAt(LocalDateTime.now());
+            jobRepository.save(job);
+
+            Path dir = jobDir(jobId);
+            Files.createDirectories(dir);
+            deletePartials(dir);
+
+            List<DepartmentExportPart> sealed = partRepository.findByJobIdOrderByPartNo(jobId);
+            Set<Long> done = new HashSet<>();
+            int lastPartNo = 0;
+            for (DepartmentExportPart part : sealed) {
+                for (String id : part.getCourseFileIds().split(",")) {
+                    if (!id.isBlank()) {
+                        done.add(Long.valueOf(id.trim()));
+                    }
+                }
+                lastPartNo = Math.max(lastPartNo, part.getPartNo());
+            }
+
+            ConcurrentLinkedQueue<Long> queue = new ConcurrentLinkedQueue<>();
+            for (Long id : courseFileRepository.findIdsByDepartmentAndYear(job.getDepartmentId(),
+                    job.getAcademicYear(), "APPROVED")) {
+                if (!done.contains(id)) {
+                    queue.add(id);
+                }
+            }
+
+            AtomicInteger nextPartNo = new AtomicInteger(lastPartNo + 1);
+            AtomicReference<Exception> failure = new AtomicReference<>();
+            int poolSize = Math.max(1, Math.min(workers, queue.size()));
+            pool = Executors.newFixedThreadPool(poolSize, r -> {
+                Thread t = new Thread(r, "department-export-worker");
+                t.setDaemon(true);
+                return t;
+            });
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < poolSize; i++) {
+                futures.add(pool.submit(() -> work(job, dir, queue, nextPartNo, failure)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            DepartmentExportJob finished = jobRepository.findById(jobId).orElseThrow();
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            finished.setStatus(DepartmentExportJob.COMPLETED);
+            finished.setFinishedAt(LocalDateTime.now());
+            finished.setUpdatedAt(LocalDateTime.now());
+            jobRepository.save(finished);
+        } catch (InterruptedException e) {
+            // Shutting down: stays RUNNING and resumes at the next start
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            System.err.println("Department export " + jobId + " failed: " + cause.getMessage());
+            jobRepository.findById(jobId).ifPresent(job -> {
+                job.setStatus(DepartmentExportJob.FAILED);
+                job.setLastError(truncate(String.valueOf(cause.getMessage())));
+                job.setFinishedAt(LocalDateTime.now());
+                job.setUpdatedAt(LocalDateTime.now());
+                jobRepository.save(job);
+            });
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    // One worker: fills parts from the shared queue until it is empty
+    private void work(DepartmentExportJob job, Path dir, Queue<Long> queue, AtomicInteger nextPartNo,
+            AtomicReference<Exception> failure) {
+        PartWriter part = null;
+        try {
+            Long courseFileId;
+            while (failure.get() == null && !Thread.currentThread().isInterrupted()
+                    && (courseFileId = queue.poll()) != null) {
+                CourseFileZipExporter.Plan plan = zipExporter.plan(courseFileId);
+                if (part == null) {
+                    part = new PartWriter(job, dir, nextPartNo.getAndIncrement());
+                }
+                String root = plan.zipName().substring(0, plan.zipName().length() - ".zip".length())
+                        + "_" + courseFileId + "/";
+                zipExporter.writeEntries(plan, part.zip, root);
+                part.courseFileIds.add(courseFileId);
+                jobRepository.addExported(job.getId());
+                if (part.counter.count >= partSizeBytes) {
+                    part.seal();
+                    part = null;
+                }
+            }
+            if (part != null && failure.get() == null && !Thread.currentThread().isInterrupted()) {
+                part.seal();
+                part = null;
+            }
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            if (part != null) {
+                part.discard();
+            }
+        }
+    }
+
+    private final class PartWriter {
+        final DepartmentExportJob job;
+        final int partNo;
+        final Path partial;
+        final Path target;
+        final CountingOutputStream counter;
+        final ZipOutputStream zip;
+        final List<Long> courseFileIds = new ArrayList<>();
+
+        PartWriter(DepartmentExportJob job, Path dir, int partNo) throws IOException {
+            this.job = job;
+            this.partNo = partNo;
+            String name = String.format("export-%d-%s-part%03d.zip", job.getId(),
+                    job.getAcademicYear().replaceAll("[^A-Za-z0-9-]", "_"), partNo);
+            this.target = dir.resolve(name);
+            this.partial = dir.resolve(name + ".partial");
+            this.counter = new CountingOutputStream(Files.newOutputStream(partial,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+            this.zip = new ZipOutputStream(new BufferedOutputStream(counter, 256 * 1024), StandardCharsets.UTF_8);
+        }
+
+        void seal() throws IOException {
+            zip.finish();
+            zip.flush();
+            zip.close();
+            try (var channel = java.nio.channels.FileChannel.open(partial, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            DepartmentExportPart part = new DepartmentExportPart();
+            part.setJobId(job.getId());
+            part.setPartNo(partNo);
+            part.setFileName(target.getFileName().toString());
+            part.setSizeBytes(Files.size(target));
+            part.setCourseFileIds(courseFileIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+            part.setSealedAt(LocalDateTime.now());
+            partRepository.save(part);
+            jobRepository.addSealedPart(job.getId(), courseFileIds.size(), part.getSizeBytes());
+        }
+
+        void discard() {
+            try {
+                zip.close();
+            } catch (IOException ignored) {
+            }
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    private Path jobDir(Long jobId) {
+        return Paths.get(baseUploadPath, "exports", String.valueOf(jobId));
+    }
+
+    private void deletePartials(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".partial")).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private String truncate(String s) {
+        return s.length() > 500 ? s.substring(0, 500) : s;
+    }
+}
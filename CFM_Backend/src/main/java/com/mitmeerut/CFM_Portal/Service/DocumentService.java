@@ -1,16 +1,22 @@
 package com.mitmeerut.CFM_Portal.Service;
 
 import com.mitmeerut.CFM_Portal.Model.Document;
-import org.springframework.web.multipart.MultipartFile;
+import java.io.InputStream;
 import java.util.List;
 
 public interface DocumentService {
 
-    Document uploadDocument(Long headingId, MultipartFile file, Long teacherId, String courseCode);
+    // Streams a multipart/form-data body with a "file" part and a "headingId" field
+    Document uploadDocument(String contentType, InputStream body, Long teacherId);
+
+    // Document row for content already in the blob store (next version of the file name under the heading)
+    Document createDocument(Long headingId, Long teacherId, String fileName, String contentType,
+            ContentBlobService.StoredBlob blob);
 
     void deleteDocument(Long id);
 
-    List<Document> getDocumentsByHeading(Long headingId);
+    // Latest version of each file name, or every version when history is true
+    List<Document> getDocumentsByHeading(Long headingId, boolean history);
 
     Document getDocumentById(Long id);
 }
@@ -1,97 +1,172 @@
 package com.mitmeerut.CFM_Portal.Service;
 
+import com.mitmeerut.CFM_Portal.Model.CourseFileChange;
 import com.mitmeerut.CFM_Portal.Model.Document;
 import com.mitmeerut.CFM_Portal.Model.Heading;
 import com.mitmeerut.CFM_Portal.Model.Teacher;
 import com.mitmeerut.CFM_Portal.Repository.DocumentRepository;
+import com.mitmeerut.CFM_Portal.Repository.DocumentVersionCounterRepository;
 import com.mitmeerut.CFM_Portal.Repository.HeadingRepository;
 import com.mitmeerut.CFM_Portal.Repository.TeacherRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @Transactional
 public class DocumentServiceImpl implements DocumentService {
 
+    private static final int MAX_FIELD_BYTES = 1024;
+
     private final DocumentRepository documentRepo;
     private final HeadingRepository headingRepo;
     private final TeacherRepository teacherRepo;
+    private final FileCleanupService fileCleanupService;
+    private final CourseFileVersionService versionService;
+    private final ContentBlobService blobService;
+    private final DocumentVersionCounterRepository versionCounterRepo;
+    private final TransactionTemplate transactionTemplate;
 
-    @Value("${file.upload.base-path:storage}")
-    private String baseUploadPath;
+    @Value("${spring.servlet.multipart.max-file-size:10MB}")
+    private DataSize maxUploadSize;
 
     @Autowired
     public DocumentServiceImpl(DocumentRepository documentRepo, HeadingRepository headingRepo,
-            TeacherRepository teacherRepo) {
+            TeacherRepository teacherRepo, FileCleanupService fileCleanupService,
+            CourseFileVersionService versionService, ContentBlobService blobService,
+            DocumentVersionCounterRepository versionCounterRepo, TransactionTemplate transactionTemplate) {
         this.documentRepo = documentRepo;
         this.headingRepo = headingRepo;
         this.teacherRepo = teacherRepo;
+        this.fileCleanupService = fileCleanupService;
+        this.versionService = versionService;
+        this.blobService = blobService;
+        this.versionCounterRepo = versionCounterRepo;
+        this.transactionTemplate = transactionTemplate;
     }
 
+    /**
+     * Reads a multipart/form-data body incrementally ("file", "headingId";
+     * in any order). The file part is streamed once, straight into the blob
+     * store's staging area, while its size, SHA-256 and content type are
+     * taken; there is no separate spool file.
+     *
+     * No pooled connection is held while the file streams in: the Document
+     * row and blob reference commit in a short transaction afterwards, and
+     * the staged file is then moved into the blob store. If the transaction
+     * fails the staging file is removed; if the move fails the Document is
+     * deleted.
+     */
     @Override
-    public Document uploadDocument(Long headingId, MultipartFile file, Long teacherId, String courseCode) {
-        Heading heading = headingRepo.findById(headingId)
-                .orElseThrow(() -> new RuntimeException("Heading not found"));
-
-        Teacher teacher = teacherRepo.findById(teacherId)
-                .orElseThrow(() -> new RuntimeException("Teacher not found"));
-
-        // Build storage path: storage/teachers/{teacherId}/{courseCode}/{headingTitle}/
-        String sanitizedHeadingTitle = sanitizeFileName(heading.getTitle());
-        String storagePath = String.format("%s/teachers/%d/%s/%s/",
-                baseUploadPath, teacherId, courseCode, sanitizedHeadingTitle);
-
-        // Create directories if they don't exist
-        Path dirPath = Paths.get(storagePath);
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public Document uploadDocument(String contentType, InputStream body, Long teacherId) {
+        MultipartStreamReader reader = new MultipartStreamReader(body, MultipartStreamReader.boundary(contentType));
+        ContentBlobService.StagedBlob staged = null;
+        String fileName = null;
+        String declaredType = null;
+        String headingParam = null;
         try {
-            Files.createDirectories(dirPath);
+            MultipartStreamReader.Part part;
+            while ((part = reader.next()) != null) {
+                if ("file".equals(part.name()) && part.isFile()) {
+                    if (staged != null) {
+                        throw new RuntimeException("Only one file per upload");
+                    }
+                    fileName = baseName(part.fileName());
+                    declaredType = part.contentType();
+                    staged = blobService.stage(new LimitedInputStream(part.body(), maxUploadSize.toBytes()));
+                } else if ("headingId".equals(part.name())) {
+                    headingParam = part.readString(MAX_FIELD_BYTES).trim();
+                }
+            }
         } catch (IOException e) {
-            throw new RuntimeException("Failed to create storage directory: " + e.getMessage());
+            blobService.discard(staged);
+            throw new RuntimeException("Failed to read upload: " + e.getMessage());
+        } catch (RuntimeException e) {
+            blobService.discard(staged);
+            throw e;
+        }
+
+        if (staged == null || fileName == null || fileName.isBlank()) {
+            throw new RuntimeException("file is required");
+        }
+        Long headingId;
+        try {
+            headingId = Long.valueOf(headingParam);
+        } catch (NumberFormatException e) {
+            blobService.discard(staged);
+            throw new RuntimeException("headingId is required");
         }
 
-        // Generate unique filename to avoid conflicts
-        String originalFileName = file.getOriginalFilename();
-        String uniqueFileName = System.currentTimeMillis() + "_" + sanitizeFileName(originalFileName);
-        Path filePath = dirPath.resolve(uniqueFileName);
+        ContentBlobService.StagedBlob blob = staged;
+        String name = fileName;
+        String type = ContentSniffer.resolve(staged.sniffedType(), declaredType, fileName);
+        Document document;
+        try {
+            document = transactionTemplate.execute(status -> createDocument(headingId, teacherId, name, type,
+                    blobService.reference(blob)));
+        } catch (RuntimeException e) {
+            blobService.discard(blob);
+            throw e;
+        }
 
-        // Save file to filesystem
         try {
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to save file: " + e.getMessage());
+            blobService.publish(blob);
+        } catch (RuntimeException e) {
+            Long documentId = document.getId();
+            transactionTemplate.executeWithoutResult(status -> deleteDocument(documentId));
+            throw e;
         }
+        return document;
+    }
+
+    @Override
+    public Document createDocument(Long headingId, Long teacherId, String originalFileName, String contentType,
+            ContentBlobService.StoredBlob blob) {
+        Heading heading = headingRepo.findById(headingId)
+                .orElseThrow(() -> new RuntimeException("Heading not found"));
 
-        // Check for existing versions
-        List<Document> existingDocs = documentRepo.findByHeading_Id(headingId);
-        int versionNo = existingDocs.stream()
-                .filter(d -> d.getFileName().equals(originalFileName))
-                .mapToInt(d -> d.getVersionNo() != null ? d.getVersionNo() : 0)
-                .max()
-                .orElse(0) + 1;
+        Teacher teacher = teacherRepo.findById(teacherId)
+                .orElseThrow(() -> new RuntimeException("Teacher not found"));
+
+        // Next version of this file name, allocated atomically per (heading, name).
+        // The counter row stays locked until commit, so the version read next
+        // is the one this upload supersedes.
+        versionCounterRepo.allocate(headingId, originalFileName);
+        int versionNo = (int) versionCounterRepo.lastAllocated();
+        Optional<Document> previous = documentRepo.findLatestForUpdate(headingId, originalFileName);
 
         // Create Document record
         Document document = new Document();
         document.setHeading(heading);
         document.setUploadedBy(teacher);
         document.setFileName(originalFileName);
-        document.setFilePath(filePath.toString());
-        document.setType(file.getContentType());
-        document.setFileSize(file.getSize());
+        document.setBlobHash(blob.sha256());
+        document.setType(contentType);
+        document.setFileSize(blob.size());
         document.setVersionNo(versionNo);
         document.setUploadedAt(LocalDateTime.now());
 
-        return documentRepo.save(document);
+        Document saved = documentRepo.save(document);
+        Long courseFileId = heading.getCourseFile().getId();
+        // The tree lists latest versions only: the superseded one leaves it
+        if (previous.isPresent()) {
+            versionService.recordChange(courseFileId, CourseFileChange.DOCUMENT, previous.get().getId(),
+                    CourseFileChange.DELETE);
+        }
+        versionService.recordChange(courseFileId, CourseFileChange.DOCUMENT, saved.getId(),
+                CourseFileChange.UPSERT);
+        return saved;
     }
 
     @Override
@@ -99,21 +174,31 @@ public class DocumentServiceImpl implements DocumentService {
         Document document = documentRepo.findById(id)
                 .orElseThrow(() -> new RuntimeException("Document not found"));
 
-        // Delete file from filesystem
-        try {
-            Path filePath = Paths.get(document.getFilePath());
-            Files.deleteIfExists(filePath);
-        } catch (IOException e) {
-            System.err.println("Warning: Could not delete file from filesystem: " + e.getMessage());
-        }
-
-        // Delete database record
+        // Delete database record; the file is removed once this commits
+        // (for a shared blob, once its last document is gone)
         documentRepo.delete(document);
+        if (document.getBlobHash() != null) {
+            blobService.release(document.getBlobHash());
+        }
+        // Legacy file, also present while a migration to the BlobStore is unfinished
+        fileCleanupService.enqueue(document.getFilePath());
+        if (document.getHeading() != null) {
+            Long courseFileId = document.getHeading().getCourseFile().getId();
+            versionService.recordChange(courseFileId, CourseFileChange.DOCUMENT, id, CourseFileChange.DELETE);
+            // Deleting the latest version brings the previous one back into the tree
+            documentRepo.findFirstByHeading_IdAndFileNameOrderByVersionNoDesc(document.getHeading().getId(),
+                    document.getFileName())
+                    .filter(d -> d.getVersionNo() != null && document.getVersionNo() != null
+                            && d.getVersionNo() < document.getVersionNo())
+                    .ifPresent(d -> versionService.recordChange(courseFileId, CourseFileChange.DOCUMENT,
+                            d.getId(), CourseFileChange.UPSERT));
+        }
     }
 
     @Override
-    public List<Document> getDocumentsByHeading(Long headingId) {
-        return documentRepo.findByHeading_Id(headingId);
+    public List<Document> getDocumentsByHeading(Long headingId, boolean history) {
+        return history ? documentRepo.findByHeading_Id(headingId)
+                : documentRepo.findLatestByHeadingIds(List.of(headingId));
     }
 
     @Override
@@ -122,9 +207,43 @@ public class DocumentServiceImpl implements DocumentService {
                 .orElseThrow(() -> new RuntimeException("Document not found"));
     }
 
-    private String sanitizeFileName(String fileName) {
-        if (fileName == null)
-            return "unnamed";
-        return fileName.replaceAll("[^a-zA-Z0-9._-]", "_");
+    // Some browsers send the client-side path
+    private String baseName(String fileName) {
+        return fileName.substring(Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\')) + 1);
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                check(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                check(n);
+            }
+            return n;
+        }
+
+        private void check(int n) {
+            count += n;
+            if (count > limit) {
+                throw new RuntimeException("File is larger than the " + limit + " byte limit");
+            }
+        }
     }
 }
@@ -0,0 +1,163 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.FileCleanupTask;
+import com.mitmeerut.CFM_Portal.Repository.FileCleanupTaskRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Durable queue of physical files to delete after their rows are gone.
+ *
+ * Deletes enqueue inside their own transaction (usually one INSERT ... SELECT),
+ * and a background worker removes the files once the rows are committed:
+ * it is woken right after commit and also runs on a schedule, which picks up
+ * anything left over from a crash or a failed attempt. Failed attempts back
+ * off and are given up after a few tries (the row stays for inspection).
+ */
+@Service
+public class FileCleanupService {
+
+    private static final int BATCH_SIZE = 200;
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final FileCleanupTaskRepository taskRepository;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "file-cleanup");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${storage.cleanup.retry-delay-ms:60000}")
+    private long retryDelayMs;
+
+    public FileCleanupService(FileCleanupTaskRepository taskRepository) {
+        this.taskRepository = taskRepository;
+    }
+
+    // ==================== ENQUEUE (caller's transaction) ====================
+
+    public int enqueueCourseFile(Long courseFileId) {
+        int queued = taskRepository.enqueueForCourseFile(courseFileId);
+        wakeAfterCommit(queued);
+        return queued;
+    }
+
+    public int enqueueHeadingSubtree(Long headingId) {
+        int queued = taskRepository.enqueueForHeadingSubtree(headingId);
+        wakeAfterCommit(queued);
+        return queued;
+    }
+
+    public void enqueue(String filePath) {
+        if (filePath == null) {
+            return;
+        }
+        FileCleanupTask task = new FileCleanupTask();
+        task.setFilePath(filePath);
+        task.setNextAttemptAt(LocalDateTime.now());
+        task.setCreatedAt(LocalDateTime.now());
+        taskRepository.save(task);
+        wakeAfterCommit(1);
+    }
+
+    private void wakeAfterCommit(int queued) {
+        if (queued == 0) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wake();
+                }
+            });
+        } else {
+            wake();
+        }
+    }
+
+    private void wake() {
+        if (draining.compareAndSet(false, true)) {
+            worker.execute(this::drainSafely);
+        }
+    }
+
+    // ==================== WORKER ====================
+
+    @Scheduled(fixedDelayString = "${storage.cleanup.interval-ms:30000}")
+    public void scheduledDrain() {
+        wake();
+    }
+
+    private void drainSafely() {
+        try {
+            while (drainBatch() == BATCH_SIZE) {
+                // keep going while full batches come back
+            }
+        } catch (Exception e) {
+            System.err.println("File cleanup failed: " + e.getMessage());
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    /**
+     * Deletes one batch of due files. Each repository call commits on its own,
+     * so a crash in between only means a file is deleted twice (a no-op).
+     */
+    int drainBatch() {
+        List<FileCleanupTask> due = taskRepository.findDue(LocalDateTime.now(), MAX_ATTEMPTS,
+                PageRequest.of(0, BATCH_SIZE));
+        List<Long> done = new ArrayList<>();
+        List<FileCleanupTask> failed = new ArrayList<>();
+
+        for (FileCleanupTask task : due) {
+            try {
+                Files.deleteIfExists(Paths.get(task.getFilePath()));
+                done.add(task.getId());
+            } catch (IOException | RuntimeException e) {
+                int attempts = task.getAttempts() + 1;
+                task.setAttempts(attempts);
+                task.setLastError(truncate(e.toString()));
+                task.setNextAttemptAt(LocalDateTime.now().plusNanos(retryDelayMs * attempts * 1_000_000L));
+                failed.add(task);
+                if (attempts >= MAX_ATTEMPTS) {
+                    System.err.println("Giving up deleting " + task.getFilePath() + ": " + e.getMessage());
+                }
+            }
+        }
+
+        if (!done.isEmpty()) {
+            taskRepository.deleteByIdIn(done);
+        }
+        if (!failed.isEmpty()) {
+            taskRepository.saveAll(failed);
+        }
+        return due.size();
+    }
+
+    private String truncate(String s) {
+        return s.length() > 500 ? s.substring(0, 500) : s;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+}
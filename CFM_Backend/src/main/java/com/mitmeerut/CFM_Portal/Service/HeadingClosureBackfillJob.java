@@ -0,0 +1,50 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Repository.HeadingClosureRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Builds heading_closure rows for course files created before the closure
+ * table existed. Runs once in the background after startup, one course file
+ * per transaction; it only touches headings without rows, so it is safe to
+ * re-run and resumes where it stopped.
+ */
+@Component
+public class HeadingClosureBackfillJob {
+
+    private final HeadingClosureRepository closureRepo;
+    private final HeadingService headingService;
+
+    public HeadingClosureBackfillJob(HeadingClosureRepository closureRepo, HeadingService headingService) {
+        this.closureRepo = closureRepo;
+        this.headingService = headingService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::run, "heading-closure-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void run() {
+        try {
+            List<Long> courseFileIds = closureRepo.findCourseFilesMissingClosure();
+            if (courseFileIds.isEmpty()) {
+                return;
+            }
+            int rows = 0;
+            for (Long courseFileId : courseFileIds) {
+                rows += headingService.backfillClosure(courseFileId);
+            }
+            System.out.println("Heading closure backfill: " + courseFileIds.size() + " course files, "
+                    + rows + " rows");
+        } catch (Exception e) {
+            System.err.println("Heading closure backfill failed: " + e.getMessage());
+        }
+    }
+}
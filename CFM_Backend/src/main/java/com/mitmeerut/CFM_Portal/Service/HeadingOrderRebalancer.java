@@ -0,0 +1,96 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.CourseFileChange;
+import com.mitmeerut.CFM_Portal.Repository.CourseFileRepository;
+import com.mitmeerut.CFM_Portal.Repository.HeadingRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps sibling order keys sparse.
+ *
+ * Headings are ordered by orderIndex with gaps of {@link #ORDER_GAP}, so
+ * placing a heading between two siblings writes one row. When a placement
+ * leaves a gap smaller than {@link #MIN_GAP}, the sibling group is queued and
+ * respaced in the background before the gap actually runs out. Only if a
+ * gap is already exhausted does the caller respace the group inline.
+ *
+ * Reading sibling keys and writing a key between them, and respacing, are
+ * serialized per group by {@link #lockGroup}: otherwise a background
+ * respace between the read and the write leaves duplicate or out-of-order
+ * keys.
+ */
+@Component
+public class HeadingOrderRebalancer {
+
+    public static final int ORDER_GAP = 1024;
+    public static final int MIN_GAP = 8;
+
+    private record Group(Long courseFileId, Long parentId) {
+    }
+
+    private final HeadingRepository headingRepo;
+    private final CourseFileRepository courseFileRepo;
+    private final CourseFileVersionService versionService;
+    private final TransactionTemplate transactionTemplate;
+    private final Set<Group> pending = ConcurrentHashMap.newKeySet();
+
+    public HeadingOrderRebalancer(HeadingRepository headingRepo, CourseFileRepository courseFileRepo,
+            CourseFileVersionService versionService, TransactionTemplate transactionTemplate) {
+        this.headingRepo = headingRepo;
+        this.courseFileRepo = courseFileRepo;
+        this.versionService = versionService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // Gaps are getting tight: respace this group soon
+    public void requestRebalance(Long courseFileId, Long parentId) {
+        pending.add(new Group(courseFileId, parentId));
+    }
+
+    /**
+     * Locks one sibling group until the caller's transaction ends: the parent
+     * heading's row, or the course file's row for root headings. Take it
+     * before reading the siblings' keys.
+     */
+    public void lockGroup(Long courseFileId, Long parentId) {
+        if (parentId != null) {
+            headingRepo.lockById(parentId);
+        } else {
+            courseFileRepo.lockById(courseFileId);
+        }
+    }
+
+    /**
+     * Respaces one sibling group now, in the caller's transaction. Clears the
+     * persistence context, so callers must reload entities afterwards.
+     */
+    public void rebalance(Long courseFileId, Long parentId) {
+        pending.remove(new Group(courseFileId, parentId));
+        lockGroup(courseFileId, parentId);
+        headingRepo.respaceSiblings(courseFileId, parentId, ORDER_GAP);
+        // Delta sync clients need the new keys of every sibling
+        for (Long id : headingRepo.findSiblingIds(courseFileId, parentId)) {
+            versionService.recordChange(courseFileId, CourseFileChange.HEADING, id, CourseFileChange.UPSERT);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${heading.order.rebalance-interval-ms:10000}")
+    public void rebalancePending() {
+        List<Group> groups = new ArrayList<>(pending);
+        for (Group group : groups) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> rebalance(group.courseFileId(), group.parentId()));
+            } catch (Exception e) {
+                System.err.println("Heading order rebalance failed for course file " + group.courseFileId()
+                        + ": " + e.getMessage());
+            }
+        }
+    }
+}
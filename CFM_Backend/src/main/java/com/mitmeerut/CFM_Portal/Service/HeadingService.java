@@ -1,6 +1,7 @@
 package com.mitmeerut.CFM_Portal.Service;
 
 import com.mitmeerut.CFM_Portal.Model.Heading;
+import com.mitmeerut.CFM_Portal.dto.HeadingMoveOperation;
 import java.util.List;
 
 public interface HeadingService {
@@ -11,7 +12,22 @@ public interface HeadingService {
 
     void deleteHeading(Long id);
 
+    Heading moveHeading(Long id, Long newParentHeadingId);
+
+    // Applies move/reorder steps in order, in one transaction; returns the moved headings
+    List<Heading> applyBatch(Long courseFileId, List<HeadingMoveOperation> operations);
+
     List<Heading> getHeadingsByCourseFile(Long courseFileId);
 
     List<Heading> getChildHeadings(Long parentId);
+
+    // Heading and all of its descendants
+    List<Heading> getSubtree(Long id);
+
+    int getDepth(Long id);
+
+    long countDocumentsInSubtree(Long id);
+
+    // Builds closure rows for headings that predate heading_closure
+    int backfillClosure(Long courseFileId);
 }
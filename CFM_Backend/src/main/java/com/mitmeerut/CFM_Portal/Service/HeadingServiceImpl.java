@@ -1,44 +1,81 @@
 package com.mitmeerut.CFM_Portal.Service;
 
 import com.mitmeerut.CFM_Portal.Model.CourseFile;
+import com.mitmeerut.CFM_Portal.Model.CourseFileChange;
 import com.mitmeerut.CFM_Portal.Model.Heading;
+import com.mitmeerut.CFM_Portal.Repository.CommentRepository;
 import com.mitmeerut.CFM_Portal.Repository.CourseFileRepository;
+import com.mitmeerut.CFM_Portal.Repository.HeadingClosureRepository;
 import com.mitmeerut.CFM_Portal.Repository.HeadingRepository;
 import com.mitmeerut.CFM_Portal.Repository.DocumentRepository;
+import com.mitmeerut.CFM_Portal.Repository.DocumentVersionCounterRepository;
+import com.mitmeerut.CFM_Portal.dto.HeadingMoveOperation;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.*;
 
 @Service
 @Transactional
 public class HeadingServiceImpl implements HeadingService {
 
+    private static final Comparator<Heading> BY_ORDER = Comparator
+            .comparing(Heading::getOrderIndex, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Heading::getId);
+
     private final HeadingRepository headingRepo;
     private final CourseFileRepository courseFileRepo;
     private final DocumentRepository documentRepo;
-    private final DocumentService documentService;
+    private final HeadingClosureRepository closureRepo;
+    private final CommentRepository commentRepo;
+    private final FileCleanupService fileCleanupService;
+    private final CourseFileVersionService versionService;
+    private final HeadingOrderRebalancer rebalancer;
+    private final ContentBlobService blobService;
+    private final DocumentVersionCounterRepository versionCounterRepo;
 
     @Autowired
     public HeadingServiceImpl(HeadingRepository headingRepo, CourseFileRepository courseFileRepo,
-            DocumentRepository documentRepo, DocumentService documentService) {
+            DocumentRepository documentRepo, HeadingClosureRepository closureRepo,
+            CommentRepository commentRepo, FileCleanupService fileCleanupService,
+            CourseFileVersionService versionService, HeadingOrderRebalancer rebalancer,
+            ContentBlobService blobService, DocumentVersionCounterRepository versionCounterRepo) {
         this.headingRepo = headingRepo;
         this.courseFileRepo = courseFileRepo;
         this.documentRepo = documentRepo;
-        this.documentService = documentService;
+        this.closureRepo = closureRepo;
+        this.commentRepo = commentRepo;
+        this.fileCleanupService = fileCleanupService;
+        this.versionService = versionService;
+        this.rebalancer = rebalancer;
+        this.blobService = blobService;
+        this.versionCounterRepo = versionCounterRepo;
     }
 
     @Override
     public Heading createHeading(Long courseFileId, Long parentHeadingId, String title, Integer orderIndex) {
+        if (!courseFileRepo.existsById(courseFileId)) {
+            throw new RuntimeException("CourseFile not found");
+        }
+
+        // orderIndex from the client is a 1-based position among the siblings
+        rebalancer.lockGroup(courseFileId, parentHeadingId);
+        List<Heading> siblings = siblings(courseFileId, parentHeadingId, null);
+        int position = orderIndex == null ? siblings.size() + 1
+                : Math.max(1, Math.min(orderIndex, siblings.size() + 1));
+        Long afterId = position > 1 ? siblings.get(position - 2).getId() : null;
+        int orderKey = orderKeyAfter(courseFileId, parentHeadingId, afterId, null);
+
+        // Loaded after the key: a respace clears the persistence context
         CourseFile courseFile = courseFileRepo.findById(courseFileId)
                 .orElseThrow(() -> new RuntimeException("CourseFile not found"));
 
         Heading heading = new Heading();
         heading.setCourseFile(courseFile);
         heading.setTitle(title);
-        heading.setOrderIndex(orderIndex != null ? orderIndex : 1);
+        heading.setOrderIndex(orderKey);
         heading.setCreatedAt(LocalDateTime.now());
 
         if (parentHeadingId != null) {
@@ -47,7 +84,11 @@ public class HeadingServiceImpl implements HeadingService {
             heading.setParentHeading(parent);
         }
 
-        return headingRepo.save(heading);
+        ensureClosure(courseFileId, parentHeadingId);
+        Heading saved = headingRepo.save(heading);
+        closureRepo.insertForNewHeading(saved.getId(), parentHeadingId);
+        versionService.recordChange(courseFileId, CourseFileChange.HEADING, saved.getId(), CourseFileChange.UPSERT);
+        return saved;
     }
 
     @Override
@@ -55,39 +96,171 @@ public class HeadingServiceImpl implements HeadingService {
         Heading heading = headingRepo.findById(id)
                 .orElseThrow(() -> new RuntimeException("Heading not found"));
         heading.setTitle(title);
-        return headingRepo.save(heading);
+        Heading saved = headingRepo.save(heading);
+        versionService.recordChange(heading.getCourseFile().getId(), CourseFileChange.HEADING, id,
+                CourseFileChange.UPSERT);
+        return saved;
     }
 
     @Override
     public void deleteHeading(Long id) {
         Heading heading = headingRepo.findById(id)
                 .orElseThrow(() -> new RuntimeException("Heading not found"));
+        Long courseFileId = heading.getCourseFile().getId();
+        ensureClosure(courseFileId, id);
 
-        // Delete all child headings recursively
-        deleteChildrenRecursively(id);
+        // Whole subtree in a fixed number of set-based statements; files are
+        // queued in the same transaction and removed after commit
+        fileCleanupService.enqueueHeadingSubtree(id);
+        blobService.releaseHeadingSubtree(id);
+        commentRepo.detachFromHeadingSubtree(id);
+        documentRepo.deleteInSubtree(id);
+        versionCounterRepo.deleteInSubtree(id);
+        headingRepo.detachSubtreeParents(id);
+        headingRepo.deleteSubtree(id);
+        closureRepo.deleteSubtree(id);
+        versionService.recordChange(courseFileId, CourseFileChange.HEADING, id, CourseFileChange.DELETE);
+    }
 
-        // Delete documents for this heading
-        deleteDocumentsForHeading(id);
+    @Override
+    public Heading moveHeading(Long id, Long newParentHeadingId) {
+        Heading heading = headingRepo.findById(id)
+                .orElseThrow(() -> new RuntimeException("Heading not found"));
+
+        Long currentParentId = heading.getParentHeading() != null ? heading.getParentHeading().getId() : null;
+        if (Objects.equals(currentParentId, newParentHeadingId)) {
+            return heading;
+        }
 
-        // Delete the heading itself
-        headingRepo.delete(heading);
+        // Append as the last child of the new parent
+        rebalancer.lockGroup(heading.getCourseFile().getId(), newParentHeadingId);
+        List<Heading> siblings = siblings(heading.getCourseFile().getId(), newParentHeadingId, id);
+        Long afterId = siblings.isEmpty() ? null : siblings.get(siblings.size() - 1).getId();
+        return relocate(id, newParentHeadingId, afterId);
     }
 
-    private void deleteChildrenRecursively(Long parentId) {
-        List<Heading> children = headingRepo.findByParentHeadingId(parentId);
-        for (Heading child : children) {
-            deleteChildrenRecursively(child.getId());
-            deleteDocumentsForHeading(child.getId());
-            headingRepo.delete(child);
+    @Override
+    public List<Heading> applyBatch(Long courseFileId, List<HeadingMoveOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<Long> touched = new LinkedHashSet<>();
+        for (HeadingMoveOperation op : operations) {
+            if (op.getHeadingId() == null) {
+                throw new RuntimeException("headingId is required");
+            }
+            Heading heading = headingRepo.findById(op.getHeadingId())
+                    .orElseThrow(() -> new RuntimeException("Heading not found: " + op.getHeadingId()));
+            if (!Objects.equals(heading.getCourseFile().getId(), courseFileId)) {
+                throw new RuntimeException("Heading " + op.getHeadingId() + " belongs to another course file");
+            }
+            relocate(op.getHeadingId(), op.getParentHeadingId(), op.getAfterHeadingId());
+            touched.add(op.getHeadingId());
         }
+        List<Heading> result = new ArrayList<>(headingRepo.findAllById(touched));
+        result.sort(BY_ORDER);
+        return result;
     }
 
-    private void deleteDocumentsForHeading(Long headingId) {
-        // Fetch and delete all documents attached to this heading
-        List<com.mitmeerut.CFM_Portal.Model.Document> documents = documentRepo.findByHeading_Id(headingId);
-        for (com.mitmeerut.CFM_Portal.Model.Document doc : documents) {
-            documentService.deleteDocument(doc.getId());
+    /**
+     * Puts a heading under newParentId right after afterId (null = first).
+     * Writes only the moved heading unless the gap there is exhausted.
+     */
+    private Heading relocate(Long id, Long newParentId, Long afterId) {
+        if (Objects.equals(id, afterId)) {
+            throw new RuntimeException("A heading cannot be placed after itself");
         }
+        Heading heading = headingRepo.findById(id)
+                .orElseThrow(() -> new RuntimeException("Heading not found"));
+        Long courseFileId = heading.getCourseFile().getId();
+        Long currentParentId = heading.getParentHeading() != null ? heading.getParentHeading().getId() : null;
+        boolean parentChanged = !Objects.equals(currentParentId, newParentId);
+
+        if (parentChanged) {
+            ensureClosure(courseFileId, id, newParentId);
+        }
+        if (parentChanged && newParentId != null) {
+            Heading newParent = headingRepo.findById(newParentId)
+                    .orElseThrow(() -> new RuntimeException("Parent heading not found"));
+            if (!Objects.equals(newParent.getCourseFile().getId(), courseFileId)) {
+                throw new RuntimeException("Cannot move a heading to another course file");
+            }
+            if (closureRepo.isAncestor(id, newParentId)) {
+                throw new RuntimeException("Cannot move a heading under itself or its descendants");
+            }
+        }
+
+        int orderKey = orderKeyAfter(courseFileId, newParentId, afterId, id);
+
+        // Reload: a respace clears the persistence context
+        heading = headingRepo.findById(id)
+                .orElseThrow(() -> new RuntimeException("Heading not found"));
+        if (parentChanged) {
+            heading.setParentHeading(newParentId != null ? headingRepo.getReferenceById(newParentId) : null);
+        }
+        heading.setOrderIndex(orderKey);
+        Heading saved = headingRepo.save(heading);
+
+        if (parentChanged) {
+            closureRepo.detachSubtree(id);
+            if (newParentId != null) {
+                closureRepo.attachSubtree(id, newParentId);
+            }
+        }
+        versionService.recordChange(courseFileId, CourseFileChange.HEADING, id, CourseFileChange.UPSERT);
+        return saved;
+    }
+
+    /**
+     * Order key between afterId (null = start) and the sibling that follows
+     * it. Respaces the sibling group inline only when there is no gap left.
+     * The group stays locked until the caller's transaction ends.
+     */
+    private int orderKeyAfter(Long courseFileId, Long parentId, Long afterId, Long excludeId) {
+        rebalancer.lockGroup(courseFileId, parentId);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            List<Heading> siblings = siblings(courseFileId, parentId, excludeId);
+            boolean unspaced = siblings.stream().anyMatch(h -> h.getOrderIndex() == null);
+
+            int index = -1;
+            if (afterId != null) {
+                for (int i = 0; i < siblings.size(); i++) {
+                    if (siblings.get(i).getId().equals(afterId)) {
+                        index = i;
+                        break;
+                    }
+                }
+                if (index < 0) {
+                    throw new RuntimeException("Heading " + afterId + " is not a child of the target parent");
+                }
+            }
+
+            if (!unspaced) {
+                int prev = index >= 0 ? siblings.get(index).getOrderIndex() : 0;
+                Integer next = index + 1 < siblings.size() ? siblings.get(index + 1).getOrderIndex() : null;
+                if (next == null && prev <= Integer.MAX_VALUE - HeadingOrderRebalancer.ORDER_GAP) {
+                    return prev + HeadingOrderRebalancer.ORDER_GAP;
+                }
+                if (next != null && next - prev >= 2) {
+                    int key = prev + (next - prev) / 2;
+                    if (Math.min(key - prev, next - key) < HeadingOrderRebalancer.MIN_GAP) {
+                        rebalancer.requestRebalance(courseFileId, parentId);
+                    }
+                    return key;
+                }
+            }
+            rebalancer.rebalance(courseFileId, parentId);
+        }
+        throw new RuntimeException("Could not allocate an order key");
+    }
+
+    private List<Heading> siblings(Long courseFileId, Long parentId, Long excludeId) {
+        List<Heading> siblings = new ArrayList<>(parentId == null
+                ? headingRepo.findByCourseFileIdAndParentHeadingIsNull(courseFileId)
+                : headingRepo.findByParentHeadingId(parentId));
+        siblings.removeIf(h -> h.getId().equals(excludeId));
+        siblings.sort(BY_ORDER);
+        return siblings;
     }
 
     @Override
@@ -99,4 +272,55 @@ public class HeadingServiceImpl implements HeadingService {
     public List<Heading> getChildHeadings(Long parentId) {
         return headingRepo.findByParentHeadingId(parentId);
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<Heading> getSubtree(Long id) {
+        ensureClosureOf(id);
+        return headingRepo.findSubtree(id);
+    }
+
+    @Override
+    public int getDepth(Long id) {
+        ensureClosureOf(id);
+        return closureRepo.findDepth(id);
+    }
+
+    @Override
+    public long countDocumentsInSubtree(Long id) {
+        ensureClosureOf(id);
+        return documentRepo.countInSubtree(id);
+    }
+
+    /**
+     * The subtree statements only see headings with closure rows. A heading
+     * from before the closure table may not have them yet if the startup
+     * backfill has not reached its course file: backfill that one now.
+     */
+    private void ensureClosure(Long courseFileId, Long... headingIds) {
+        for (Long headingId : headingIds) {
+            if (headingId != null && !closureRepo.isAncestor(headingId, headingId)) {
+                backfillClosure(courseFileId);
+                return;
+            }
+        }
+    }
+
+    // Same for a read path that only has the heading id
+    private void ensureClosureOf(Long headingId) {
+        if (!closureRepo.isAncestor(headingId, headingId)) {
+            headingRepo.findById(headingId)
+                    .ifPresent(heading -> backfillClosure(heading.getCourseFile().getId()));
+        }
+    }
+
+    @Override
+    public int backfillClosure(Long courseFileId) {
+        int inserted = closureRepo.backfillSelfRows(courseFileId);
+        int added;
+        do {
+            added = closureRepo.backfillNextLevel(courseFileId);
+            inserted += added;
+        } while (added > 0);
+        return inserted;
+    }
+}
@@ -0,0 +1,246 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mitmeerut.CFM_Portal.Model.CourseFileChange;
+import com.mitmeerut.CFM_Portal.Model.Document;
+import com.mitmeerut.CFM_Portal.Model.Heading;
+import com.mitmeerut.CFM_Portal.Repository.CourseFileChangeRepository;
+import com.mitmeerut.CFM_Portal.Repository.CourseFileRepository;
+import com.mitmeerut.CFM_Portal.Repository.DocumentRepository;
+import com.mitmeerut.CFM_Portal.Repository.HeadingRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Loads the heading/document tree of a course file with two queries: all
+ * headings by course_file_id, then the latest version of each of their
+ * documents with one IN query.
+ * The tree is linked in memory through an id -> node map.
+ *
+ * Shared by HeadingController (teacher view) and ReviewController (review view).
+ * {@link #loadSerializedTree} adds the course file's content version and
+ * serves the JSON from {@link CourseFileTreeCache} while it is unchanged;
+ * {@link #loadChanges} answers delta sync from the course file change log.
+ */
+@Service
+@Transactional
+public class HeadingTreeLoader {
+
+    private static final Comparator<Heading> BY_ORDER = Comparator
+            .comparing(Heading::getOrderIndex, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Heading::getId);
+
+    private final HeadingRepository headingRepo;
+    private final DocumentRepository documentRepo;
+    private final CourseFileRepository courseFileRepo;
+    private final CourseFileTreeCache treeCache;
+    private final ObjectMapper objectMapper;
+    private final CourseFileChangeRepository changeRepo;
+
+    // Beyond this many log entries a snapshot is cheaper than a delta
+    @Value("${tree.changes.max-delta:500}")
+    private int maxDeltaEntries = 500;
+
+    public HeadingTreeLoader(HeadingRepository headingRepo, DocumentRepository documentRepo,
+            CourseFileRepository courseFileRepo, CourseFileTreeCache treeCache, ObjectMapper objectMapper,
+            CourseFileChangeRepository changeRepo) {
+        this.headingRepo = headingRepo;
+        this.documentRepo = documentRepo;
+        this.courseFileRepo = courseFileRepo;
+        this.treeCache = treeCache;
+        this.objectMapper = objectMapper;
+        this.changeRepo = changeRepo;
+    }
+
+    public Long currentVersion(Long courseFileId) {
+        return courseFileRepo.findContentVersion(courseFileId);
+    }
+
+    /**
+     * The tree as JSON together with the version it was built at, or null if
+     * the course file does not exist. Version and tree are read in the same
+     * transaction (one InnoDB snapshot), so a cached tree always matches its
+     * version.
+     */
+    public CourseFileTreeCache.Entry loadSerializedTree(Long courseFileId, String documentsKey) {
+        Long version = courseFileRepo.findContentVersion(courseFileId);
+        if (version == null) {
+            return null;
+        }
+        CourseFileTreeCache.Entry cached = treeCache.get(courseFileId, documentsKey, version);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            String json = objectMapper.writeValueAsString(loadTree(courseFileId, documentsKey));
+            return treeCache.put(courseFileId, documentsKey, version, json);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize tree: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Root heading nodes of the course file, each with nested "children" and its
+     * documents under {@code documentsKey} ("files" or "documents").
+     */
+    public List<Map<String, Object>> loadTree(Long courseFileId, String documentsKey) {
+        List<Heading> headings = new ArrayList<>(headingRepo.findByCourseFileId(courseFileId));
+        if (headings.isEmpty()) {
+            return new ArrayList<>();
+        }
+        headings.sort(BY_ORDER);
+
+        Map<Long, Map<String, Object>> nodes = new HashMap<>(headings.size() * 2);
+        for (Heading heading : headings) {
+            Map<String, Object> node = headingToMap(heading);
+            node.put("children", new ArrayList<Map<String, Object>>());
+            node.put(documentsKey, new ArrayList<Map<String, Object>>());
+            nodes.put(heading.getId(), node);
+        }
+
+        // Latest version of each file; older versions are listed per heading on demand
+        List<Document> documents = new ArrayList<>(documentRepo.findLatestByHeadingIds(nodes.keySet()));
+        documents.sort(Comparator.comparing(Document::getId));
+        for (Document doc : documents) {
+            Map<String, Object> node = nodes.get(doc.getHeading().getId());
+            if (node != null) {
+                children(node, documentsKey).add(documentToMap(doc));
+            }
+        }
+
+        // Headings are already in sibling order, so appending keeps children sorted
+        List<Map<String, Object>> roots = new ArrayList<>();
+        for (Heading heading : headings) {
+            Map<String, Object> node = nodes.get(heading.getId());
+            if (heading.getParentHeading() == null) {
+                roots.add(node);
+            } else {
+                Map<String, Object> parent = nodes.get(heading.getParentHeading().getId());
+                if (parent != null) {
+                    children(parent, "children").add(node);
+                }
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * Headings and documents changed since version {@code since}, or a full
+     * snapshot ("mode": "snapshot", "tree") when the client is unknown, ahead,
+     * or further behind than the retained log. Returns null if the course
+     * file does not exist.
+     *
+     * A delta lists upserted headings and documents (apply them as one batch,
+     * parents may arrive after children) and deleted ids; a deleted heading
+     * takes its whole subtree with it. The work done is proportional to the
+     * number of log entries since {@code since}, not to the tree size.
+     */
+    public Map<String, Object> loadChanges(Long courseFileId, Long since) {
+        Long version = courseFileRepo.findContentVersion(courseFileId);
+        if (version == null) {
+            return null;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("courseFileId", courseFileId);
+        result.put("since", since);
+        result.put("version", version);
+
+        if (since == null || since > version || !deltaAvailable(courseFileId, since, version)) {
+            result.put("mode", "snapshot");
+            result.put("tree", loadTree(courseFileId, "files"));
+            return result;
+        }
+
+        // Last operation per entity wins
+        Map<Long, String> headingOps = new LinkedHashMap<>();
+        Map<Long, String> documentOps = new LinkedHashMap<>();
+        if (since < version) {
+            for (CourseFileChange change : changeRepo.findSince(courseFileId, since)) {
+                Map<Long, String> ops = CourseFileChange.HEADING.equals(change.getEntityType()) ? headingOps
+                        : documentOps;
+                ops.remove(change.getEntityId());
+                ops.put(change.getEntityId(), change.getOp());
+            }
+        }
+
+        // Upserted rows that no longer exist went with a deleted ancestor heading
+        List<Map<String, Object>> headings = new ArrayList<>();
+        List<Heading> upsertedHeadings = new ArrayList<>(
+                headingRepo.findAllById(idsWithOp(headingOps, CourseFileChange.UPSERT)));
+        upsertedHeadings.sort(Comparator.comparing(Heading::getId));
+        for (Heading heading : upsertedHeadings) {
+            headings.add(headingToMap(heading));
+        }
+
+        List<Map<String, Object>> documents = new ArrayList<>();
+        List<Document> upsertedDocuments = new ArrayList<>(
+                documentRepo.findAllById(idsWithOp(documentOps, CourseFileChange.UPSERT)));
+        upsertedDocuments.sort(Comparator.comparing(Document::getId));
+        for (Document doc : upsertedDocuments) {
+            Map<String, Object> docMap = documentToMap(doc);
+            docMap.put("headingId", doc.getHeading() != null ? doc.getHeading().getId() : null);
+            documents.add(docMap);
+        }
+
+        result.put("mode", "delta");
+        result.put("headings", headings);
+        result.put("documents", documents);
+        result.put("deletedHeadingIds", idsWithOp(headingOps, CourseFileChange.DELETE));
+        result.put("deletedDocumentIds", idsWithOp(documentOps, CourseFileChange.DELETE));
+        return result;
+    }
+
+    // The log covers (since, version] only if nothing after since was purged
+    private boolean deltaAvailable(Long courseFileId, long since, long version) {
+        if (since == version) {
+            return true;
+        }
+        Long oldest = changeRepo.findOldestVersion(courseFileId);
+        if (oldest == null || oldest > since + 1) {
+            return false;
+        }
+        return changeRepo.countSince(courseFileId, since) <= maxDeltaEntries;
+    }
+
+    private List<Long> idsWithOp(Map<Long, String> ops, String op) {
+        List<Long> ids = new ArrayList<>();
+        for (Map.Entry<Long, String> entry : ops.entrySet()) {
+            if (op.equals(entry.getValue())) {
+                ids.add(entry.getKey());
+            }
+        }
+        return ids;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> children(Map<String, Object> node, String key) {
+        return (List<Map<String, Object>>) node.get(key);
+    }
+
+    public Map<String, Object> headingToMap(Heading heading) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", heading.getId());
+        map.put("title", heading.getTitle());
+        map.put("orderIndex", heading.getOrderIndex());
+        map.put("courseFileId", heading.getCourseFile() != null ? heading.getCourseFile().getId() : null);
+        map.put("parentHeadingId", heading.getParentHeading() != null ? heading.getParentHeading().getId() : null);
+        map.put("createdAt", heading.getCreatedAt());
+        return map;
+    }
+
+    public Map<String, Object> documentToMap(Document doc) {
+        Map<String, Object> docMap = new HashMap<>();
+        docMap.put("id", doc.getId());
+        docMap.put("fileName", doc.getFileName());
+        docMap.put("fileSize", doc.getFileSize());
+        docMap.put("versionNo", doc.getVersionNo());
+        docMap.put("uploadedAt", doc.getUploadedAt());
+        docMap.put("type", doc.getType());
+        return docMap;
+    }
+}
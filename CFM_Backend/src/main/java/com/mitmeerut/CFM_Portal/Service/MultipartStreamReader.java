@@ -0,0 +1,284 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Incremental multipart/form-data reader over a raw request body.
+ *
+ * Parts are handed out one at a time with their body as an InputStream that
+ * ends at the next boundary, so a file part can be streamed straight to its
+ * destination instead of being spooled first. Moving to the next part skips
+ * whatever is left of the current one. Memory use is one fixed buffer.
+ */
+public final class MultipartStreamReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 8 * 1024;
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    // Horspool shift for each byte value that ends a window (see findDelimiter)
+    private final int[] shift = new int[256];
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int head;
+    private int tail;
+    private boolean eof;
+    private boolean finished;
+    private PartStream current;
+
+    public MultipartStreamReader(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        Arrays.fill(shift, delimiter.length);
+        for (int j = 0; j < delimiter.length - 1; j++) {
+            shift[delimiter[j] & 0xff] = delimiter.length - 1 - j;
+        }
+        // The first boundary has no preceding CRLF: supply one so every
+        // boundary matches the same delimiter
+        buf[0] = '\r';
+        buf[1] = '\n';
+        tail = 2;
+    }
+
+    /**
+     * The boundary parameter of a multipart/form-data Content-Type header
+     */
+    public static String boundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) {
+            throw new RuntimeException("Expected a multipart/form-data request");
+        }
+        String boundary = parameters(contentType).get("boundary");
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+            throw new RuntimeException("Missing or invalid multipart boundary");
+        }
+        return boundary;
+    }
+
+    public record Part(String name, String fileName, String contentType, InputStream body) {
+
+        public boolean isFile() {
+            return fileName != null;
+        }
+
+        // A form field's value, read fully
+        public String readString(int maxBytes) throws IOException {
+            byte[] value = body.readNBytes(maxBytes + 1);
+            if (value.length > maxBytes) {
+                throw new RuntimeException("Form field " + name + " is too long");
+            }
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The next part, or null after the closing boundary
+     */
+    public Part next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        // Skip the preamble, or the rest of the previous part
+        PartStream skip = current != null ? current : new PartStream();
+        skip.skip(Long.MAX_VALUE);
+
+        head += delimiter.length;
+        require(2);
+        if (buf[head] == '-' && buf[head + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        readLine(); // rest of the boundary line (transport padding, CRLF)
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        int headerBytes = 0;
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            headerBytes += line.length();
+            if (headerBytes > MAX_HEADER_BYTES) {
+                throw new IOException("Multipart headers too large");
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        line.substring(colon + 1).trim());
+            }
+        }
+
+        Map<String, String> disposition = parameters(headers.getOrDefault("content-disposition", ""));
+        current = new PartStream();
+        return new Part(disposition.get("name"), disposition.get("filename"), headers.get("content-type"),
+                current);
+    }
+
+    // ==================== BUFFER ====================
+
+    // Makes at least n bytes available from head, or fails at end of input
+    private void require(int n) throws IOException {
+        while (tail - head < n) {
+            if (fill() < 0) {
+                throw new IOException("Unexpected end of multipart body");
+            }
+        }
+    }
+
+    private int fill() throws IOException {
+        if (eof) {
+            return -1;
+        }
+        if (head > 0) {
+            System.arraycopy(buf, head, buf, 0, tail - head);
+            tail -= head;
+            head = 0;
+        }
+        if (tail == buf.length) {
+            throw new IOException("Multipart line too long");
+        }
+        int n = in.read(buf, tail, buf.length - tail);
+        if (n < 0) {
+            eof = true;
+            return -1;
+        }
+        tail += n;
+        return n;
+    }
+
+    private String readLine() throws IOException {
+        // Offset from head already searched; fill() may move head
+        int scanned = 0;
+        while (true) {
+            for (int i = head + scanned; i + 1 < tail; i++) {
+                if (buf[i] == '\r' && buf[i + 1] == '\n') {
+                    String line = new String(buf, head, i - head, StandardCharsets.UTF_8);
+                    head = i + 2;
+                    return line;
+                }
+            }
+            scanned = Math.max(0, tail - head - 1);
+            if (fill() < 0) {
+                throw new IOException("Unexpected end of multipart body");
+            }
+        }
+    }
+
+    /**
+     * Position of the delimiter in buf[head, tail), or -1. Boyer-Moore-Horspool:
+     * the byte at the end of each window decides how far to move, so file
+     * content is mostly skipped a delimiter length (40+ bytes) at a time
+     * instead of being compared byte by byte.
+     */
+    private int findDelimiter() {
+        int n = delimiter.length;
+        byte lastByte = delimiter[n - 1];
+        int last = tail - n;
+        for (int i = head; i <= last; ) {
+            byte end = buf[i + n - 1];
+            if (end == lastByte && Arrays.equals(buf, i, i + n - 1, delimiter, 0, n - 1)) {
+                return i;
+            }
+            i += shift[end & 0xff];
+        }
+        return -1;
+    }
+
+    // Body of one part: everything up to the next delimiter
+    private final class PartStream extends InputStream {
+        private boolean done;
+        // Bytes from head already known to hold no delimiter
+        private int clear;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (clear == 0) {
+                int at = findDelimiter();
+                if (at == head) {
+                    done = true;
+                    return -1;
+                }
+                if (at > head) {
+                    clear = at - head;
+                } else {
+                    // Keep a possible partial delimiter at the end of the buffer
+                    clear = Math.max(0, tail - head - (delimiter.length - 1));
+                    if (clear == 0 && fill() < 0) {
+                        throw new IOException("Unexpected end of multipart body");
+                    }
+                }
+            }
+            int n = Math.min(len, clear);
+            System.arraycopy(buf, head, b, off, n);
+            head += n;
+            clear -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] scratch = new byte[8192];
+            long skipped = 0;
+            int r;
+            while (skipped < n && (r = read(scratch, 0, (int) Math.min(scratch.length, n - skipped))) > 0) {
+                skipped += r;
+            }
+            return skipped;
+        }
+    }
+
+    // ==================== HEADER PARAMETERS ====================
+
+    // ;-separated key=value pairs of a header value, keys lower-cased, quotes removed
+    private static Map<String, String> parameters(String header) {
+        Map<String, String> params = new LinkedHashMap<>();
+        int i = header.indexOf(';');
+        while (i >= 0 && i < header.length()) {
+            i++;
+            int eq = header.indexOf('=', i);
+            if (eq < 0) {
+                break;
+            }
+            String key = header.substring(i, eq).trim().toLowerCase(Locale.ROOT);
+            int pos = eq + 1;
+            while (pos < header.length() && header.charAt(pos) == ' ') {
+                pos++;
+            }
+            String value;
+            if (pos < header.length() && header.charAt(pos) == '"') {
+                StringBuilder quoted = new StringBuilder();
+                pos++;
+                while (pos < header.length() && header.charAt(pos) != '"') {
+                    char c = header.charAt(pos);
+                    if (c == '\\' && pos + 1 < header.length()) {
+                        c = header.charAt(++pos);
+                    }
+                    quoted.append(c);
+                    pos++;
+                }
+                value = quoted.toString();
+                i = header.indexOf(';', pos);
+            } else {
+                int end = header.indexOf(';', pos);
+                value = (end < 0 ? header.substring(pos) : header.substring(pos, end)).trim();
+                i = end;
+            }
+            params.putIfAbsent(key, value);
+        }
+        return params;
+    }
+}
@@ -44,44 +44,6 @@ public class NotificationHelperService {
         sendEmailAsync(recipient.getEmail(), emailSubject, emailBody);
     }
 
-    /**
-     * Send notification when a course file is approved
-     */
-    public void notifyFileApproved(User recipient, String approverName, String courseCode, String approverRole) {
-        String message = String.format("Your course file for %s has been approved by %s (%s)", courseCode, approverName,
-                approverRole);
-
-        createNotification(recipient, "FILE_APPROVED", message, null);
-
-        // Send email
-        String emailSubject = "CFM: Course File Approved ✓";
-        String emailBody = String.format(
-                "Dear %s,\n\n%s\n\nCongratulations on your approval!\n\nBest regards,\nCFM Portal",
-                recipient.getUsername(), message);
-        sendEmailAsync(recipient.getEmail(), emailSubject, emailBody);
-    }
-
-    /**
-     * Send notification when a course file is returned for revision
-     */
-    public void notifyFileReturned(User recipient, String reviewerName, String courseCode, String comment) {
-        String message = String.format("Your course file for %s has been returned by %s for revision", courseCode,
-                reviewerName);
-
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("message", message);
-        payload.put("comment", comment);
-
-        createNotificationWithPayload(recipient, "FILE_RETURNED", payload);
-
-        // Send email
-        String emailSubject = "CFM: Course File Returned for Revision";
-        String emailBody = String.format(
-                "Dear %s,\n\n%s\n\nReviewer's Comment:\n\"%s\"\n\nPlease make the necessary changes and resubmit.\n\nBest regards,\nCFM Portal",
-                recipient.getUsername(), message, comment != null ? comment : "No comment provided");
-        sendEmailAsync(recipient.getEmail(), emailSubject, emailBody);
-    }
-
     /**
      * Send notification when a comment is added to a course file
      */
@@ -0,0 +1,459 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.Approval;
+import com.mitmeerut.CFM_Portal.Model.Comment;
+import com.mitmeerut.CFM_Portal.Model.CourseFile;
+import com.mitmeerut.CFM_Portal.Repository.ApprovalRepository;
+import com.mitmeerut.CFM_Portal.Repository.CommentRepository;
+import com.mitmeerut.CFM_Portal.Repository.CourseRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Embedded Lucene index over comment text and approval remarks.
+ *
+ * The index lives on local disk and is updated incrementally by the comment
+ * and approval endpoints, after their transaction commits. Changes become
+ * searchable immediately (near real-time reader) and are committed to disk on
+ * a short schedule.
+ *
+ * Each commit records whether the index was closed cleanly. At startup an
+ * index that was not (new, crashed with uncommitted updates, or an update
+ * failed) is rebuilt from the database in the background. The rebuild holds
+ * the same lock as live updates one batch at a time, so neither overwrites
+ * the other with older data. Afterwards it drops every entry it did not
+ * rewrite, which removes rows deleted while updates were being lost.
+ */
+@Service
+public class RemarkSearchService {
+
+    private static final String KIND_COMMENT = "COMMENT";
+    private static final String KIND_APPROVAL = "APPROVAL";
+    private static final int REBUILD_BATCH = 1000;
+    private static final int MAX_RESULTS = 100;
+    // Commit user data: "open" while running, "clean" after an orderly close
+    private static final String STATE = "state";
+    private static final String CLEAN = "clean";
+
+    private final CommentRepository commentRepository;
+    private final ApprovalRepository approvalRepository;
+    private final CourseRepository courseRepository;
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    // Serializes index writes between live updates and the rebuild
+    private final ReentrantLock indexLock = new ReentrantLock();
+    // Stamped on every entry written; the rebuild deletes entries of older generations
+    private volatile String generation = "";
+    // False while the index may be missing updates; only then is it left unclean
+    private volatile boolean upToDate = true;
+
+    @Value("${search.index.path:storage/index/remarks}")
+    private String indexPath;
+
+    public RemarkSearchService(CommentRepository commentRepository,
+            ApprovalRepository approvalRepository,
+            CourseRepository courseRepository) {
+        this.commentRepository = commentRepository;
+        this.approvalRepository = approvalRepository;
+        this.courseRepository = courseRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void open() throws IOException {
+        Path path = Paths.get(indexPath);
+        Files.createDirectories(path);
+        directory = FSDirectory.open(path);
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(writer, null);
+
+        boolean clean = false;
+        for (Map.Entry<String, String> entry : writer.getLiveCommitData()) {
+            clean |= STATE.equals(entry.getKey()) && CLEAN.equals(entry.getValue());
+        }
+        // From here until close, a crash leaves the index marked as not clean
+        writer.setLiveCommitData(Map.of(STATE, "open").entrySet());
+        writer.commit();
+
+        if (!clean) {
+            upToDate = false;
+            Thread rebuild = new Thread(this::rebuild, "remark-index-rebuild");
+            rebuild.setDaemon(true);
+            rebuild.start();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            if (searcherManager != null)
+                searcherManager.close();
+            if (writer != null) {
+                indexLock.lock();
+                try {
+                    if (upToDate) {
+                        writer.setLiveCommitData(Map.of(STATE, CLEAN).entrySet());
+                    }
+                    writer.close(); // commits
+                } finally {
+                    indexLock.unlock();
+                }
+            }
+            if (directory != null)
+                directory.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close remark index: " + e.getMessage());
+        }
+    }
+
+    // ==================== INCREMENTAL UPDATES ====================
+
+    // Comment and approval changes reach the index only once the caller's
+    // transaction commits, so a rollback leaves the index untouched.
+    // Fields are read now, while the entities are still attached.
+
+    public void indexComment(Comment comment) {
+        CourseFile cf = comment.getCourseFile();
+        Long departmentId = cf != null ? departmentOf(cf) : null;
+        Long courseFileId = cf != null ? cf.getId() : null;
+        Long id = comment.getId();
+        Long parentId = comment.getParentComment() != null ? comment.getParentComment().getId() : null;
+        String text = comment.getText();
+        LocalDateTime createdAt = comment.getCreatedAt();
+        afterCommit(() -> upsert(KIND_COMMENT, id, parentId, text, courseFileId, departmentId, createdAt, null));
+    }
+
+    // Drops the comment and its replies, at any depth
+    public void removeComment(Long commentId) {
+        afterCommit(() -> removeThread(commentId));
+    }
+
+    // Drops every comment and approval remark of a deleted course file
+    public void removeCourseFile(Long courseFileId) {
+        if (writer == null || courseFileId == null)
+            return;
+        indexLock.lock();
+        try {
+            writer.deleteDocuments(LongPoint.newExactQuery("courseFileId", courseFileId));
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            upToDate = false;
+            System.err.println("Failed to remove course file " + courseFileId + " from index: " + e.getMessage());
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    public void indexApproval(Approval approval) {
+        CourseFile cf = approval.getCourseFile();
+        Long departmentId = cf != null ? departmentOf(cf) : null;
+        Long courseFileId = cf != null ? cf.getId() : null;
+        Long id = approval.getId();
+        String text = approval.getComment();
+        LocalDateTime actedAt = approval.getActedAt();
+        String stage = approval.getStage();
+        afterCommit(() -> upsert(KIND_APPROVAL, id, null, text, courseFileId, departmentId, actedAt, stage));
+    }
+
+    private void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    private Long departmentOf(CourseFile cf) {
+        if (cf.getCourse() == null)
+            return null;
+        return courseRepository.findDepartmentIdByProgramId(cf.getCourse().getProgramId());
+    }
+
+    private void upsert(String kind, Long id, Long parentId, String text, Long courseFileId, Long departmentId,
+            LocalDateTime createdAt, String stage) {
+        if (writer == null || id == null)
+            return;
+        indexLock.lock();
+        try {
+            addRow(kind, id, parentId, text, courseFileId, departmentId, createdAt, stage);
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            // Search is best-effort; never fail the comment/approval request
+            upToDate = false;
+            System.err.println("Failed to index " + kind + " " + id + ": " + e.getMessage());
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    // Deletes the comment, then each level of replies found through parentId
+    private void removeThread(Long commentId) {
+        if (writer == null || commentId == null)
+            return;
+        indexLock.lock();
+        IndexSearcher searcher = null;
+        try {
+            writer.deleteDocuments(new Term("uid", uid(KIND_COMMENT, commentId)));
+            searcherManager.maybeRefreshBlocking();
+            searcher = searcherManager.acquire();
+
+            Set<Long> seen = new HashSet<>(List.of(commentId));
+            List<Long> level = List.of(commentId);
+            while (!level.isEmpty()) {
+                Query replies = LongPoint.newSetQuery("parentId", level);
+                writer.deleteDocuments(replies);
+                int count = searcher.count(replies);
+                List<Long> next = new ArrayList<>();
+                if (count > 0) {
+                    for (ScoreDoc hit : searcher.search(replies, count).scoreDocs) {
+                        long id = searcher.storedFields().document(hit.doc).getField("id").numericValue()
+                                .longValue();
+                        if (seen.add(id)) {
+                            next.add(id);
+                        }
+                    }
+                }
+                level = next;
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            upToDate = false;
+            System.err.println("Failed to remove " + KIND_COMMENT + " " + commentId + " from index: "
+                    + e.getMessage());
+        } finally {
+            if (searcher != null) {
+                try {
+                    searcherManager.release(searcher);
+                } catch (IOException ignored) {
+                }
+            }
+            indexLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${search.index.commit-interval-ms:5000}")
+    public void commit() {
+        if (writer == null || !writer.hasUncommittedChanges())
+            return;
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            System.err.println("Failed to commit remark index: " + e.getMessage());
+        }
+    }
+
+    // ==================== SEARCH ====================
+
+    /**
+     * Searches remarks in a department. Returns hits with a highlighted snippet
+     * (matches wrapped in &lt;mark&gt;).
+     */
+    public List<Map<String, Object>> search(String queryText, Long departmentId, Long courseFileId, int limit) {
+        if (searcherManager == null || queryText == null || queryText.isBlank() || departmentId == null) {
+            return Collections.emptyList();
+        }
+
+        Query textQuery = new SimpleQueryParser(analyzer, "text").parse(queryText);
+        BooleanQuery.Builder builder = new BooleanQuery.Builder()
+                .add(textQuery, BooleanClause.Occur.MUST)
+                .add(LongPoint.newExactQuery("departmentId", departmentId), BooleanClause.Occur.FILTER);
+        if (courseFileId != null) {
+            builder.add(LongPoint.newExactQuery("courseFileId", courseFileId), BooleanClause.Occur.FILTER);
+        }
+        Query query = builder.build();
+
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
+            TopDocs topDocs = searcher.search(query, Math.max(1, Math.min(limit, MAX_RESULTS)));
+
+            UnifiedHighlighter highlighter = UnifiedHighlighter.builder(searcher, analyzer)
+                    .withFormatter(new DefaultPassageFormatter("<mark>", "</mark>", " ... ", true))
+                    .build();
+            String[] snippets = highlighter.highlight("text", query, topDocs, 2);
+
+            List<Map<String, Object>> result = new ArrayList<>();
+            for (int i = 0; i < topDocs.scoreDocs.length; i++) {
+                ScoreDoc hit = topDocs.scoreDocs[i];
+                org.apache.lucene.document.Document doc = searcher.storedFields().document(hit.doc);
+
+                Map<String, Object> item = new HashMap<>();
+                item.put("kind", doc.get("kind"));
+                item.put("id", doc.getField("id").numericValue().longValue());
+                if (doc.getField("courseFileIdStored") != null) {
+                    item.put("courseFileId", doc.getField("courseFileIdStored").numericValue().longValue());
+                }
+                if (doc.get("createdAt") != null) {
+                    item.put("createdAt", LocalDateTime.parse(doc.get("createdAt")));
+                }
+                if (doc.get("stage") != null) {
+                    item.put("stage", doc.get("stage"));
+                }
+                item.put("snippet", snippets[i] != null ? snippets[i] : doc.get("text"));
+                item.put("score", hit.score);
+                result.add(item);
+            }
+            return result;
+        } catch (IOException e) {
+            throw new RuntimeException("Search failed: " + e.getMessage());
+        } finally {
+            if (searcher != null) {
+                try {
+                    searcherManager.release(searcher);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    // ==================== REBUILD ====================
+
+    private void rebuild() {
+        try {
+            String gen = Long.toString(System.currentTimeMillis());
+            generation = gen;
+            long indexed = 0;
+            Long afterId = 0L;
+            List<Object[]> rows;
+            do {
+                indexLock.lock();
+                try {
+                    // Read under the lock: a live update either committed before
+                    // this read or is applied after this batch
+                    rows = commentRepository.findSearchRowsAfter(afterId, PageRequest.of(0, REBUILD_BATCH));
+                    for (Object[] r : rows) {
+                        afterId = (Long) r[0];
+                        addRow(KIND_COMMENT, afterId, (Long) r[5], (String) r[1], (Long) r[2], (Long) r[3],
+                                (LocalDateTime) r[4], null);
+                        indexed++;
+                    }
+                } finally {
+                    indexLock.unlock();
+                }
+            } while (rows.size() == REBUILD_BATCH);
+
+            afterId = 0L;
+            do {
+                indexLock.lock();
+                try {
+                    rows = approvalRepository.findSearchRowsAfter(afterId, PageRequest.of(0, REBUILD_BATCH));
+                    for (Object[] r : rows) {
+                        afterId = (Long) r[0];
+                        addRow(KIND_APPROVAL, afterId, null, (String) r[1], (Long) r[2], (Long) r[3],
+                                (LocalDateTime) r[4], (String) r[5]);
+                        indexed++;
+                    }
+                } finally {
+                    indexLock.unlock();
+                }
+            } while (rows.size() == REBUILD_BATCH);
+
+            indexLock.lock();
+            try {
+                // Entries not rewritten above belong to rows that no longer exist
+                writer.deleteDocuments(new BooleanQuery.Builder()
+                        .add(new MatchAllDocsQuery(), BooleanClause.Occur.FILTER)
+                        .add(new TermQuery(new Term("generation", gen)), BooleanClause.Occur.MUST_NOT)
+                        .build());
+                writer.commit();
+                searcherManager.maybeRefresh();
+                upToDate = true;
+            } finally {
+                indexLock.unlock();
+            }
+            System.out.println("Remark search index rebuilt: " + indexed + " entries");
+        } catch (Exception e) {
+            System.err.println("Remark search index rebuild failed: " + e.getMessage());
+        }
+    }
+
+    // Caller holds indexLock
+    private void addRow(String kind, Long id, Long parentId, String text, Long courseFileId, Long departmentId,
+            LocalDateTime createdAt, String stage) throws IOException {
+        if (text == null || text.isBlank()) {
+            writer.deleteDocuments(new Term("uid", uid(kind, id)));
+            return;
+        }
+        writer.updateDocument(new Term("uid", uid(kind, id)),
+                toDocument(kind, id, parentId, text, courseFileId, departmentId, createdAt, stage));
+    }
+
+    private org.apache.lucene.document.Document toDocument(String kind, Long id, Long parentId, String text,
+            Long courseFileId, Long departmentId, LocalDateTime createdAt, String stage) {
+        org.apache.lucene.document.Document doc = new org.apache.lucene.document.Document();
+        doc.add(new StringField("uid", uid(kind, id), Field.Store.NO));
+        doc.add(new StringField("kind", kind, Field.Store.YES));
+        doc.add(new StringField("generation", generation, Field.Store.NO));
+        doc.add(new StoredField("id", id));
+        doc.add(new TextField("text", text, Field.Store.YES));
+        if (parentId != null) {
+            doc.add(new LongPoint("parentId", parentId));
+        }
+        if (courseFileId != null) {
+            doc.add(new LongPoint("courseFileId", courseFileId));
+            doc.add(new StoredField("courseFileIdStored", courseFileId));
+        }
+        if (departmentId != null) {
+            doc.add(new LongPoint("departmentId", departmentId));
+        }
+        if (createdAt != null) {
+            doc.add(new StoredField("createdAt", createdAt.toString()));
+        }
+        if (stage != null) {
+            doc.add(new StoredField("stage", stage));
+        }
+        return doc;
+    }
+
+    private String uid(String kind, Long id) {
+        return kind + ":" + id;
+    }
+}
@@ -0,0 +1,231 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.Document;
+import com.mitmeerut.CFM_Portal.Repository.ContentBlobRepository;
+import com.mitmeerut.CFM_Portal.Repository.DocumentRepository;
+import com.mitmeerut.CFM_Portal.storage.BlobStore;
+import com.mitmeerut.CFM_Portal.storage.IoRateLimiter;
+import com.mitmeerut.CFM_Portal.storage.ShardedLocalBlobStore;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Moves existing content into the configured {@link BlobStore} in the
+ * background, throttled by storage.migration.rate-bytes-per-sec:
+ *
+ * - documents stored before content addressing (file_path only) are hashed
+ * and published under their SHA-256. The row gets its blob_hash first and
+ * keeps file_path until the object is written, so it stays readable
+ * throughout; then file_path is cleared and the old file queued for
+ * deletion. A row left with both (crash, failed write) is finished on the
+ * next run.
+ * - with a backend other than local, blobs still in the local layout
+ * ({base}/blobs/ab/cd/sha) are copied over and removed locally.
+ *
+ * Both passes walk keyset cursors and are safe to rerun; the job runs once
+ * per start-up. It is skipped for a backend that is not persistent
+ * (memory): content moved there would be gone after the next restart.
+ */
+@Service
+public class StorageMigrationService {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final DocumentRepository documentRepository;
+    private final ContentBlobRepository blobRepository;
+    private final ContentBlobService blobService;
+    private final FileCleanupService fileCleanupService;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "storage-migration");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${storage.migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.migration.rate-bytes-per-sec:20971520}")
+    private long rateBytesPerSec;
+
+    @Value("${file.upload.base-path:storage}")
+    private String baseUploadPath;
+
+    private IoRateLimiter limiter;
+
+    public StorageMigrationService(DocumentRepository documentRepository, ContentBlobRepository blobRepository,
+            ContentBlobService blobService, FileCleanupService fileCleanupService, BlobStore blobStore,
+            TransactionTemplate transactionTemplate) {
+        this.documentRepository = documentRepository;
+        this.blobRepository = blobRepository;
+        this.blobService = blobService;
+        this.fileCleanupService = fileCleanupService;
+        this.blobStore = blobStore;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (!blobStore.persistent()) {
+            System.out.println("Storage migration skipped: the " + blobStore.name() + " backend is not persistent");
+            return;
+        }
+        limiter = new IoRateLimiter(rateBytesPerSec);
+        worker.submit(this::run);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    private void run() {
+        try {
+            int documents = migrateDocuments();
+            int blobs = "local".equals(blobStore.name()) ? 0 : migrateLocalBlobs();
+            if (documents > 0 || blobs > 0) {
+                System.out.println("Storage migration to " + blobStore.name() + ": " + documents
+                        + " documents, " + blobs + " blobs");
+            }
+        } catch (Exception e) {
+            System.err.println("Storage migration stopped: " + e.getMessage());
+        }
+    }
+
+    // ==================== LEGACY DOCUMENTS ====================
+
+    private int migrateDocuments() {
+        int migrated = 0;
+        long cursor = 0;
+        List<Document> batch;
+        do {
+            batch = documentRepository.findWithFilePathAfter(cursor, PageRequest.of(0, BATCH_SIZE));
+            for (Document document : batch) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return migrated;
+                }
+                cursor = document.getId();
+                try {
+                    if (migrateDocument(document.getId(), document.getFilePath(), document.getBlobHash())) {
+                        migrated++;
+                    }
+                } catch (Exception e) {
+                    System.err.println("Failed to migrate document " + document.getId() + ": " + e.getMessage());
+                }
+            }
+        } while (batch.size() == BATCH_SIZE);
+        return migrated;
+    }
+
+    private boolean migrateDocument(Long id, String filePath, String blobHash) throws IOException {
+        Path legacy = Paths.get(filePath);
+        if (blobHash == null || !blobStore.exists(blobHash)) {
+            if (!Files.isRegularFile(legacy)) {
+                System.err.println("Skipping document " + id + ": " + filePath + " not found");
+                return false;
+            }
+            ContentBlobService.StagedBlob staged = stage(legacy);
+            if (blobHash == null) {
+                Boolean attached = transactionTemplate.execute(status -> {
+                    if (documentRepository.attachBlob(id, filePath, staged.sha256()) == 0) {
+                        return false;
+                    }
+                    blobService.reference(staged);
+                    return true;
+                });
+                if (!Boolean.TRUE.equals(attached)) {
+                    // Deleted or re-uploaded meanwhile
+                    blobService.discard(staged);
+                    return false;
+                }
+                blobHash = staged.sha256();
+            } else if (!staged.sha256().equals(blobHash)) {
+                // Half-migrated row whose file no longer matches: back to legacy only
+                blobService.discard(staged);
+                String stale = blobHash;
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (documentRepository.detachBlob(id, stale) == 1) {
+                        blobService.release(stale);
+                    }
+                });
+                return false;
+            }
+            try {
+                blobService.publish(staged);
+            } catch (RuntimeException e) {
+                String key = blobHash;
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (documentRepository.detachBlob(id, key) == 1) {
+                        blobService.release(key);
+                    }
+                });
+                throw e;
+            }
+        }
+
+        Boolean detached = transactionTemplate.execute(status -> {
+            if (documentRepository.detachFilePath(id, filePath) == 0) {
+                return false;
+            }
+            fileCleanupService.enqueue(filePath);
+            return true;
+        });
+        return Boolean.TRUE.equals(detached);
+    }
+
+    private ContentBlobService.StagedBlob stage(Path file) throws IOException {
+        try (InputStream in = limiter.throttle(Files.newInputStream(file))) {
+            return blobService.stage(in);
+        }
+    }
+
+    // ==================== LOCAL BLOBS ====================
+
+    // Objects a concurrent reclaim removed just before the copy stay behind in
+    // the new backend without a row; they are only wasted space
+    private int migrateLocalBlobs() throws IOException, InterruptedException {
+        ShardedLocalBlobStore local = new ShardedLocalBlobStore(Paths.get(baseUploadPath, "blobs"));
+        int copied = 0;
+        String cursor = "";
+        List<String> batch;
+        do {
+            batch = blobRepository.findHashesAfter(cursor, PageRequest.of(0, BATCH_SIZE));
+            for (String sha256 : batch) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return copied;
+                }
+                cursor = sha256;
+                if (!local.exists(sha256)) {
+                    continue;
+                }
+                if (!blobStore.exists(sha256)) {
+                    limiter.acquire(local.size(sha256));
+                    blobStore.put(sha256, local.localPath(sha256), true);
+                    copied++;
+                }
+                transactionTemplate.executeWithoutResult(
+                        status -> blobRepository.updateStoragePath(sha256, blobStore.describe(sha256)));
+                local.delete(sha256);
+            }
+        } while (batch.size() == BATCH_SIZE);
+        return copied;
+    }
+}
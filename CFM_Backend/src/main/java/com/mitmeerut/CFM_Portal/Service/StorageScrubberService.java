@@ -0,0 +1,441 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.ContentBlob;
+import com.mitmeerut.CFM_Portal.Model.Document;
+import com.mitmeerut.CFM_Portal.Model.StorageScrubCursor;
+import com.mitmeerut.CFM_Portal.Model.StorageScrubFinding;
+import com.mitmeerut.CFM_Portal.Repository.ContentBlobRepository;
+import com.mitmeerut.CFM_Portal.Repository.DocumentRepository;
+import com.mitmeerut.CFM_Portal.Repository.StorageScrubCursorRepository;
+import com.mitmeerut.CFM_Portal.Repository.StorageScrubFindingRepository;
+import com.mitmeerut.CFM_Portal.storage.BlobStore;
+import com.mitmeerut.CFM_Portal.storage.IoRateLimiter;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Background reconciliation of the document tables with what is actually in
+ * storage. Each run does one batch of three passes, each resuming from a
+ * cursor saved in storage_scrub_cursor:
+ *
+ * - documents: flags Document rows whose content is missing (neither the
+ * BlobStore object nor the legacy file exists);
+ * - objects: walks the BlobStore. Objects with no content_blob row are
+ * quarantined once older than the grace period; the others are re-read and
+ * their SHA-256 and size checked every verify-interval-days;
+ * - legacy-files: walks {base}/teachers (files written before the blob
+ * store) and quarantines those no Document points at.
+ *
+ * Quarantine is {base}/quarantine/{date}/, purged after
+ * quarantine-retention-days. All reads go through one rate limiter
+ * (storage.scrub.rate-bytes-per-sec). Problems are recorded in
+ * storage_scrub_finding rather than repaired.
+ */
+@Service
+public class StorageScrubberService {
+
+    private static final int BATCH_SIZE = 200;
+    private static final int MAX_FINDINGS = 500;
+    // Uploads publish their object just after commit: don't flag them meanwhile
+    private static final long RECENT_UPLOAD_MINUTES = 10;
+
+    private final DocumentRepository documentRepository;
+    private final ContentBlobRepository blobRepository;
+    private final StorageScrubCursorRepository cursorRepository;
+    private final StorageScrubFindingRepository findingRepository;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "storage-scrubber");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${storage.scrub.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.scrub.rate-bytes-per-sec:10485760}")
+    private long rateBytesPerSec;
+
+    @Value("${storage.scrub.orphan-grace-hours:24}")
+    private long orphanGraceHours;
+
+    @Value("${storage.scrub.verify-interval-days:30}")
+    private long verifyIntervalDays;
+
+    @Value("${storage.scrub.quarantine-retention-days:30}")
+    private long quarantineRetentionDays;
+
+    @Value("${file.upload.base-path:storage}")
+    private String baseUploadPath;
+
+    private IoRateLimiter limiter;
+
+    public StorageScrubberService(DocumentRepository documentRepository, ContentBlobRepository blobRepository,
+            StorageScrubCursorRepository cursorRepository, StorageScrubFindingRepository findingRepository,
+            BlobStore blobStore, TransactionTemplate transactionTemplate) {
+        this.documentRepository = documentRepository;
+        this.blobRepository = blobRepository;
+        this.cursorRepository = cursorRepository;
+        this.findingRepository = findingRepository;
+        this.blobStore = blobStore;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Scheduled(fixedDelayString = "${storage.scrub.interval-ms:60000}",
+            initialDelayString = "${storage.scrub.interval-ms:60000}")
+    public void scheduledRun() {
+        if (enabled && running.compareAndSet(false, true)) {
+            worker.execute(this::runSafely);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    public List<StorageScrubCursor> getCursors() {
+        return cursorRepository.findAll();
+    }
+
+    public List<StorageScrubFinding> getOpenFindings() {
+        return findingRepository.findByResolvedAtIsNullOrderByLastSeenAtDesc(PageRequest.of(0, MAX_FINDINGS));
+    }
+
+    private void runSafely() {
+        try {
+            if (limiter == null) {
+                limiter = new IoRateLimiter(rateBytesPerSec);
+            }
+            scrubDocuments();
+            scrubObjects();
+            scrubLegacyFiles();
+            purgeQuarantine();
+        } catch (Exception e) {
+            System.err.println("Storage scrub failed: " + e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // ==================== DOCUMENTS ====================
+
+    private void scrubDocuments() throws IOException {
+        StorageScrubCursor cursor = cursor(StorageScrubCursor.DOCUMENTS);
+        long afterId = cursor.getPosition().isEmpty() ? 0 : Long.parseLong(cursor.getPosition());
+        List<Document> batch = documentRepository.findAfter(afterId, PageRequest.of(0, BATCH_SIZE));
+
+        LocalDateTime recent = LocalDateTime.now().minusMinutes(RECENT_UPLOAD_MINUTES);
+        List<String> healthy = new ArrayList<>();
+        for (Document document : batch) {
+            String subject = "document:" + document.getId();
+            if (document.getUploadedAt() != null && document.getUploadedAt().isAfter(recent)) {
+                continue;
+            }
+            String missing = missingContent(document);
+            if (missing == null) {
+                healthy.add(subject);
+            } else {
+                flag(StorageScrubFinding.DANGLING_DOCUMENT, subject, document.getId(), missing);
+            }
+        }
+        resolve(StorageScrubFinding.DANGLING_DOCUMENT, healthy);
+
+        String last = batch.isEmpty() ? "" : String.valueOf(batch.get(batch.size() - 1).getId());
+        advance(cursor, last, batch.size() < BATCH_SIZE);
+    }
+
+    // What is missing, or null if the document can be served
+    private String missingContent(Document document) throws IOException {
+        if (document.getBlobHash() != null && blobStore.exists(document.getBlobHash())) {
+            return null;
+        }
+        if (document.getFilePath() != null && Files.isRegularFile(Paths.get(document.getFilePath()))) {
+            return null;
+        }
+        if (document.getBlobHash() != null) {
+            return "Object " + blobStore.describe(document.getBlobHash()) + " not found";
+        }
+        return document.getFilePath() != null ? "File " + document.getFilePath() + " not found" : "No content";
+    }
+
+    // ==================== OBJECTS ====================
+
+    private void scrubObjects() throws IOException, InterruptedException {
+        StorageScrubCursor cursor = cursor(StorageScrubCursor.OBJECTS);
+        List<String> keys = blobStore.list(cursor.getPosition().isEmpty() ? null : cursor.getPosition(),
+                BATCH_SIZE);
+        Map<String, ContentBlob> rows = blobRepository.findAllById(keys).stream()
+                .collect(Collectors.toMap(ContentBlob::getSha256, Function.identity()));
+
+        long graceCutoff = System.currentTimeMillis() - orphanGraceHours * 3_600_000L;
+        LocalDateTime verifyCutoff = LocalDateTime.now().minusDays(verifyIntervalDays);
+        List<String> healthy = new ArrayList<>();
+        for (String key : keys) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            ContentBlob row = rows.get(key);
+            if (row == null) {
+                if (blobStore.lastModified(key) < graceCutoff && quarantineObject(key)) {
+                    flag(StorageScrubFinding.ORPHAN_QUARANTINED, key, null,
+                            "Unreferenced object moved to " + quarantineDir().resolve("blobs"));
+                }
+                continue;
+            }
+            // Released blobs are the reclaimer's business
+            if (row.getRefCount() == 0
+                    || row.getVerifiedAt() != null && row.getVerifiedAt().isAfter(verifyCutoff)) {
+                continue;
+            }
+            String mismatch = verify(key, row.getSize());
+            if (mismatch == null) {
+                healthy.add(key);
+                transactionTemplate.executeWithoutResult(
+                        status -> blobRepository.markVerified(key, LocalDateTime.now()));
+            } else {
+                flag(StorageScrubFinding.CORRUPT_OBJECT, key, null, mismatch);
+            }
+        }
+        resolve(StorageScrubFinding.CORRUPT_OBJECT, healthy);
+
+        advance(cursor, keys.isEmpty() ? "" : keys.get(keys.size() - 1), keys.size() < BATCH_SIZE);
+    }
+
+    // Re-reads the object; returns what does not match, or null
+    private String verify(String key, long expectedSize) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        long size;
+        try (InputStream in = new DigestInputStream(limiter.throttle(blobStore.open(key, 0)), digest)) {
+            size = in.transferTo(OutputStream.nullOutputStream());
+        }
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        if (!sha256.equals(key)) {
+            return "Content hashes to " + sha256;
+        }
+        return size == expectedSize ? null : "Size " + size + " instead of " + expectedSize;
+    }
+
+    /**
+     * Moves an unreferenced object to quarantine. An upload of the same
+     * content may have taken a reference meanwhile: the row is checked again
+     * afterwards and the object put back if so.
+     */
+    private boolean quarantineObject(String key) throws IOException, InterruptedException {
+        Path target = quarantineDir().resolve("blobs").resolve(key);
+        Files.createDirectories(target.getParent());
+        Path local = blobStore.localPath(key);
+        if (local != null) {
+            Files.move(local, target, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            limiter.acquire(blobStore.size(key));
+            try (InputStream in = blobStore.open(key, 0)) {
+                Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            blobStore.delete(key);
+        }
+        if (blobRepository.existsById(key)) {
+            blobStore.put(key, target, false);
+            return false;
+        }
+        return true;
+    }
+
+    // ==================== LEGACY FILES ====================
+
+    private void scrubLegacyFiles() throws IOException {
+        StorageScrubCursor cursor = cursor(StorageScrubCursor.LEGACY_FILES);
+        Path root = Paths.get(baseUploadPath, "teachers");
+        List<String> files = Files.isDirectory(root) ? nextFiles(root, cursor.getPosition(), BATCH_SIZE) : List.of();
+
+        // file_path holds the path as the upload wrote it ({base}/teachers/...,
+        // relative or absolute depending on the configured base), so look both
+        // forms up and compare normalized absolute paths
+        Path absoluteRoot = root.toAbsolutePath().normalize();
+        Map<Path, String> byPath = new LinkedHashMap<>();
+        Set<String> forms = new HashSet<>();
+        for (String relative : files) {
+            Path absolute = absoluteRoot.resolve(relative).normalize();
+            byPath.put(absolute, relative);
+            forms.add(root.resolve(relative).toString());
+            forms.add(absolute.toString());
+        }
+        Set<Path> referenced = new HashSet<>();
+        if (!forms.isEmpty()) {
+            for (String filePath : documentRepository.findFilePathsIn(forms)) {
+                referenced.add(Paths.get(filePath).toAbsolutePath().normalize());
+            }
+        }
+
+        long graceCutoff = System.currentTimeMillis() - orphanGraceHours * 3_600_000L;
+        for (Map.Entry<Path, String> file : byPath.entrySet()) {
+            Path path = file.getKey();
+            if (referenced.contains(path) || !Files.isRegularFile(path)
+                    || Files.getLastModifiedTime(path).toMillis() >= graceCutoff) {
+                continue;
+            }
+            Path target = quarantineDir().resolve("teachers").resolve(file.getValue());
+            Files.createDirectories(target.getParent());
+            Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+            flag(StorageScrubFinding.ORPHAN_QUARANTINED, "teachers/" + file.getValue(), null,
+                    "Unreferenced file moved to " + target);
+        }
+
+        advance(cursor, files.isEmpty() ? "" : files.get(files.size() - 1), files.size() < BATCH_SIZE);
+    }
+
+    /**
+     * Up to limit regular files under root after the cursor (a relative path
+     * with '/' separators), depth-first in name order. Directories before the
+     * cursor's branch are not listed at all, so resuming costs one directory
+     * listing per level.
+     */
+    private List<String> nextFiles(Path root, String after, int limit) throws IOException {
+        List<String> files = new ArrayList<>();
+        collect(root, "", after.isEmpty() ? new String[0] : after.split("/"), 0, true, files, limit);
+        return files;
+    }
+
+    // onPath: every directory above this one is on the cursor's branch
+    private void collect(Path dir, String prefix, String[] cursor, int depth, boolean onPath, List<String> files,
+            int limit) throws IOException {
+        List<Path> children;
+        try (Stream<Path> entries = Files.list(dir)) {
+            children = entries.sorted(Comparator.comparing(p -> p.getFileName().toString())).toList();
+        }
+        for (Path child : children) {
+            if (files.size() >= limit) {
+                return;
+            }
+            String name = child.getFileName().toString();
+            boolean childOnPath = false;
+            if (onPath && depth < cursor.length) {
+                int cmp = name.compareTo(cursor[depth]);
+                if (cmp < 0) {
+                    continue;
+                }
+                childOnPath = cmp == 0;
+            }
+            if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                collect(child, prefix + name + "/", cursor, depth + 1, childOnPath, files, limit);
+            } else if (!childOnPath && Files.isRegularFile(child, LinkOption.NOFOLLOW_LINKS)) {
+                files.add(prefix + name);
+            }
+        }
+    }
+
+    // ==================== QUARANTINE ====================
+
+    private Path quarantineDir() {
+        return Paths.get(baseUploadPath, "quarantine", LocalDate.now().toString());
+    }
+
+    // Deletes quarantine days past retention
+    private void purgeQuarantine() throws IOException {
+        Path root = Paths.get(baseUploadPath, "quarantine");
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        LocalDate oldest = LocalDate.now().minusDays(quarantineRetentionDays);
+        List<Path> days;
+        try (Stream<Path> entries = Files.list(root)) {
+            days = entries.filter(p -> p.getFileName().toString().matches("\\d{4}-\\d{2}-\\d{2}"))
+                    .filter(p -> LocalDate.parse(p.getFileName().toString()).isBefore(oldest))
+                    .toList();
+        }
+        for (Path day : days) {
+            try (Stream<Path> tree = Files.walk(day)) {
+                for (Path path : tree.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+            System.out.println("Purged storage quarantine " + day.getFileName());
+        }
+        if (!days.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> findingRepository.resolveSeenBefore(
+                    StorageScrubFinding.ORPHAN_QUARANTINED, oldest.atStartOfDay(), LocalDateTime.now()));
+        }
+    }
+
+    // ==================== STATE ====================
+
+    private StorageScrubCursor cursor(String name) {
+        StorageScrubCursor cursor = cursorRepository.findById(name).orElseGet(() -> {
+            StorageScrubCursor created = new StorageScrubCursor();
+            created.setName(name);
+            return created;
+        });
+        if (cursor.getPosition().isEmpty()) {
+            cursor.setPassStartedAt(LocalDateTime.now());
+        }
+        return cursor;
+    }
+
+    private void advance(StorageScrubCursor cursor, String position, boolean passFinished) {
+        LocalDateTime now = LocalDateTime.now();
+        if (passFinished) {
+            cursor.setPosition("");
+            cursor.setCompletedPasses(cursor.getCompletedPasses() + 1);
+            cursor.setLastPassFinishedAt(now);
+        } else {
+            cursor.setPosition(position);
+        }
+        cursor.setUpdatedAt(now);
+        cursorRepository.save(cursor);
+    }
+
+    private void flag(String kind, String subject, Long documentId, String detail) {
+        LocalDateTime now = LocalDateTime.now();
+        StorageScrubFinding finding = findingRepository.findByKindAndSubject(kind, subject).orElseGet(() -> {
+            StorageScrubFinding created = new StorageScrubFinding();
+            created.setKind(kind);
+            created.setSubject(subject);
+            created.setFirstSeenAt(now);
+            return created;
+        });
+        // Log new and reopened findings only
+        if (finding.getId() == null || finding.getResolvedAt() != null) {
+            System.err.println("Storage scrub: " + kind + " " + subject + ": " + detail);
+        }
+        finding.setDocumentId(documentId);
+        finding.setDetail(detail.length() > 500 ? detail.substring(0, 500) : detail);
+        finding.setLastSeenAt(now);
+        finding.setResolvedAt(null);
+        findingRepository.save(finding);
+    }
+
+    private void resolve(String kind, List<String> subjects) {
+        if (!subjects.isEmpty()) {
+            transactionTemplate.executeWithoutResult(
+                    status -> findingRepository.resolve(kind, subjects, LocalDateTime.now()));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sibling-by-sibling diff of two compiled template trees.
+ *
+ * At each level a new node is matched to an old sibling with the same
+ * title; a node left over is taken as a rename of the unmatched old sibling
+ * in the same position, otherwise it is an addition. Old nodes that match
+ * nothing are removals, which are never propagated: a heading teachers may
+ * already be using is not deleted behind their back.
+ *
+ * The plan lists the new tree in order, each node carrying the title it
+ * had in the old tree (null when added).
+ */
+public final class TemplateDiff {
+
+    public record PlanNode(String oldTitle, String title, List<PlanNode> children) {
+        public PlanNode {
+            children = children != null ? List.copyOf(children) : List.of();
+        }
+    }
+
+    public record Result(List<PlanNode> plan, int added, int renamed, int reordered) {
+        public boolean hasChanges() {
+            return added > 0 || renamed > 0 || reordered > 0;
+        }
+    }
+
+    private int added;
+    private int renamed;
+    private int reordered;
+
+    private TemplateDiff() {
+    }
+
+    public static Result diff(CompiledTemplate before, CompiledTemplate after) {
+        TemplateDiff diff = new TemplateDiff();
+        List<PlanNode> plan = diff.diffLevel(before.headings(), after.headings());
+        return new Result(plan, diff.added, diff.renamed, diff.reordered);
+    }
+
+    private List<PlanNode> diffLevel(List<CompiledTemplate.Node> oldNodes, List<CompiledTemplate.Node> newNodes) {
+        int[] matchOf = new int[newNodes.size()];
+        boolean[] used = new boolean[oldNodes.size()];
+
+        for (int j = 0; j < newNodes.size(); j++) {
+            matchOf[j] = -1;
+            for (int i = 0; i < oldNodes.size(); i++) {
+                if (!used[i] && oldNodes.get(i).title().equals(newNodes.get(j).title())) {
+                    matchOf[j] = i;
+                    used[i] = true;
+                    break;
+                }
+            }
+        }
+        for (int j = 0; j < newNodes.size(); j++) {
+            if (matchOf[j] < 0 && j < oldNodes.size() && !used[j]) {
+                matchOf[j] = j;
+                used[j] = true;
+                renamed++;
+            }
+        }
+
+        List<PlanNode> plan = new ArrayList<>(newNodes.size());
+        int lastOldIndex = -1;
+        boolean outOfOrder = false;
+        for (int j = 0; j < newNodes.size(); j++) {
+            CompiledTemplate.Node node = newNodes.get(j);
+            if (matchOf[j] < 0) {
+                plan.add(added(node));
+                continue;
+            }
+            outOfOrder |= matchOf[j] < lastOldIndex;
+            lastOldIndex = matchOf[j];
+            CompiledTemplate.Node old = oldNodes.get(matchOf[j]);
+            plan.add(new PlanNode(old.title(), node.title(), diffLevel(old.children(), node.children())));
+        }
+        if (outOfOrder) {
+            reordered++;
+        }
+        return plan;
+    }
+
+    private PlanNode added(CompiledTemplate.Node node) {
+        added++;
+        List<PlanNode> children = new ArrayList<>(node.children().size());
+        for (CompiledTemplate.Node child : node.children()) {
+            children.add(added(child));
+        }
+        return new PlanNode(null, node.title(), children);
+    }
+}
@@ -0,0 +1,543 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mitmeerut.CFM_Portal.Model.CourseFile;
+import com.mitmeerut.CFM_Portal.Model.CourseFileChange;
+import com.mitmeerut.CFM_Portal.Model.Heading;
+import com.mitmeerut.CFM_Portal.Model.TemplateEvolutionJob;
+import com.mitmeerut.CFM_Portal.Repository.CourseFileRepository;
+import com.mitmeerut.CFM_Portal.Repository.DocumentRepository;
+import com.mitmeerut.CFM_Portal.Repository.HeadingRepository;
+import com.mitmeerut.CFM_Portal.Repository.TemplateEvolutionJobRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Applies a template edit to the editable course files created from it.
+ *
+ * TemplateServiceImpl.update diffs the old and new compiled trees
+ * ({@link TemplateDiff}) and {@link #schedule}s a job holding the plan. A
+ * single background worker applies jobs in order, a chunk of course files
+ * per transaction:
+ *
+ * - two queries load the headings of the whole chunk and the ids of
+ * headings that hold documents;
+ * - additions are inserted as JDBC batches (pooled heading ids), renames and
+ * order keys are written with batched single-column UPDATEs that only apply
+ * if the row still has the value read, closure rows and change-log entries
+ * are batched too.
+ *
+ * Headings with documents are never renamed or moved (a respace of order keys
+ * keeps their relative position), and headings a teacher removed or renamed
+ * are left alone together with their template subtree. The job
+ * cursor commits with each chunk, so a restart resumes where it stopped.
+ */
+@Service
+public class TemplateEvolutionService {
+
+    private static final int CHUNK_SIZE = 50;
+    private static final int JDBC_BATCH = 500;
+    private static final List<String> EDITABLE = List.of("DRAFT", "RETURNED_BY_SUBJECT_HEAD");
+    private static final List<String> ACTIVE = List.of(TemplateEvolutionJob.PENDING, TemplateEvolutionJob.RUNNING);
+    private static final Comparator<Heading> BY_ORDER = Comparator
+            .comparing(Heading::getOrderIndex, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Heading::getId);
+
+    private final TemplateEvolutionJobRepository jobRepository;
+    private final CourseFileRepository courseFileRepository;
+    private final HeadingRepository headingRepository;
+    private final DocumentRepository documentRepository;
+    private final CourseFileVersionService versionService;
+    private final HeadingOrderRebalancer rebalancer;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "template-evolution");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public TemplateEvolutionService(TemplateEvolutionJobRepository jobRepository,
+            CourseFileRepository courseFileRepository, HeadingRepository headingRepository,
+            DocumentRepository documentRepository, CourseFileVersionService versionService,
+            HeadingOrderRebalancer rebalancer, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper) {
+        this.jobRepository = jobRepository;
+        this.courseFileRepository = courseFileRepository;
+        this.headingRepository = headingRepository;
+        this.documentRepository = documentRepository;
+        this.versionService = versionService;
+        this.rebalancer = rebalancer;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    // ==================== SCHEDULE / STATUS ====================
+
+    /**
+     * Records a job for the change from {@code before} to {@code after}, run
+     * once the caller's transaction commits. Returns null if the heading
+     * trees are equivalent.
+     */
+    public TemplateEvolutionJob schedule(CompiledTemplate before, CompiledTemplate after) {
+        TemplateDiff.Result diff = TemplateDiff.diff(before, after);
+        if (!diff.hasChanges()) {
+            return null;
+        }
+
+        TemplateEvolutionJob job = new TemplateEvolutionJob();
+        job.setTemplateId(after.templateId());
+        job.setFromRevision(before.revision());
+        job.setToRevision(after.revision());
+        try {
+            job.setPlan(objectMapper.writeValueAsString(diff.plan()));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize template diff: " + e.getMessage());
+        }
+        job.setTotalCourseFiles((int) courseFileRepository.countByTemplateIdAndStatusIn(after.templateId(), EDITABLE));
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(job.getCreatedAt());
+        job = jobRepository.save(job);
+
+        Long jobId = job.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    executor.execute(() -> run(jobId));
+                }
+            });
+        } else {
+            executor.execute(() -> run(jobId));
+        }
+        return job;
+    }
+
+    public List<TemplateEvolutionJob> getJobs(Long templateId) {
+        return jobRepository.findByTemplateIdOrderByCreatedAtDesc(templateId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        try {
+            int linked = courseFileRepository.backfillTemplateIds();
+            if (linked > 0) {
+                System.out.println("Linked " + linked + " course files to their department template");
+            }
+        } catch (Exception e) {
+            System.err.println("Course file template backfill failed: " + e.getMessage());
+        }
+        for (TemplateEvolutionJob job : jobRepository.findByStatusInOrderByIdAsc(ACTIVE)) {
+            System.out.println("Resuming template evolution job " + job.getId() + " after course file "
+                    + job.getLastCourseFileId());
+            Long jobId = job.getId();
+            executor.execute(() -> run(jobId));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ==================== WORKER ====================
+
+    private void run(Long jobId) {
+        try {
+            TemplateEvolutionJob job = jobRepository.findById(jobId).orElse(null);
+            if (job == null || !ACTIVE.contains(job.getStatus())) {
+                return;
+            }
+            job.setStatus(TemplateEvolutionJob.RUNNING);
+            job.setUpdatedAt(LocalDateTime.now());
+            jobRepository.save(job);
+
+            List<TemplateDiff.PlanNode> plan = objectMapper.readValue(job.getPlan(),
+                    new TypeReference<List<TemplateDiff.PlanNode>>() {
+                    });
+
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Long> courseFileIds = courseFileRepository.findIdsByTemplateAfter(job.getTemplateId(), EDITABLE,
+                        job.getLastCourseFileId(), PageRequest.of(0, CHUNK_SIZE));
+                if (courseFileIds.isEmpty()) {
+                    break;
+                }
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        applyChunk(job, plan, courseFileIds);
+                        checkpoint(job, courseFileIds.get(courseFileIds.size() - 1));
+                    });
+                } catch (Exception chunkFailure) {
+                    // Counters were changed by the rolled-back attempt: reload and go one by one
+                    copyProgress(jobRepository.findById(jobId).orElseThrow(), job);
+                    for (Long courseFileId : courseFileIds) {
+                        applyAlone(job, plan, courseFileId);
+                    }
+                }
+            }
+
+            if (!Thread.currentThread().isInterrupted()) {
+                job.setStatus(TemplateEvolutionJob.COMPLETED);
+                job.setFinishedAt(LocalDateTime.now());
+            }
+            job.setUpdatedAt(LocalDateTime.now());
+            jobRepository.save(job);
+        } catch (Exception e) {
+            System.err.println("Template evolution job " + jobId + " failed: " + e.getMessage());
+            jobRepository.findById(jobId).ifPresent(job -> {
+                job.setStatus(TemplateEvolutionJob.FAILED);
+                job.setLastError(truncate(e.getMessage()));
+                job.setFinishedAt(LocalDateTime.now());
+                job.setUpdatedAt(LocalDateTime.now());
+                jobRepository.save(job);
+            });
+        }
+    }
+
+    private void applyAlone(TemplateEvolutionJob job, List<TemplateDiff.PlanNode> plan, Long courseFileId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                applyChunk(job, plan, List.of(courseFileId));
+                checkpoint(job, courseFileId);
+            });
+        } catch (Exception e) {
+            copyProgress(jobRepository.findById(job.getId()).orElseThrow(), job);
+            job.setProcessedCount(job.getProcessedCount() + 1);
+            job.setFailedCount(job.getFailedCount() + 1);
+            job.setLastError(truncate("Course file " + courseFileId + ": " + e.getMessage()));
+            checkpoint(job, courseFileId);
+        }
+    }
+
+    private void applyChunk(TemplateEvolutionJob job, List<TemplateDiff.PlanNode> plan, List<Long> courseFileIds) {
+        Map<Long, List<Heading>> headingsByCourseFile = new HashMap<>();
+        for (Heading heading : headingRepository.findByCourseFileIdIn(courseFileIds)) {
+            headingsByCourseFile.computeIfAbsent(heading.getCourseFile().getId(), id -> new ArrayList<>())
+                    .add(heading);
+        }
+        Set<Long> withDocuments = new HashSet<>(documentRepository.findHeadingIdsWithDocuments(courseFileIds));
+
+        List<CourseFileEdit> edits = new ArrayList<>();
+        List<Heading> inserted = new ArrayList<>();
+        List<Object[]> renames = new ArrayList<>();
+        List<Object[]> orderUpdates = new ArrayList<>();
+        for (Long courseFileId : courseFileIds) {
+            CourseFileEdit edit = new CourseFileEdit(courseFileId,
+                    headingsByCourseFile.getOrDefault(courseFileId, List.of()), withDocuments);
+            edit.applyLevel(null, null, plan);
+            edits.add(edit);
+            inserted.addAll(edit.inserted);
+            // With the values read, so the UPDATE only applies if the teacher has not changed them
+            edit.renames.forEach((id, title) -> renames.add(
+                    new Object[] { title, id, edit.byId.get(id).getTitle() }));
+            edit.orderUpdates.forEach((id, key) -> orderUpdates.add(
+                    new Object[] { key, id, edit.byId.get(id).getOrderIndex() }));
+        }
+
+        if (!inserted.isEmpty()) {
+            headingRepository.saveAll(inserted);
+            headingRepository.flush();
+            insertClosureRows(inserted);
+        }
+        int renameMisses = misses(jdbcTemplate.batchUpdate(
+                "UPDATE heading SET title = ? WHERE id = ? AND title = ?", renames, JDBC_BATCH,
+                (ps, row) -> {
+                    ps.setString(1, (String) row[0]);
+                    ps.setLong(2, (Long) row[1]);
+                    ps.setString(3, (String) row[2]);
+                }));
+        int orderMisses = misses(jdbcTemplate.batchUpdate(
+                "UPDATE heading SET order_index = ? WHERE id = ? AND order_index <=> ?", orderUpdates, JDBC_BATCH,
+                (ps, row) -> {
+                    ps.setInt(1, (Integer) row[0]);
+                    ps.setLong(2, (Long) row[1]);
+                    ps.setObject(3, row[2], Types.INTEGER);
+                }));
+        // Changed by the teacher since they were read: left as the teacher has them
+        job.setHeadingsRenamed(job.getHeadingsRenamed() - renameMisses);
+        job.setHeadingsSkipped(job.getHeadingsSkipped() + renameMisses + orderMisses);
+
+        for (CourseFileEdit edit : edits) {
+            List<Long> touched = edit.touchedIds();
+            if (!touched.isEmpty()) {
+                versionService.recordChanges(edit.courseFileId, CourseFileChange.HEADING, touched,
+                        CourseFileChange.UPSERT);
+                job.setUpdatedCount(job.getUpdatedCount() + 1);
+            }
+            job.setHeadingsAdded(job.getHeadingsAdded() + edit.inserted.size());
+            job.setHeadingsRenamed(job.getHeadingsRenamed() + edit.renames.size());
+            job.setHeadingsReordered(job.getHeadingsReordered() + edit.reordered);
+            job.setHeadingsSkipped(job.getHeadingsSkipped() + edit.skipped);
+            job.setProcessedCount(job.getProcessedCount() + 1);
+        }
+    }
+
+    private int misses(int[][] counts) {
+        int misses = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == 0) {
+                    misses++;
+                }
+            }
+        }
+        return misses;
+    }
+
+    private void insertClosureRows(List<Heading> inserted) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Heading heading : inserted) {
+            rows.add(new Object[] { heading.getId(), heading.getId(), 0 });
+            int depth = 1;
+            for (Heading p = heading.getParentHeading(); p != null; p = p.getParentHeading()) {
+                rows.add(new Object[] { p.getId(), heading.getId(), depth++ });
+            }
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO heading_closure (ancestor_id, descendant_id, depth) VALUES (?, ?, ?)",
+                rows, JDBC_BATCH, (ps, row) -> {
+                    ps.setLong(1, (Long) row[0]);
+                    ps.setLong(2, (Long) row[1]);
+                    ps.setInt(3, (Integer) row[2]);
+                });
+    }
+
+    private void checkpoint(TemplateEvolutionJob job, Long lastCourseFileId) {
+        job.setLastCourseFileId(lastCourseFileId);
+        job.setUpdatedAt(LocalDateTime.now());
+        jobRepository.save(job);
+    }
+
+    private void copyProgress(TemplateEvolutionJob from, TemplateEvolutionJob to) {
+        to.setProcessedCount(from.getProcessedCount());
+        to.setUpdatedCount(from.getUpdatedCount());
+        to.setFailedCount(from.getFailedCount());
+        to.setHeadingsAdded(from.getHeadingsAdded());
+        to.setHeadingsRenamed(from.getHeadingsRenamed());
+        to.setHeadingsReordered(from.getHeadingsReordered());
+        to.setHeadingsSkipped(from.getHeadingsSkipped());
+        to.setLastCourseFileId(from.getLastCourseFileId());
+    }
+
+    private String truncate(String s) {
+        if (s == null) {
+            return null;
+        }
+        return s.length() > 500 ? s.substring(0, 500) : s;
+    }
+
+    // ==================== PER COURSE FILE ====================
+
+    /**
+     * Works out the edits for one course file without touching its managed
+     * headings: existing rows are changed only through the batched UPDATEs,
+     * each conditional on the title or order key read here, so a concurrent
+     * move or edit by the teacher is not overwritten (it counts as skipped).
+     */
+    private final class CourseFileEdit {
+        final Long courseFileId;
+        final CourseFile courseFile;
+        final Set<Long> withDocuments;
+        final Map<Long, List<Heading>> children = new HashMap<>();
+        final Map<Long, Heading> byId = new HashMap<>();
+        // Current order key of every sibling seen, existing or new
+        final Map<Heading, Integer> keys = new IdentityHashMap<>();
+        final Map<Long, String> renames = new LinkedHashMap<>();
+        final Map<Long, Integer> orderUpdates = new LinkedHashMap<>();
+        final List<Heading> inserted = new ArrayList<>();
+        int reordered;
+        int skipped;
+
+        CourseFileEdit(Long courseFileId, List<Heading> headings, Set<Long> withDocuments) {
+            this.courseFileId = courseFileId;
+            this.courseFile = courseFileRepository.getReferenceById(courseFileId);
+            this.withDocuments = withDocuments;
+            for (Heading heading : headings) {
+                byId.put(heading.getId(), heading);
+                Long parentId = heading.getParentHeading() != null ? heading.getParentHeading().getId() : null;
+                children.computeIfAbsent(parentId, id -> new ArrayList<>()).add(heading);
+            }
+        }
+
+        void applyLevel(Long parentId, Heading parent, List<TemplateDiff.PlanNode> nodes) {
+            List<Heading> siblings = new ArrayList<>(children.getOrDefault(parentId, List.of()));
+            siblings.sort(BY_ORDER);
+            boolean unkeyed = false;
+            for (Heading sibling : siblings) {
+                keys.put(sibling, sibling.getOrderIndex());
+                unkeyed |= sibling.getOrderIndex() == null;
+            }
+            if (unkeyed) {
+                respace(siblings);
+            }
+
+            // 1. match existing headings, rename, recurse
+            Set<Heading> claimed = Collections.newSetFromMap(new IdentityHashMap<>());
+            Heading[] placed = new Heading[nodes.size()];
+            for (int k = 0; k < nodes.size(); k++) {
+                TemplateDiff.PlanNode node = nodes.get(k);
+                Heading match = node.oldTitle() != null ? claim(siblings, claimed, node.oldTitle()) : null;
+                if (match == null) {
+                    // Also covers a heading the teacher already added or renamed by hand
+                    match = claim(siblings, claimed, node.title());
+                }
+                if (match == null) {
+                    if (node.oldTitle() != null) {
+                        skipped += size(node);
+                    }
+                    continue;
+                }
+                placed[k] = match;
+                if (!match.getTitle().equals(node.title())) {
+                    if (withDocuments.contains(match.getId())) {
+                        skipped++;
+                    } else {
+                        renames.put(match.getId(), node.title());
+                    }
+                }
+                applyLevel(match.getId(), match, node.children());
+            }
+
+            // 2. reorder: template headings without documents swap order keys
+            // among themselves, so teacher-added and pinned headings keep their place
+            List<Heading> movable = new ArrayList<>();
+            for (Heading heading : placed) {
+                if (heading != null && !withDocuments.contains(heading.getId())) {
+                    movable.add(heading);
+                }
+            }
+            List<Integer> slots = new ArrayList<>();
+            for (Heading heading : movable) {
+                slots.add(keys.get(heading));
+            }
+            Collections.sort(slots);
+            for (int i = 0; i < movable.size(); i++) {
+                if (!slots.get(i).equals(keys.get(movable.get(i)))) {
+                    setKey(movable.get(i), slots.get(i));
+                    reordered++;
+                }
+            }
+            siblings.sort(Comparator.comparing(keys::get));
+
+            // 3. additions, each right after the template sibling before it
+            for (int k = 0; k < nodes.size(); k++) {
+                TemplateDiff.PlanNode node = nodes.get(k);
+                if (placed[k] != null || node.oldTitle() != null) {
+                    continue;
+                }
+                int lower = 0;
+                for (int j = k - 1; j >= 0; j--) {
+                    if (placed[j] != null) {
+                        lower = keys.get(placed[j]);
+                        break;
+                    }
+                }
+                Integer upper = null;
+                int position = siblings.size();
+                for (int i = 0; i < siblings.size(); i++) {
+                    if (keys.get(siblings.get(i)) > lower) {
+                        upper = keys.get(siblings.get(i));
+                        position = i;
+                        break;
+                    }
+                }
+
+                Heading heading = insert(parent, node);
+                placed[k] = heading;
+                siblings.add(position, heading);
+                if (upper == null) {
+                    setKey(heading, lower + HeadingOrderRebalancer.ORDER_GAP);
+                } else if (upper - lower >= 2) {
+                    setKey(heading, lower + (upper - lower) / 2);
+                    if (upper - lower < HeadingOrderRebalancer.MIN_GAP) {
+                        rebalancer.requestRebalance(courseFileId, parentId);
+                    }
+                } else {
+                    respace(siblings);
+                }
+            }
+        }
+
+        private Heading insert(Heading parent, TemplateDiff.PlanNode node) {
+            Heading heading = newHeading(parent, node.title());
+            int order = 1;
+            for (TemplateDiff.PlanNode child : node.children()) {
+                insert(heading, child).setOrderIndex(order++ * HeadingOrderRebalancer.ORDER_GAP);
+            }
+            return heading;
+        }
+
+        private Heading newHeading(Heading parent, String title) {
+            Heading heading = new Heading();
+            heading.setCourseFile(courseFile);
+            heading.setParentHeading(parent);
+            heading.setTitle(title);
+            heading.setCreatedAt(LocalDateTime.now());
+            inserted.add(heading);
+            return heading;
+        }
+
+        private Heading claim(List<Heading> siblings, Set<Heading> claimed, String title) {
+            for (Heading sibling : siblings) {
+                if (!claimed.contains(sibling) && title.equals(sibling.getTitle())) {
+                    claimed.add(sibling);
+                    return sibling;
+                }
+            }
+            return null;
+        }
+
+        private void respace(List<Heading> siblings) {
+            int order = 1;
+            for (Heading sibling : siblings) {
+                Integer key = order++ * HeadingOrderRebalancer.ORDER_GAP;
+                if (!key.equals(keys.get(sibling))) {
+                    setKey(sibling, key);
+                }
+            }
+        }
+
+        private void setKey(Heading heading, Integer key) {
+            keys.put(heading, key);
+            if (heading.getId() != null) {
+                orderUpdates.put(heading.getId(), key);
+            } else {
+                heading.setOrderIndex(key);
+            }
+        }
+
+        private int size(TemplateDiff.PlanNode node) {
+            int size = 1;
+            for (TemplateDiff.PlanNode child : node.children()) {
+                size += size(child);
+            }
+            return size;
+        }
+
+        List<Long> touchedIds() {
+            Set<Long> ids = new LinkedHashSet<>(renames.keySet());
+            ids.addAll(orderUpdates.keySet());
+            for (Heading heading : inserted) {
+                ids.add(heading.getId());
+            }
+            return new ArrayList<>(ids);
+        }
+    }
+}
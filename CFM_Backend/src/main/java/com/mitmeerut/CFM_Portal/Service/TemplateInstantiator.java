@@ -0,0 +1,92 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.CourseFile;
+import com.mitmeerut.CFM_Portal.Model.CourseFileChange;
+import com.mitmeerut.CFM_Portal.Model.Heading;
+import com.mitmeerut.CFM_Portal.Model.Template;
+import com.mitmeerut.CFM_Portal.Repository.HeadingRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the full nested heading tree of a template under a course file.
+ *
+ * The template is read in its compiled form (see CompiledTemplateCache).
+ * Headings take their ids from a pooled sequence, so Hibernate sends them as
+ * JDBC batches; closure rows and change-log entries go as JDBC batches too.
+ * A 200-node template costs a handful of round trips instead of 200+.
+ * An invalid structure fails the whole creation.
+ */
+@Service
+@Transactional
+public class TemplateInstantiator {
+
+    private static final int JDBC_BATCH = 500;
+
+    private final HeadingRepository headingRepo;
+    private final CourseFileVersionService versionService;
+    private final JdbcTemplate jdbcTemplate;
+    private final CompiledTemplateCache templateCache;
+
+    public TemplateInstantiator(HeadingRepository headingRepo, CourseFileVersionService versionService,
+            JdbcTemplate jdbcTemplate, CompiledTemplateCache templateCache) {
+        this.headingRepo = headingRepo;
+        this.versionService = versionService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.templateCache = templateCache;
+    }
+
+    /**
+     * Returns the number of headings created
+     */
+    public int instantiate(CourseFile courseFile, Template template) {
+        CompiledTemplate compiled = templateCache.get(template);
+
+        // Pre-order, so every parent is persisted (and batched) before its children
+        List<Heading> created = new ArrayList<>(compiled.nodeCount());
+        List<Object[]> closureRows = new ArrayList<>();
+        addLevel(compiled.headings(), courseFile, null, LocalDateTime.now(), created);
+
+        headingRepo.saveAll(created);
+        headingRepo.flush();
+
+        for (Heading heading : created) {
+            closureRows.add(new Object[] { heading.getId(), heading.getId(), 0 });
+            int depth = 1;
+            for (Heading p = heading.getParentHeading(); p != null; p = p.getParentHeading()) {
+                closureRows.add(new Object[] { p.getId(), heading.getId(), depth++ });
+            }
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO heading_closure (ancestor_id, descendant_id, depth) VALUES (?, ?, ?)",
+                closureRows, JDBC_BATCH, (ps, row) -> {
+                    ps.setLong(1, (Long) row[0]);
+                    ps.setLong(2, (Long) row[1]);
+                    ps.setInt(3, (Integer) row[2]);
+                });
+
+        versionService.recordChanges(courseFile.getId(), CourseFileChange.HEADING,
+                created.stream().map(Heading::getId).toList(), CourseFileChange.UPSERT);
+        return created.size();
+    }
+
+    private void addLevel(List<CompiledTemplate.Node> nodes, CourseFile courseFile, Heading parent,
+            LocalDateTime now, List<Heading> out) {
+        int order = 1;
+        for (CompiledTemplate.Node node : nodes) {
+            Heading heading = new Heading();
+            heading.setCourseFile(courseFile);
+            heading.setParentHeading(parent);
+            heading.setTitle(node.title());
+            heading.setOrderIndex(order++ * HeadingOrderRebalancer.ORDER_GAP);
+            heading.setCreatedAt(now);
+            out.add(heading);
+            addLevel(node.children(), courseFile, heading, now, out);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.mitmeerut.CFM_Portal.Service;
 
 import com.mitmeerut.CFM_Portal.Model.Template;
+import com.mitmeerut.CFM_Portal.Model.TemplateEvolutionJob;
 import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
 
 import java.util.List;
@@ -15,4 +16,10 @@ public interface TemplateService {
 
     void delete(Long id, CustomUserDetails user);
     Template getDepartmentTemplate(Long departmentId);
+
+    // Parsed heading tree and checklist, served from the compiled template cache
+    CompiledTemplate getCompiled(Long id);
+
+    // Propagation jobs started by edits of this template, newest first
+    List<TemplateEvolutionJob> getEvolutionJobs(Long id, CustomUserDetails user);
 }
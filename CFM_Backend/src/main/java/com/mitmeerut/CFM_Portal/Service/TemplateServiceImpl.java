@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mitmeerut.CFM_Portal.Model.Department;
 import com.mitmeerut.CFM_Portal.Model.Teacher;
 import com.mitmeerut.CFM_Portal.Model.Template;
+import com.mitmeerut.CFM_Portal.Model.TemplateEvolutionJob;
 import com.mitmeerut.CFM_Portal.Model.User;
 import com.mitmeerut.CFM_Portal.Repository.TemplateRepository;
 import com.mitmeerut.CFM_Portal.security.user.CustomUserDetails;
@@ -19,9 +20,14 @@ public class TemplateServiceImpl implements TemplateService {
 
     private final TemplateRepository repo;
     private final ObjectMapper mapper = new ObjectMapper();
+    private final CompiledTemplateCache templateCache;
+    private final TemplateEvolutionService evolutionService;
 
-    public TemplateServiceImpl(TemplateRepository repo) {
+    public TemplateServiceImpl(TemplateRepository repo, CompiledTemplateCache templateCache,
+            TemplateEvolutionService evolutionService) {
         this.repo = repo;
+        this.templateCache = templateCache;
+        this.evolutionService = evolutionService;
     }
 
     @Override
@@ -55,6 +61,10 @@ public class TemplateServiceImpl implements TemplateService {
         template.setDepartmentId(departmentId);
         template.setCreatedBy(user.getUserId());
         template.setCreatedAt(LocalDateTime.now());
+        template.setRevision(0L);
+
+        // Reject invalid structure/checklist up front rather than at course file creation
+        templateCache.compile(template);
 
         return repo.save(template);
     }
@@ -79,12 +89,29 @@ public class TemplateServiceImpl implements TemplateService {
             throw new RuntimeException("Unauthorized");
         }
 
+        CompiledTemplate before;
+        try {
+            before = templateCache.get(existing);
+        } catch (RuntimeException e) {
+            // Legacy template with an invalid structure: nothing to diff against
+            before = null;
+        }
+
         existing.setName(template.getName());
         existing.setDescription(template.getDescription());
         existing.setStructure(template.getStructure());
         existing.setChecklist(template.getChecklist());
+        existing.setRevision((existing.getRevision() != null ? existing.getRevision() : 0L) + 1);
+        CompiledTemplate after = templateCache.compile(existing);
 
-        return repo.save(existing);
+        Template saved = repo.save(existing);
+        templateCache.evict(id);
+
+        // Carry heading additions, renames and reorders into existing draft course files
+        if (before != null) {
+            evolutionService.schedule(before, after);
+        }
+        return saved;
     }
 
     @Override
@@ -100,6 +127,14 @@ public class TemplateServiceImpl implements TemplateService {
         }
 
         repo.delete(template);
+        templateCache.evict(id);
+    }
+
+    @Override
+    public CompiledTemplate getCompiled(Long id) {
+        Template template = repo.findById(id)
+                .orElseThrow(() -> new RuntimeException("Template not found"));
+        return templateCache.get(template);
     }
 
     @Override
@@ -109,4 +144,14 @@ public class TemplateServiceImpl implements TemplateService {
                 .orElseThrow(() -> new RuntimeException("Template not found for department"));
     }
 
+    @Override
+    public List<TemplateEvolutionJob> getEvolutionJobs(Long id, CustomUserDetails user) {
+        Template template = repo.findById(id)
+                .orElseThrow(() -> new RuntimeException("Template not found"));
+        if (user.getRole() != User.userRole.ADMIN && !template.getDepartmentId().equals(user.getDepartmentId())) {
+            throw new RuntimeException("Unauthorized");
+        }
+        return evolutionService.getJobs(id);
+    }
+
 }
@@ -0,0 +1,32 @@
+package com.mitmeerut.CFM_Portal.config;
+
+import com.mitmeerut.CFM_Portal.storage.BlobStore;
+import com.mitmeerut.CFM_Portal.storage.InMemoryBlobStore;
+import com.mitmeerut.CFM_Portal.storage.LocalS3BlobStore;
+import com.mitmeerut.CFM_Portal.storage.ShardedLocalBlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * Document storage backend, chosen with storage.blobs.backend:
+ * local (default, {base}/blobs/ab/cd/key), memory (tests, benchmarks) or
+ * s3-local (S3-style bucket under {base}/s3).
+ */
+@Configuration
+public class BlobStoreConfig {
+
+    @Bean
+    public BlobStore blobStore(@Value("${storage.blobs.backend:local}") String backend,
+            @Value("${file.upload.base-path:storage}") String basePath,
+            @Value("${storage.blobs.s3-local.bucket:cfm-documents}") String bucket) {
+        return switch (backend) {
+            case "local" -> new ShardedLocalBlobStore(Paths.get(basePath, "blobs"));
+            case "memory" -> new InMemoryBlobStore();
+            case "s3-local" -> new LocalS3BlobStore(Paths.get(basePath, "s3"), bucket);
+            default -> throw new IllegalStateException("Unknown storage.blobs.backend: " + backend);
+        };
+    }
+}
@@ -21,7 +21,8 @@ public class CorsConfig {
                 "GET", "POST", "PUT", "DELETE", "OPTIONS"
         ));
         config.setAllowedHeaders(List.of("*"));
-        config.setExposedHeaders(List.of("Authorization"));
+        config.setExposedHeaders(List.of("Authorization", "ETag", "Last-Modified", "Accept-Ranges",
+                "Content-Range", "Content-Disposition", "Content-Length"));
         config.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source =
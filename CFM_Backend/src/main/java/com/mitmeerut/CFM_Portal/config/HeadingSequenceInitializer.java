@@ -0,0 +1,37 @@
+package com.mitmeerut.CFM_Portal.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Heading ids come from the pooled heading_seq table (so inserts can be
+ * JDBC-batched) instead of AUTO_INCREMENT. On databases that already have
+ * headings, moves the sequence past the existing ids before the first insert.
+ */
+// After the EntityManagerFactory, which creates heading_seq on schema update
+@Component
+@DependsOn("entityManagerFactory")
+public class HeadingSequenceInitializer {
+
+    // Must match allocationSize on Heading.id
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public HeadingSequenceInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void alignWithExistingIds() {
+        int updated = jdbcTemplate.update("""
+                UPDATE heading_seq
+                SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 1 + ? FROM heading))
+                """, ALLOCATION_SIZE);
+        if (updated == 0) {
+            System.err.println("heading_seq is empty; heading ids may collide with existing rows");
+        }
+    }
+}
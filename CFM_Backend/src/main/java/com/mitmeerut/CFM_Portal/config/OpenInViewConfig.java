@@ -0,0 +1,41 @@
+package com.mitmeerut.CFM_Portal.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Open-in-view for every request except the ones that stream files.
+ *
+ * With open-in-view the first query of a request checks out a connection
+ * that is held until the response is written. The endpoints below read
+ * their rows in short transactions and then spend seconds to minutes on
+ * file I/O, so they run without it and only hold a connection per query.
+ * Everything else keeps lazy loading in controllers as before
+ * (spring.jpa.open-in-view is off so Boot does not register its own).
+ */
+@Configuration
+public class OpenInViewConfig implements WebMvcConfigurer {
+
+    private static final String[] STREAMING_PATHS = {
+            "/api/teacher/documents/upload",
+            "/api/teacher/documents/uploads/**",
+            "/api/review/course-file/*/export.zip",
+            "/api/hod/exports/*/parts/*"
+    };
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public OpenInViewConfig(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        OpenEntityManagerInViewInterceptor interceptor = new OpenEntityManagerInViewInterceptor();
+        interceptor.setEntityManagerFactory(entityManagerFactory);
+        registry.addWebRequestInterceptor(interceptor).excludePathPatterns(STREAMING_PATHS);
+    }
+}
@@ -0,0 +1,12 @@
+package com.mitmeerut.CFM_Portal.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background work (search index commits, cleanup workers)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
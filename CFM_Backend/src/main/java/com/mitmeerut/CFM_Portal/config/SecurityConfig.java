@@ -2,6 +2,7 @@ package com.mitmeerut.CFM_Portal.config;
 
 import com.mitmeerut.CFM_Portal.security.jwt.JwtAuthFilter;
 import com.mitmeerut.CFM_Portal.security.jwt.JwtAuthenticationEntryPoint;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -47,9 +48,13 @@ public class SecurityConfig {
 
                                 // authorization rules
                                 .authorizeHttpRequests(auth -> auth
+                                                // async re-dispatches of an already authorized stream (SSE)
+                                                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                                                 .requestMatchers("/api/auth/**", "/api/public/**", "/error").permitAll()
 
                                                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
+                                                .requestMatchers("/actuator/health").permitAll()
+                                                .requestMatchers("/actuator/**").hasRole("ADMIN")
                                                 .requestMatchers("/api/hod/courses/**").hasAnyRole("HOD", "TEACHER")
                                                 .requestMatchers("/api/hod/**").hasRole("HOD")
                                                 .requestMatchers("/api/subject-head/**")
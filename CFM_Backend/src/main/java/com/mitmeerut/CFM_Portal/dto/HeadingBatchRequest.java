@@ -0,0 +1,11 @@
+package com.mitmeerut.CFM_Portal.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class HeadingBatchRequest {
+    private Long courseFileId;
+    private List<HeadingMoveOperation> operations;
+}
@@ -0,0 +1,14 @@
+package com.mitmeerut.CFM_Portal.dto;
+
+import lombok.Data;
+
+/**
+ * One step of a batch reorder/move: put the heading under parentHeadingId
+ * (null = root) right after afterHeadingId (null = first among its siblings).
+ */
+@Data
+public class HeadingMoveOperation {
+    private Long headingId;
+    private Long parentHeadingId;
+    private Long afterHeadingId;
+}
@@ -48,11 +48,9 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             return;
         }
 
-        String header = request.getHeader("Authorization");
-
-        if (header != null && header.startsWith("Bearer ")) {
+        String token = resolveToken(request);
 
-            String token = header.substring(7);
+        if (token != null) {
 
             if (tokenProvider.validateToken(token)
                     && SecurityContextHolder.getContext().getAuthentication() == null) {
@@ -81,4 +79,20 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    // EventSource cannot set headers, so SSE streams may pass the JWT as
+    // ?access_token=. It is checked once here when the stream connects.
+    private String resolveToken(HttpServletRequest request) {
+        String header = request.getHeader("Authorization");
+        if (header != null && header.startsWith("Bearer ")) {
+            return header.substring(7);
+        }
+        if (request.getServletPath().endsWith("/stream")) {
+            String token = request.getParameter("access_token");
+            if (token != null && !token.isBlank()) {
+                return token;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,62 @@
+package com.mitmeerut.CFM_Portal.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Storage backend for document content: immutable objects addressed by an
+ * opaque key (the blob's SHA-256 for documents).
+ *
+ * Implementations must make {@link #put} atomic (an object is either absent
+ * or complete) and idempotent, and {@link #delete} must succeed for a key
+ * that does not exist. Selected with storage.blobs.backend.
+ */
+public interface BlobStore {
+
+    // Backend name as configured: local, memory or s3-local
+    String name();
+
+    // false if objects do not survive a restart; nothing is moved into such a store
+    default boolean persistent() {
+        return true;
+    }
+
+    /**
+     * Stores the file under the key. With keepSource the file is left in
+     * place (linked or copied), otherwise it may be moved.
+     */
+    void put(String key, Path source, boolean keepSource) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    // Size in bytes; NoSuchFileException if the object does not exist
+    long size(String key) throws IOException;
+
+    // Last modification time in epoch milliseconds; NoSuchFileException if absent
+    long lastModified(String key) throws IOException;
+
+    // Content from byte offset to the end
+    InputStream open(String key, long offset) throws IOException;
+
+    /**
+     * The object as a file on local disk, for zero-copy serving, or null if
+     * the backend has no such file.
+     */
+    default Path localPath(String key) {
+        return null;
+    }
+
+    // true if an object was removed
+    boolean delete(String key) throws IOException;
+
+    /**
+     * Up to limit keys greater than afterKey (null = from the start), in
+     * ascending order; lets a scan resume from a saved cursor.
+     */
+    List<String> list(String afterKey, int limit) throws IOException;
+
+    // Where the object lives, for logs and the content_blob row
+    String describe(String key);
+}
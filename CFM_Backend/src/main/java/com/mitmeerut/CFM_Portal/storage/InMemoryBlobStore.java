@@ -0,0 +1,93 @@
+package com.mitmeerut.CFM_Portal.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Objects held on the heap, for tests and benchmarks. Content is lost on
+ * restart, so it is never a production backend.
+ */
+public class InMemoryBlobStore implements BlobStore {
+
+    private record StoredObject(byte[] content, long lastModified) {
+    }
+
+    private final ConcurrentSkipListMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+
+    @Override
+    public String name() {
+        return "memory";
+    }
+
+    @Override
+    public boolean persistent() {
+        return false;
+    }
+
+    @Override
+    public void put(String key, Path source, boolean keepSource) throws IOException {
+        objects.put(key, new StoredObject(Files.readAllBytes(source), System.currentTimeMillis()));
+        if (!keepSource) {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return objects.containsKey(key);
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return get(key).content().length;
+    }
+
+    @Override
+    public long lastModified(String key) throws IOException {
+        return get(key).lastModified();
+    }
+
+    @Override
+    public InputStream open(String key, long offset) throws IOException {
+        byte[] content = get(key).content();
+        int start = (int) Math.min(offset, content.length);
+        return new ByteArrayInputStream(content, start, content.length - start);
+    }
+
+    @Override
+    public boolean delete(String key) {
+        return objects.remove(key) != null;
+    }
+
+    @Override
+    public List<String> list(String afterKey, int limit) {
+        List<String> keys = new ArrayList<>();
+        for (String key : afterKey == null ? objects.keySet() : objects.tailMap(afterKey, false).keySet()) {
+            if (keys.size() >= limit) {
+                break;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    @Override
+    public String describe(String key) {
+        return "memory:" + key;
+    }
+
+    private StoredObject get(String key) throws NoSuchFileException {
+        StoredObject object = objects.get(key);
+        if (object == null) {
+            throw new NoSuchFileException(key);
+        }
+        return object;
+    }
+}
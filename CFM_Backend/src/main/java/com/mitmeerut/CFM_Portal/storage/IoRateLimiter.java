@@ -0,0 +1,72 @@
+package com.mitmeerut.CFM_Portal.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Caps the read rate of background storage jobs (bytes per second) so they
+ * can run next to user traffic. A bucket of one second's worth of bytes
+ * allows short bursts; readers sleep when it is empty. 0 = unlimited.
+ */
+public class IoRateLimiter {
+
+    private final long bytesPerSecond;
+    private double available;
+    private long lastRefill = System.nanoTime();
+
+    public IoRateLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.available = bytesPerSecond;
+    }
+
+    public void acquire(long bytes) throws InterruptedException {
+        if (bytesPerSecond <= 0 || bytes <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            available = Math.min(bytesPerSecond, available + (now - lastRefill) / 1e9 * bytesPerSecond);
+            lastRefill = now;
+            available -= bytes;
+            // In debt: wait until the bucket is back to zero
+            waitNanos = available < 0 ? (long) (-available / bytesPerSecond * 1e9) : 0;
+        }
+        if (waitNanos > 0) {
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+        }
+    }
+
+    public InputStream throttle(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = in.read();
+                if (b >= 0) {
+                    pause(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = in.read(b, off, len);
+                if (n > 0) {
+                    pause(n);
+                }
+                return n;
+            }
+
+            private void pause(int n) throws InterruptedIOException {
+                try {
+                    acquire(n);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while throttled");
+                }
+            }
+        };
+    }
+}
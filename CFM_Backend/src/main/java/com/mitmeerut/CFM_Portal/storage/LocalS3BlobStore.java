@@ -0,0 +1,110 @@
+package com.mitmeerut.CFM_Portal.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Stand-in for an S3-compatible object store, backed by a local directory
+ * per bucket ({root}/{bucket}/{url-encoded key}). It keeps S3 semantics so
+ * that code written against it moves to a real bucket unchanged:
+ *
+ * - a put uploads a full copy, made visible in one step (no moves or links
+ * of the caller's file);
+ * - reads are streamed GETs with an optional start offset (a Range GET),
+ * never local file access, so {@link #localPath} is null;
+ * - keys are opaque and the namespace is flat; listing is lexicographic
+ * with a start-after cursor, like ListObjectsV2.
+ */
+public class LocalS3BlobStore implements BlobStore {
+
+    private final Path bucketDir;
+    private final String bucket;
+
+    public LocalS3BlobStore(Path root, String bucket) {
+        this.bucket = bucket;
+        this.bucketDir = root.resolve(bucket);
+    }
+
+    @Override
+    public String name() {
+        return "s3-local";
+    }
+
+    private Path objectPath(String key) {
+        return bucketDir.resolve(URLEncoder.encode(key, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void put(String key, Path source, boolean keepSource) throws IOException {
+        Files.createDirectories(bucketDir.resolve(".uploads"));
+        Path upload = Files.createTempFile(bucketDir.resolve(".uploads"), "put-", ".part");
+        try {
+            Files.copy(source, upload, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(upload, objectPath(key), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+        if (!keepSource) {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(objectPath(key));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(objectPath(key));
+    }
+
+    @Override
+    public long lastModified(String key) throws IOException {
+        return Files.getLastModifiedTime(objectPath(key)).toMillis();
+    }
+
+    @Override
+    public InputStream open(String key, long offset) throws IOException {
+        FileChannel channel = FileChannel.open(objectPath(key), StandardOpenOption.READ);
+        channel.position(offset);
+        return Channels.newInputStream(channel);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        return Files.deleteIfExists(objectPath(key));
+    }
+
+    @Override
+    public List<String> list(String afterKey, int limit) throws IOException {
+        if (!Files.isDirectory(bucketDir)) {
+            return List.of();
+        }
+        try (Stream<Path> entries = Files.list(bucketDir)) {
+            List<String> keys = new ArrayList<>();
+            entries.filter(Files::isRegularFile)
+                    .map(p -> URLDecoder.decode(p.getFileName().toString(), StandardCharsets.UTF_8))
+                    .filter(key -> afterKey == null || key.compareTo(afterKey) > 0)
+                    .sorted()
+                    .limit(limit)
+                    .forEach(keys::add);
+            return keys;
+        }
+    }
+
+    @Override
+    public String describe(String key) {
+        return "s3://" + bucket + "/" + key;
+    }
+}
@@ -0,0 +1,151 @@
+package com.mitmeerut.CFM_Portal.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Objects as files under {root}/ab/cd/{key}, sharded by the first two pairs
+ * of key characters so that no directory holds more than 256 entries plus
+ * 1/65536 of the objects. Keys are lower-case hex or alphanumeric (SHA-256
+ * digests in practice). Other entries under root, such as the tmp staging
+ * directory, are ignored.
+ */
+public class ShardedLocalBlobStore implements BlobStore {
+
+    private static final Pattern KEY = Pattern.compile("[0-9a-z]{4,128}");
+    private static final Pattern SHARD = Pattern.compile("[0-9a-z]{2}");
+
+    private final Path root;
+
+    public ShardedLocalBlobStore(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public String name() {
+        return "local";
+    }
+
+    private Path pathFor(String key) {
+        if (!KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    @Override
+    public void put(String key, Path source, boolean keepSource) throws IOException {
+        Path target = pathFor(key);
+        Files.createDirectories(target.getParent());
+        if (!keepSource) {
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                return;
+            } catch (AtomicMoveNotSupportedException crossDevice) {
+                // copy below
+            }
+        } else {
+            try {
+                Files.createLink(target, source);
+                return;
+            } catch (FileAlreadyExistsException e) {
+                return;
+            } catch (UnsupportedOperationException | IOException linkFailed) {
+                // No hard links here (or across devices): copy below
+            }
+        }
+        // Copy beside the target, then publish atomically
+        Path temp = Files.createTempFile(target.getParent(), key, ".part");
+        try {
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (!keepSource) {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(pathFor(key));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(pathFor(key));
+    }
+
+    @Override
+    public long lastModified(String key) throws IOException {
+        return Files.getLastModifiedTime(pathFor(key)).toMillis();
+    }
+
+    @Override
+    public InputStream open(String key, long offset) throws IOException {
+        FileChannel channel = FileChannel.open(pathFor(key), StandardOpenOption.READ);
+        channel.position(offset);
+        return Channels.newInputStream(channel);
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return pathFor(key);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        return Files.deleteIfExists(pathFor(key));
+    }
+
+    // Walks shard directories in name order, skipping those before the cursor
+    @Override
+    public List<String> list(String afterKey, int limit) throws IOException {
+        List<String> keys = new ArrayList<>();
+        String after = afterKey != null ? afterKey : "";
+        for (String first : sortedNames(root, SHARD)) {
+            if (!after.isEmpty() && first.compareTo(after.substring(0, Math.min(2, after.length()))) < 0) {
+                continue;
+            }
+            for (String second : sortedNames(root.resolve(first), SHARD)) {
+                if ((first + second).compareTo(after.substring(0, Math.min(4, after.length()))) < 0) {
+                    continue;
+                }
+                for (String key : sortedNames(root.resolve(first).resolve(second), KEY)) {
+                    if (key.compareTo(after) > 0) {
+                        keys.add(key);
+                        if (keys.size() >= limit) {
+                            return keys;
+                        }
+                    }
+                }
+            }
+        }
+        return keys;
+    }
+
+    private List<String> sortedNames(Path dir, Pattern pattern) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> entries = Files.list(dir)) {
+            return entries.map(p -> p.getFileName().toString())
+                    .filter(name -> pattern.matcher(name).matches())
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    @Override
+    public String describe(String key) {
+        return pathFor(key).toString();
+    }
+}
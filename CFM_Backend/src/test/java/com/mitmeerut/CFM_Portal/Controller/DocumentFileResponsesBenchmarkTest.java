@@ -0,0 +1,175 @@
+package com.mitmeerut.CFM_Portal.Controller;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput and heap allocation per download of DocumentFileResponses
+ * (64 KB buffered copy) against the previous Resource body, which
+ * Spring copied through an InputStream. Output goes to a discarding stream,
+ * so the numbers are the server-side copying cost only.
+ */
+class DocumentFileResponsesBenchmarkTest {
+
+    private static final int ITERATIONS = 20;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void benchmarkDownloads() throws IOException {
+        System.out.println("size (MB) | mode          | MB/s    | heap bytes per download");
+        for (int mb : new int[] { 1, 32 }) {
+            Path file = createFile(mb);
+            run(file, "buffered copy", () -> serve(file, null));
+            run(file, "InputStream", () -> copyThroughStream(file));
+        }
+    }
+
+    @Test
+    void rangesAndValidators() throws IOException {
+        Path file = createFile(1);
+        long length = Files.size(file);
+
+        CountingResponse single = new CountingResponse();
+        MockHttpServletRequest request = get();
+        request.addHeader("Range", "bytes=100-199");
+        DocumentFileResponses.serve(request, single, file, "a.pdf", "application/pdf", true, "abc");
+        assertEquals(206, single.getStatus());
+        assertEquals("bytes 100-199/" + length, single.getHeader("Content-Range"));
+        assertEquals(100, single.written);
+
+        CountingResponse multi = new CountingResponse();
+        request = get();
+        request.addHeader("Range", "bytes=0-9,-10");
+        DocumentFileResponses.serve(request, multi, file, "a.pdf", "application/pdf", true, "abc");
+        assertEquals(206, multi.getStatus());
+        assertEquals(multi.getContentLengthLong(), multi.written);
+
+        CountingResponse unsatisfiable = new CountingResponse();
+        request = get();
+        request.addHeader("Range", "bytes=" + length + "-");
+        DocumentFileResponses.serve(request, unsatisfiable, file, "a.pdf", "application/pdf", true, "abc");
+        assertEquals(416, unsatisfiable.getStatus());
+
+        CountingResponse notModified = new CountingResponse();
+        request = get();
+        request.addHeader("If-None-Match", "\"abc\"");
+        DocumentFileResponses.serve(request, notModified, file, "a.pdf", "application/pdf", true, "abc");
+        assertEquals(304, notModified.getStatus());
+        assertEquals(0, notModified.written);
+
+        CountingResponse staleRange = new CountingResponse();
+        request = get();
+        request.addHeader("Range", "bytes=0-9");
+        request.addHeader("If-Range", "\"other\"");
+        DocumentFileResponses.serve(request, staleRange, file, "a.pdf", "application/pdf", true, "abc");
+        assertEquals(200, staleRange.getStatus());
+        assertEquals(length, staleRange.written);
+    }
+
+    private interface Download {
+        long run() throws IOException;
+    }
+
+    private void run(Path file, String mode, Download download) throws IOException {
+        long size = Files.size(file);
+        // Enough runs for the JIT to compile the copy loops
+        for (int i = 0; i < ITERATIONS; i++) {
+            download.run();
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertEquals(size, download.run());
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = (threads.getThreadAllocatedBytes(thread) - allocatedBefore) / ITERATIONS;
+
+        double mbPerSecond = (double) size * ITERATIONS / (1024 * 1024) / (nanos / 1e9);
+        System.out.printf("%9d | %-13s | %7.0f | %d%n", size / (1024 * 1024), mode, mbPerSecond, allocated);
+    }
+
+    private long serve(Path file, String range) throws IOException {
+        MockHttpServletRequest request = get();
+        if (range != null) {
+            request.addHeader("Range", range);
+        }
+        CountingResponse response = new CountingResponse();
+        DocumentFileResponses.serve(request, response, file, "file.pdf", "application/pdf", false, null);
+        return response.written;
+    }
+
+    private long copyThroughStream(Path file) throws IOException {
+        CountingResponse response = new CountingResponse();
+        try (InputStream in = Files.newInputStream(file)) {
+            StreamUtils.copy(in, response.getOutputStream());
+        }
+        return response.written;
+    }
+
+    private MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/api/teacher/documents/download/1");
+    }
+
+    private Path createFile(int mb) throws IOException {
+        Path file = dir.resolve(mb + "mb.bin");
+        byte[] block = new byte[1024 * 1024];
+        new Random(42).nextBytes(block);
+        try (var out = Files.newOutputStream(file)) {
+            for (int i = 0; i < mb; i++) {
+                out.write(block);
+            }
+        }
+        return file;
+    }
+
+    // Discards the body and counts it
+    private static final class CountingResponse extends MockHttpServletResponse {
+        long written;
+
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                written++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                written += len;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+}
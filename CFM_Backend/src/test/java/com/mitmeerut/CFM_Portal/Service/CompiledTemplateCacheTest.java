@@ -0,0 +1,46 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.Template;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledTemplateCacheTest {
+
+    private final CompiledTemplateCache cache = new CompiledTemplateCache();
+
+    @Test
+    void nestedHeadingsObject() {
+        CompiledTemplate compiled = cache.compile(template(
+                "{\"type\":\"THEORY\",\"headings\":[{\"title\":\"A\",\"children\":[{\"title\":\"a1\"}]},{\"title\":\"B\"}]}"));
+
+        assertEquals("THEORY", compiled.type());
+        assertEquals(3, compiled.nodeCount());
+        assertEquals("A", compiled.headings().get(0).title());
+        assertEquals("a1", compiled.headings().get(0).children().get(0).title());
+    }
+
+    @Test
+    void legacyArrayOfTitlesIsFlat() {
+        CompiledTemplate compiled = cache.compile(template("[\"Syllabus\",\" Lecture Notes \"]"));
+
+        assertNull(compiled.type());
+        assertEquals(List.of("Syllabus", "Lecture Notes"),
+                compiled.headings().stream().map(CompiledTemplate.Node::title).toList());
+        assertTrue(compiled.headings().get(1).children().isEmpty());
+    }
+
+    @Test
+    void blankTitleIsRejected() {
+        assertThrows(RuntimeException.class, () -> cache.compile(template("[\"Syllabus\",\"\"]")));
+        assertThrows(RuntimeException.class, () -> cache.compile(template("{\"type\":\"THEORY\"}")));
+    }
+
+    private static Template template(String structure) {
+        Template template = new Template();
+        template.setStructure(structure);
+        return template;
+    }
+}
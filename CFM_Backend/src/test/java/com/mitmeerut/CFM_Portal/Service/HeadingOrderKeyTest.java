@@ -0,0 +1,146 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.mitmeerut.CFM_Portal.Model.CourseFile;
+import com.mitmeerut.CFM_Portal.Model.Heading;
+import com.mitmeerut.CFM_Portal.Repository.CommentRepository;
+import com.mitmeerut.CFM_Portal.Repository.CourseFileRepository;
+import com.mitmeerut.CFM_Portal.Repository.DocumentRepository;
+import com.mitmeerut.CFM_Portal.Repository.DocumentVersionCounterRepository;
+import com.mitmeerut.CFM_Portal.Repository.HeadingClosureRepository;
+import com.mitmeerut.CFM_Portal.Repository.HeadingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Order keys chosen by HeadingServiceImpl when a root heading is created at
+ * a position: midpoint of the gap, a background rebalance request when the
+ * gap gets tight, an inline respace when it is gone, and no overflow past
+ * Integer.MAX_VALUE at the tail.
+ */
+class HeadingOrderKeyTest {
+
+    private static final long COURSE_FILE_ID = 1L;
+
+    private final List<Heading> siblings = new ArrayList<>();
+    private HeadingRepository headingRepo;
+    private HeadingOrderRebalancer rebalancer;
+    private HeadingServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        headingRepo = mock(HeadingRepository.class);
+        CourseFileRepository courseFileRepo = mock(CourseFileRepository.class);
+        rebalancer = mock(HeadingOrderRebalancer.class);
+
+        CourseFile courseFile = new CourseFile();
+        courseFile.setId(COURSE_FILE_ID);
+        when(courseFileRepo.existsById(COURSE_FILE_ID)).thenReturn(true);
+        when(courseFileRepo.findById(COURSE_FILE_ID)).thenReturn(Optional.of(courseFile));
+        when(headingRepo.findByCourseFileIdAndParentHeadingIsNull(COURSE_FILE_ID))
+                .thenAnswer(inv -> new ArrayList<>(siblings));
+        when(headingRepo.save(any(Heading.class))).thenAnswer(inv -> inv.getArgument(0));
+        // Inline respace: evenly spaced keys in the current order
+        doAnswer(inv -> {
+            for (int i = 0; i < siblings.size(); i++) {
+                siblings.get(i).setOrderIndex((i + 1) * HeadingOrderRebalancer.ORDER_GAP);
+            }
+            return null;
+        }).when(rebalancer).rebalance(anyLong(), any());
+
+        service = new HeadingServiceImpl(headingRepo, courseFileRepo, mock(DocumentRepository.class),
+                mock(HeadingClosureRepository.class), mock(CommentRepository.class), mock(FileCleanupService.class),
+                mock(CourseFileVersionService.class), rebalancer, mock(ContentBlobService.class),
+                mock(DocumentVersionCounterRepository.class));
+    }
+
+    @Test
+    void insertBetweenTakesTheMidpoint() {
+        siblings(1024, 2048);
+
+        assertEquals(1536, create(2));
+        verify(rebalancer, never()).requestRebalance(anyLong(), any());
+        verify(rebalancer, never()).rebalance(anyLong(), any());
+    }
+
+    @Test
+    void siblingGroupIsLockedBeforeItsKeysAreRead() {
+        siblings(1024, 2048);
+
+        create(2);
+        InOrder order = inOrder(rebalancer, headingRepo);
+        order.verify(rebalancer).lockGroup(COURSE_FILE_ID, null);
+        order.verify(headingRepo).findByCourseFileIdAndParentHeadingIsNull(COURSE_FILE_ID);
+    }
+
+    @Test
+    void insertAtTheStartHalvesTheFirstKey() {
+        siblings(1024, 2048);
+
+        assertEquals(512, create(1));
+    }
+
+    @Test
+    void appendAddsOneGapAfterTheLastKey() {
+        siblings(1024, 2048);
+
+        assertEquals(2048 + HeadingOrderRebalancer.ORDER_GAP, create(null));
+    }
+
+    @Test
+    void tightGapRequestsABackgroundRebalance() {
+        siblings(1000, 1010);
+
+        // 5 on each side is below MIN_GAP: still usable, respaced later
+        assertEquals(1005, create(2));
+        verify(rebalancer).requestRebalance(COURSE_FILE_ID, null);
+        verify(rebalancer, never()).rebalance(anyLong(), any());
+    }
+
+    @Test
+    void exhaustedGapIsRespacedInline() {
+        siblings(1000, 1001);
+
+        assertEquals(1024 + HeadingOrderRebalancer.ORDER_GAP / 2, create(2));
+        verify(rebalancer).rebalance(COURSE_FILE_ID, null);
+    }
+
+    @Test
+    void appendNearIntegerMaxRespacesInsteadOfOverflowing() {
+        siblings(1024, Integer.MAX_VALUE - 10);
+
+        assertEquals(3 * HeadingOrderRebalancer.ORDER_GAP, create(null));
+        verify(rebalancer).rebalance(COURSE_FILE_ID, null);
+    }
+
+    @Test
+    void unspacedSiblingsAreRespacedFirst() {
+        siblings(1024, null);
+
+        assertEquals(1024 + HeadingOrderRebalancer.ORDER_GAP / 2, create(2));
+        verify(rebalancer).rebalance(COURSE_FILE_ID, null);
+    }
+
+    private void siblings(Integer... keys) {
+        for (int i = 0; i < keys.length; i++) {
+            Heading heading = new Heading();
+            heading.setId((long) (i + 10));
+            heading.setOrderIndex(keys[i]);
+            siblings.add(heading);
+        }
+    }
+
+    // 1-based position among the root headings, null = append
+    private int create(Integer position) {
+        return service.createHeading(COURSE_FILE_ID, null, "New", position).getOrderIndex();
+    }
+}
@@ -0,0 +1,123 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mitmeerut.CFM_Portal.Model.CourseFile;
+import com.mitmeerut.CFM_Portal.Model.Document;
+import com.mitmeerut.CFM_Portal.Model.Heading;
+import com.mitmeerut.CFM_Portal.Repository.CourseFileChangeRepository;
+import com.mitmeerut.CFM_Portal.Repository.CourseFileRepository;
+import com.mitmeerut.CFM_Portal.Repository.DocumentRepository;
+import com.mitmeerut.CFM_Portal.Repository.HeadingRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Query count and latency of HeadingTreeLoader at 10, 100 and 1000 headings,
+ * compared with the previous per-node recursion (1 + 2 x headings queries).
+ * Repositories are stubbed, so latency is the in-memory linking cost only.
+ */
+class HeadingTreeLoaderBenchmarkTest {
+
+    private static final int DOCS_PER_HEADING = 2;
+    private static final int ITERATIONS = 200;
+
+    @Test
+    void benchmarkTreeLoading() {
+        System.out.println("headings | queries (loader) | queries (per-node) | avg latency (us)");
+        for (int size : new int[] { 10, 100, 1000 }) {
+            run(size);
+        }
+    }
+
+    private void run(int size) {
+        List<Heading> headings = buildHeadings(size);
+        List<Document> documents = buildDocuments(headings);
+
+        AtomicInteger queries = new AtomicInteger();
+        HeadingRepository headingRepo = mock(HeadingRepository.class);
+        DocumentRepository documentRepo = mock(DocumentRepository.class);
+        when(headingRepo.findByCourseFileId(anyLong())).thenAnswer(inv -> {
+            queries.incrementAndGet();
+            return headings;
+        });
+        when(documentRepo.findLatestByHeadingIds(any())).thenAnswer(inv -> {
+            queries.incrementAndGet();
+            return documents;
+        });
+
+        HeadingTreeLoader loader = new HeadingTreeLoader(headingRepo, documentRepo,
+                mock(CourseFileRepository.class), new CourseFileTreeCache(10), new ObjectMapper(),
+                mock(CourseFileChangeRepository.class));
+
+        // warm-up
+        for (int i = 0; i < ITERATIONS; i++) {
+            loader.loadTree(1L, "files");
+        }
+
+        queries.set(0);
+        long start = System.nanoTime();
+        List<Map<String, Object>> tree = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            tree = loader.loadTree(1L, "files");
+        }
+        long avgMicros = (System.nanoTime() - start) / ITERATIONS / 1000;
+
+        assertEquals(2 * ITERATIONS, queries.get(), "loader must run exactly two queries per tree");
+        assertEquals(size, countNodes(tree));
+
+        System.out.printf("%8d | %16d | %18d | %16d%n", size, 2, 1 + 2 * size, avgMicros);
+    }
+
+    // Roughly balanced tree: up to 5 roots, every other heading under an earlier one
+    private List<Heading> buildHeadings(int size) {
+        CourseFile courseFile = new CourseFile();
+        courseFile.setId(1L);
+        Random random = new Random(42);
+
+        List<Heading> headings = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Heading h = new Heading();
+            h.setId((long) i + 1);
+            h.setCourseFile(courseFile);
+            h.setTitle("Heading " + (i + 1));
+            h.setOrderIndex(i);
+            if (i >= 5) {
+                h.setParentHeading(headings.get(random.nextInt(i)));
+            }
+            headings.add(h);
+        }
+        return headings;
+    }
+
+    private List<Document> buildDocuments(List<Heading> headings) {
+        List<Document> documents = new ArrayList<>();
+        long id = 1;
+        for (Heading h : headings) {
+            for (int i = 0; i < DOCS_PER_HEADING; i++) {
+                Document d = new Document();
+                d.setId(id++);
+                d.setHeading(h);
+                d.setFileName("file-" + d.getId() + ".pdf");
+                documents.add(d);
+            }
+        }
+        return documents;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int countNodes(List<Map<String, Object>> nodes) {
+        int count = 0;
+        for (Map<String, Object> node : nodes) {
+            count += 1 + countNodes((List<Map<String, Object>>) node.get("children"));
+        }
+        return count;
+    }
+}
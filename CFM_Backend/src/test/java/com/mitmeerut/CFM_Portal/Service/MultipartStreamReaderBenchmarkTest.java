@@ -0,0 +1,154 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bytes written to disk and latency per upload of a large PDF: the
+ * streaming path (MultipartStreamReader straight into one staging file,
+ * hashed and sniffed on the way) against the previous path, where the
+ * container spooled the part to a temp file and the service copied it again.
+ */
+class MultipartStreamReaderBenchmarkTest {
+
+    private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+    private static final int ITERATIONS = 10;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void benchmarkUploads() throws Exception {
+        System.out.println("size (MB) | mode          | disk bytes written | avg latency (ms)");
+        for (int mb : new int[] { 8, 32 }) {
+            byte[] file = pdf(mb);
+            byte[] body = body(file);
+            run(mb, "streaming", body, file, this::streaming);
+            run(mb, "spool + copy", body, file, this::spoolAndCopy);
+        }
+    }
+
+    @Test
+    void readsFieldsAroundTheFileAndSplitBoundaries() throws Exception {
+        byte[] file = pdf(1);
+        // Chunked reads of 1..4096 bytes land the delimiter across buffer refills
+        Random random = new Random(7);
+        InputStream in = new ByteArrayInputStream(body(file)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1 + random.nextInt(4096)));
+            }
+        };
+        MultipartStreamReader reader = new MultipartStreamReader(in, BOUNDARY);
+
+        MultipartStreamReader.Part part = reader.next();
+        assertEquals("file", part.name());
+        assertEquals("notes \"final\".pdf", part.fileName());
+        ContentSniffer.Probe probe = new ContentSniffer.Probe(part.body());
+        assertArrayEquals(file, probe.readAllBytes());
+        assertEquals("application/pdf", probe.type());
+
+        part = reader.next();
+        assertEquals("headingId", part.name());
+        assertEquals("42", part.readString(64));
+
+        part = reader.next();
+        assertEquals("courseCode", part.name());
+        assertNull(reader.next());
+    }
+
+    private interface Upload {
+        long run(byte[] body, Path target) throws Exception;
+    }
+
+    private void run(int mb, String mode, byte[] body, byte[] file, Upload upload) throws Exception {
+        Path target = dir.resolve(mode.replace(' ', '_') + ".bin");
+        upload.run(body, target); // warm-up
+
+        long written = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            written = upload.run(body, target);
+        }
+        long avgMillis = (System.nanoTime() - start) / ITERATIONS / 1_000_000;
+
+        assertEquals(file.length, Files.size(target));
+        System.out.printf("%9d | %-13s | %18d | %16d%n", mb, mode, written, avgMillis);
+    }
+
+    // One pass: parse, hash and sniff while writing the only copy
+    private long streaming(byte[] body, Path target) throws Exception {
+        MultipartStreamReader reader = new MultipartStreamReader(new ByteArrayInputStream(body), BOUNDARY);
+        MultipartStreamReader.Part part = reader.next();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        ContentSniffer.Probe probe = new ContentSniffer.Probe(part.body());
+        long size;
+        try (InputStream in = new DigestInputStream(probe, digest); OutputStream out = Files.newOutputStream(target)) {
+            // Same 64 KB copy loop as ContentBlobService.stage
+            byte[] buffer = new byte[64 * 1024];
+            size = 0;
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+                size += n;
+            }
+        }
+        while (reader.next() != null) {
+            // remaining fields
+        }
+        assertEquals("application/pdf", probe.type());
+        return size;
+    }
+
+    // Container spool to a temp file, then Files.copy into storage
+    private long spoolAndCopy(byte[] body, Path target) throws Exception {
+        MultipartStreamReader reader = new MultipartStreamReader(new ByteArrayInputStream(body), BOUNDARY);
+        Path spool = dir.resolve("spool.tmp");
+        long spooled = Files.copy(reader.next().body(), spool, StandardCopyOption.REPLACE_EXISTING);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        long copied;
+        try (InputStream in = new DigestInputStream(Files.newInputStream(spool), digest)) {
+            copied = Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.delete(spool);
+        return spooled + copied;
+    }
+
+    private byte[] pdf(int mb) {
+        byte[] file = new byte[mb * 1024 * 1024];
+        new Random(42).nextBytes(file);
+        byte[] magic = "%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(magic, 0, file, 0, magic.length);
+        return file;
+    }
+
+    // Field order as the browser sends it: file first, then the form fields
+    private byte[] body(byte[] file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(file.length + 1024);
+        out.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"notes \\\"final\\\".pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(file);
+        out.write(("\r\n--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"headingId\"\r\n\r\n42\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"courseCode\"\r\n\r\nCS101\r\n"
+                + "--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,103 @@
+package com.mitmeerut.CFM_Portal.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateDiffTest {
+
+    @Test
+    void unchangedTreeHasNoChanges() {
+        TemplateDiff.Result result = TemplateDiff.diff(template(node("A", node("a1")), node("B")),
+                template(node("A", node("a1")), node("B")));
+
+        assertFalse(result.hasChanges());
+        assertEquals(List.of("A", "B"), titles(result.plan()));
+        assertEquals("a1", result.plan().get(0).children().get(0).oldTitle());
+    }
+
+    @Test
+    void headingAddedAtALevel() {
+        TemplateDiff.Result result = TemplateDiff.diff(template(node("A"), node("B")),
+                template(node("A"), node("B"), node("C")));
+
+        assertEquals(1, result.added());
+        assertEquals(0, result.renamed());
+        assertEquals(0, result.reordered());
+        assertEquals(List.of("A", "B", "C"), titles(result.plan()));
+        assertEquals("B", result.plan().get(1).oldTitle());
+        assertNull(result.plan().get(2).oldTitle());
+    }
+
+    @Test
+    void newTitleInTheSameSlotIsARename() {
+        TemplateDiff.Result result = TemplateDiff.diff(template(node("A"), node("B"), node("C")),
+                template(node("A"), node("X"), node("C")));
+
+        assertEquals(0, result.added());
+        assertEquals(1, result.renamed());
+        assertEquals(0, result.reordered());
+        TemplateDiff.PlanNode renamed = result.plan().get(1);
+        assertEquals("B", renamed.oldTitle());
+        assertEquals("X", renamed.title());
+    }
+
+    @Test
+    void swappedSiblingsAreAReorder() {
+        TemplateDiff.Result result = TemplateDiff.diff(template(node("A"), node("B")),
+                template(node("B"), node("A")));
+
+        assertEquals(0, result.added());
+        assertEquals(0, result.renamed());
+        assertEquals(1, result.reordered());
+        assertEquals("B", result.plan().get(0).oldTitle());
+        assertEquals("A", result.plan().get(1).oldTitle());
+    }
+
+    @Test
+    void nestedChildrenAreDiffedUnderTheirMatchedParent() {
+        TemplateDiff.Result result = TemplateDiff.diff(
+                template(node("A", node("a1"), node("a2"))),
+                template(node("A", node("a2"), node("a1"), node("a3")), node("B", node("b1"))));
+
+        // a3, B and b1
+        assertEquals(3, result.added());
+        assertEquals(0, result.renamed());
+        assertEquals(1, result.reordered());
+
+        TemplateDiff.PlanNode a = result.plan().get(0);
+        assertEquals("A", a.oldTitle());
+        assertEquals(List.of("a2", "a1", "a3"), titles(a.children()));
+        assertEquals("a2", a.children().get(0).oldTitle());
+        assertNull(a.children().get(2).oldTitle());
+
+        TemplateDiff.PlanNode b = result.plan().get(1);
+        assertNull(b.oldTitle());
+        assertNull(b.children().get(0).oldTitle());
+    }
+
+    @Test
+    void removedHeadingIsNotPropagated() {
+        TemplateDiff.Result result = TemplateDiff.diff(template(node("A"), node("B", node("b1")), node("C")),
+                template(node("A"), node("C")));
+
+        assertFalse(result.hasChanges());
+        assertEquals(List.of("A", "C"), titles(result.plan()));
+        assertEquals("C", result.plan().get(1).oldTitle());
+    }
+
+    private static CompiledTemplate template(CompiledTemplate.Node... headings) {
+        return new CompiledTemplate(1L, 1, "THEORY", Arrays.asList(headings), List.of(), 0);
+    }
+
+    private static CompiledTemplate.Node node(String title, CompiledTemplate.Node... children) {
+        return new CompiledTemplate.Node(title, Arrays.asList(children));
+    }
+
+    private static List<String> titles(List<TemplateDiff.PlanNode> plan) {
+        return plan.stream().map(TemplateDiff.PlanNode::title).toList();
+    }
+}